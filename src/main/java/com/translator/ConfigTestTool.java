@@ -113,7 +113,7 @@ public class ConfigTestTool {
             OpenAITranslationService translationService = context.getBean(OpenAITranslationService.class);
             
             // 测试翻译服务是否可用
-            boolean isAvailable = translationService.isServiceAvailable(provider);
+            boolean isAvailable = translationService.checkServiceNow(provider);
             
             if (!isAvailable) {
                 logger.error("{}翻译服务不可用", provider.getName());
@@ -170,6 +170,7 @@ public class ConfigTestTool {
                 logger.info("  Model: {}", openaiConfig.getModel());
                 logger.info("  Max Tokens: {}", openaiConfig.getMaxTokens());
                 logger.info("  Temperature: {}", openaiConfig.getTemperature());
+                logger.info("  每批输入token预算: {}", openaiConfig.getBatchTokenBudget());
                 logger.info("  API Key: {}", openaiConfig.getApiKey() != null && !openaiConfig.getApiKey().isEmpty() ? "已配置" : "未配置");
             }
             
@@ -179,6 +180,7 @@ public class ConfigTestTool {
                 logger.info("DeepSeek配置:");
                 logger.info("  Base URL: {}", deepseekConfig.getBaseUrl());
                 logger.info("  Model: {}", deepseekConfig.getModel());
+                logger.info("  每批输入token预算: {}", deepseekConfig.getBatchTokenBudget());
                 logger.info("  API Key: {}", deepseekConfig.getApiKey() != null && !deepseekConfig.getApiKey().isEmpty() ? "已配置" : "未配置");
             }
             
@@ -187,7 +189,7 @@ public class ConfigTestTool {
             if (settings != null) {
                 logger.info("翻译设置:");
                 logger.info("  默认提供商: {}", settings.getDefaultProvider());
-                logger.info("  批处理大小: {}", settings.getBatchSize());
+                logger.info("  每批最多片段数: {}", settings.getMaxSegmentsPerBatch());
                 logger.info("  重试次数: {}", settings.getRetryCount());
                 logger.info("  重试间隔: {}ms", settings.getRetryDelay());
             }
@@ -11,9 +11,12 @@ public class TranslationProgressDto {
     private String status;
     private int totalPages;
     private int translatedPages;
+    private int totalUnits;
+    private int translatedUnits;
     private double progressPercentage;
     private String currentPage;
     private String estimatedTimeRemaining;
+    private int streamedCharacters;
     
     public static TranslationProgressDto fromDomain(Book book) {
         TranslationProgressDto dto = new TranslationProgressDto();
@@ -22,7 +25,10 @@ public class TranslationProgressDto {
         dto.status = book.getTranslationStatus().getDescription();
         dto.totalPages = book.getTotalPages();
         dto.translatedPages = book.getTranslatedPages();
+        dto.totalUnits = book.getTotalUnits();
+        dto.translatedUnits = book.getTranslatedUnits();
         dto.progressPercentage = book.getTranslationProgress();
+        dto.streamedCharacters = book.getStreamedCharacters();
         
         // 计算当前页面和预计剩余时间（简化实现）
         if (book.getTotalPages() > 0) {
@@ -30,9 +36,9 @@ public class TranslationProgressDto {
             if (currentPageIndex < book.getTotalPages()) {
                 dto.currentPage = "第 " + (currentPageIndex + 1) + " 页，共 " + book.getTotalPages() + " 页";
                 
-                // 简单的剩余时间估算（假设每页30秒）
-                int remainingPages = book.getTotalPages() - book.getTranslatedPages();
-                int remainingSeconds = remainingPages * 30;
+                // 简单的剩余时间估算（假设每页30秒，按未完成单元的比例折算）
+                int remainingSeconds = (int) Math.round(book.getTotalPages() * 30
+                    * (100 - book.getTranslationProgress()) / 100);
                 dto.estimatedTimeRemaining = formatTimeRemaining(remainingSeconds);
             } else {
                 dto.currentPage = "翻译完成";
@@ -98,6 +104,22 @@ public class TranslationProgressDto {
         this.translatedPages = translatedPages;
     }
     
+    public int getTotalUnits() {
+        return totalUnits;
+    }
+    
+    public void setTotalUnits(int totalUnits) {
+        this.totalUnits = totalUnits;
+    }
+    
+    public int getTranslatedUnits() {
+        return translatedUnits;
+    }
+    
+    public void setTranslatedUnits(int translatedUnits) {
+        this.translatedUnits = translatedUnits;
+    }
+    
     public double getProgressPercentage() {
         return progressPercentage;
     }
@@ -121,4 +143,12 @@ public class TranslationProgressDto {
     public void setEstimatedTimeRemaining(String estimatedTimeRemaining) {
         this.estimatedTimeRemaining = estimatedTimeRemaining;
     }
+    
+    public int getStreamedCharacters() {
+        return streamedCharacters;
+    }
+    
+    public void setStreamedCharacters(int streamedCharacters) {
+        this.streamedCharacters = streamedCharacters;
+    }
 }
\ No newline at end of file
@@ -5,13 +5,15 @@ import com.translator.application.dto.BookDto;
 import com.translator.application.dto.TranslationProgressDto;
 import com.translator.domain.exception.TranslationException;
 import com.translator.domain.model.Book;
-import com.translator.domain.model.Page;
 import com.translator.domain.repository.BookRepository;
+import com.translator.domain.repository.TranslationCheckpointRepository;
 import com.translator.domain.service.TranslationService;
 import com.translator.domain.valueobject.BookMetadata;
 import com.translator.domain.valueobject.TranslationProvider;
+import com.translator.infrastructure.config.TranslationProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -27,79 +29,83 @@ import java.util.stream.Collectors;
 public class BookApplicationService {
     
     private static final Logger logger = LoggerFactory.getLogger(BookApplicationService.class);
+    // 已解析、等待翻译的页面数上限，翻译跟不上时解析暂停
+    private static final int PAGE_QUEUE_CAPACITY = 16;
+    // 低内存模式下取走的页面会立即读取原文，队列更短
+    private static final int LOW_MEMORY_QUEUE_CAPACITY = 4;
     
     private final BookRepository bookRepository;
     private final TranslationService translationService;
     private final EpubProcessingService epubProcessingService;
+    private final TranslationCheckpointRepository checkpointRepository;
+    private final boolean lowMemoryMode;
     
     public BookApplicationService(BookRepository bookRepository, 
                                  TranslationService translationService,
-                                 EpubProcessingService epubProcessingService) {
+                                 EpubProcessingService epubProcessingService,
+                                 TranslationCheckpointRepository checkpointRepository) {
+        this(bookRepository, translationService, epubProcessingService, checkpointRepository,
+            new TranslationProperties());
+    }
+    
+    /**
+     * @param properties 翻译配置，读取其中的低内存模式开关
+     */
+    @Autowired
+    public BookApplicationService(BookRepository bookRepository, 
+                                 TranslationService translationService,
+                                 EpubProcessingService epubProcessingService,
+                                 TranslationCheckpointRepository checkpointRepository,
+                                 TranslationProperties properties) {
         this.bookRepository = bookRepository;
         this.translationService = translationService;
         this.epubProcessingService = epubProcessingService;
+        this.checkpointRepository = checkpointRepository;
+        this.lowMemoryMode = properties.getSettings().isLowMemoryMode();
     }
     
     /**
      * 翻译书籍
+     * 解析、翻译和写出以流水线方式同时进行，第一页解析完成即开始翻译
      */
     public BookDto translateBook(TranslateBookCommand command) throws TranslationException {
         logger.info("开始翻译书籍: {}", command.getFilePath());
         
-        // 1. 解析EPUB文件
-        Book book = epubProcessingService.parseEpub(command.getFilePath());
-        
-        // 2. 选择翻译提供商
+        // 1. 选择翻译提供商
         TranslationProvider provider = command.getProvider() != null ? 
             command.getProvider() : TranslationProvider.OPENAI;
         
-        // 3. 检查翻译服务可用性
+        // 2. 检查翻译服务可用性（读取缓存的健康状态，不必等解析完成）
         if (!translationService.isServiceAvailable(provider)) {
             throw new TranslationException("翻译服务不可用: " + provider.getName());
         }
         
-        // 4. 保存书籍信息
-        book = bookRepository.save(book);
+        // 3. 保存书籍信息，页面在解析过程中陆续加入
+        Book book = bookRepository.save(new Book(command.getFilePath()));
         
-        // 5. 执行翻译
+        // 4. 解析、翻译并生成翻译后的EPUB文件
         book.markTranslationStarted();
+        String outputPath;
         try {
-            try {
-                logger.info("尝试使用主要提供商 {} 进行翻译...", provider.getName());
-                translationService.translateBook(book, provider);
-            } catch (Exception e) {
-                // 如果是OPENAI且失败，尝试使用DEEPSEEK作为备用
-                if (provider == TranslationProvider.OPENAI) {
-                    logger.warn("主要提供商 {} 翻译失败: {}。尝试使用 DeepSeek 作为备用...", provider.getName(), e.getMessage());
-                    
-                    if (translationService.isServiceAvailable(TranslationProvider.DEEPSEEK)) {
-                        try {
-                            translationService.translateBook(book, TranslationProvider.DEEPSEEK);
-                            logger.info("使用备用提供商 DeepSeek 翻译成功");
-                        } catch (Exception deepseekError) {
-                            logger.error("备用提供商 DeepSeek 也翻译失败: {}", deepseekError.getMessage());
-                            throw e; // 抛出原始异常
-                        }
-                    } else {
-                        logger.warn("备用提供商 DeepSeek 不可用，无法进行故障转移");
-                        throw e;
-                    }
-                } else {
-                    throw e;
-                }
-            }
+            // 失败的批次由翻译服务按提供商健康状况转交备用提供商，检查点中已完成的页面不会重复翻译
+            logger.info("使用首选提供商 {} 进行翻译...", provider.getName());
+            outputPath = new TranslationPipeline(book, translationService, epubProcessingService, checkpointRepository,
+                lowMemoryMode ? LOW_MEMORY_QUEUE_CAPACITY : PAGE_QUEUE_CAPACITY, lowMemoryMode)
+                .run(provider, command.getOutputDirectory());
             book.markTranslationCompleted();
             logger.info("书籍翻译完成: {}", book.getOriginalFileName());
         } catch (Exception e) {
             book.markTranslationFailed(e.getMessage());
+            // 检查点保留以便续译，只释放打开的日志
+            checkpointRepository.close(book);
             logger.error("书籍翻译失败: {}", book.getOriginalFileName(), e);
             throw new TranslationException("翻译失败: " + e.getMessage(), e);
         }
         
-        // 6. 生成翻译后的EPUB文件
-        String outputPath = epubProcessingService.createTranslatedEpub(book, command.getOutputDirectory());
+        // 5. 输出文件已生成，检查点不再需要
+        checkpointRepository.delete(book);
         
-        // 7. 更新书籍信息
+        // 6. 更新书籍信息
         book = bookRepository.save(book);
         
         return BookDto.fromDomain(book, outputPath);
@@ -0,0 +1,90 @@
+package com.translator.application.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Random-access view of an EPUB archive.
+ * Entries are read on demand from the zip's central directory, so nothing is extracted to disk.
+ */
+class EpubArchive implements Closeable {
+
+    private final File file;
+    private final ZipFile zipFile;
+
+    EpubArchive(File file) throws IOException {
+        this.file = file;
+        this.zipFile = new ZipFile(file, StandardCharsets.UTF_8);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean contains(String entryName) {
+        ZipEntry entry = zipFile.getEntry(entryName);
+        return entry != null && !entry.isDirectory();
+    }
+
+    /**
+     * Opens an entry for reading. The caller must close the returned stream.
+     */
+    InputStream open(String entryName) throws IOException {
+        ZipEntry entry = zipFile.getEntry(entryName);
+        if (entry == null || entry.isDirectory()) {
+            throw new FileNotFoundException("Entry not found in EPUB: " + entryName);
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    String readString(String entryName) throws IOException {
+        try (InputStream in = open(entryName)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Resolves an href found in {@code baseEntry} to an entry name relative to the archive root.
+     * Fragments are dropped and "." / ".." segments are collapsed.
+     */
+    static String resolve(String baseEntry, String href) {
+        int fragment = href.indexOf('#');
+        if (fragment >= 0) {
+            href = href.substring(0, fragment);
+        }
+
+        Deque<String> segments = new ArrayDeque<>();
+        int lastSlash = baseEntry.lastIndexOf('/');
+        if (!href.startsWith("/") && lastSlash >= 0) {
+            addSegments(segments, baseEntry.substring(0, lastSlash));
+        }
+        addSegments(segments, href);
+        return String.join("/", segments);
+    }
+
+    private static void addSegments(Deque<String> segments, String path) {
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                segments.pollLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+}
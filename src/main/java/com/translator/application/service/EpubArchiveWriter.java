@@ -0,0 +1,480 @@
+package com.translator.application.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Writes a translated copy of an EPUB archive.
+ * Untouched entries (images, fonts, stylesheets, ...) are copied byte-for-byte in their already
+ * compressed form; only replaced entries are deflated again. The {@code mimetype} entry is written
+ * first and STORED, as the OCF container spec requires.
+ * Replaced entries are deflated on a pool of threads while the untouched entries are being copied,
+ * and their compressed payloads are appended in the original entry order. Replacement content may
+ * still be in progress when writing starts; the writer waits for it entry by entry.
+ */
+class EpubArchiveWriter {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+    private static final String MIMETYPE = "mimetype";
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final int compressionThreads;
+    private final boolean compressAhead;
+
+    EpubArchiveWriter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    EpubArchiveWriter(int compressionThreads) {
+        this(compressionThreads, true);
+    }
+
+    /**
+     * @param compressAhead whether to look up and compress every replaced entry as soon as writing starts;
+     *                      if not, each entry is looked up and compressed only when the writer reaches it,
+     *                      so at most one replaced entry is held in memory
+     */
+    EpubArchiveWriter(int compressionThreads, boolean compressAhead) {
+        this.compressionThreads = Math.max(1, compressionThreads);
+        this.compressAhead = compressAhead;
+    }
+
+    /**
+     * Copies {@code source} to {@code target}, replacing the content of the given entries.
+     *
+     * @return the names of the entries that were replaced
+     */
+    Set<String> write(File source, File target, Map<String, byte[]> replacements) throws IOException {
+        return write(source, target, name -> replacements.containsKey(name)
+            ? CompletableFuture.completedFuture(replacements.get(name)) : null);
+    }
+
+    /**
+     * Copies {@code source} to {@code target}, replacing entries whose content becomes available later.
+     * The pending content of an entry is looked up once, when the writer reaches it: {@code null} copies
+     * the entry unchanged, otherwise the writer waits for the future and uses the original entry if it
+     * completes with {@code null}. Entries are written in archive order as soon as they and every earlier
+     * entry are ready, so the output grows while the remaining content is still being produced.
+     *
+     * @return the names of the entries that were replaced
+     */
+    Set<String> write(File source, File target, Function<String, CompletableFuture<byte[]>> pending)
+            throws IOException {
+        Set<String> replaced = new HashSet<>();
+        ExecutorService executor = null;
+        try (FileChannel in = new FileInputStream(source).getChannel();
+             FileChannel out = new FileOutputStream(target).getChannel()) {
+            List<Entry> entries = readCentralDirectory(in);
+
+            // Compress every replaced entry as soon as its content arrives, independently of the write order
+            Map<String, CompletableFuture<Compressed>> compressed = new HashMap<>();
+            if (compressAhead) {
+                if (compressionThreads > 1) {
+                    executor = Executors.newFixedThreadPool(compressionThreads, runnable -> {
+                        Thread thread = new Thread(runnable, "epub-deflate-" + threadCounter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                Executor deflater = executor != null ? executor : Runnable::run;
+                for (Entry entry : entries) {
+                    if (!entry.name.equals(MIMETYPE)) {
+                        CompletableFuture<Compressed> future = deflate(pending.apply(entry.name), deflater);
+                        if (future != null) {
+                            compressed.put(entry.name, future);
+                        }
+                    }
+                }
+            }
+
+            List<Entry> written = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                if (entry.name.equals(MIMETYPE)) {
+                    written.add(writeStored(out, entry, readMimetype(source, in, entry)));
+                }
+            }
+
+            for (Entry entry : entries) {
+                if (entry.name.equals(MIMETYPE)) {
+                    continue;
+                }
+                CompletableFuture<Compressed> future = compressAhead
+                    ? compressed.remove(entry.name) : deflate(pending.apply(entry.name), Runnable::run);
+                Compressed data = future != null ? await(future) : null;
+                if (data != null) {
+                    written.add(writeDeflated(out, entry, data));
+                    replaced.add(entry.name);
+                } else {
+                    written.add(copyRaw(in, out, entry));
+                }
+            }
+
+            writeCentralDirectory(out, written);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * Reads the central directory of an archive. ZIP64 archives are rejected.
+     */
+    static List<Entry> readCentralDirectory(FileChannel in) throws IOException {
+        long fileSize = in.size();
+        int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+        ByteBuffer tail = read(in, fileSize - tailSize, tailSize);
+
+        int end = -1;
+        for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("Not a zip archive: end of central directory not found");
+        }
+
+        int count = Short.toUnsignedInt(tail.getShort(end + 10));
+        long size = Integer.toUnsignedLong(tail.getInt(end + 12));
+        long offset = Integer.toUnsignedLong(tail.getInt(end + 16));
+        if (count == 0xFFFF || size == ZIP64_MARKER || offset == ZIP64_MARKER) {
+            throw new IOException("ZIP64 archives are not supported");
+        }
+
+        ByteBuffer directory = read(in, offset, (int) size);
+        List<Entry> entries = new ArrayList<>(count);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Corrupt central directory at entry " + i);
+            }
+            Entry entry = new Entry();
+            entry.versionMadeBy = directory.getShort(position + 4);
+            entry.versionNeeded = directory.getShort(position + 6);
+            entry.flags = Short.toUnsignedInt(directory.getShort(position + 8));
+            entry.method = Short.toUnsignedInt(directory.getShort(position + 10));
+            entry.time = directory.getShort(position + 12);
+            entry.date = directory.getShort(position + 14);
+            entry.crc = directory.getInt(position + 16);
+            entry.compressedSize = Integer.toUnsignedLong(directory.getInt(position + 20));
+            entry.size = Integer.toUnsignedLong(directory.getInt(position + 24));
+            int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+            entry.internalAttributes = directory.getShort(position + 36);
+            entry.externalAttributes = directory.getInt(position + 38);
+            entry.offset = Integer.toUnsignedLong(directory.getInt(position + 42));
+            if (entry.compressedSize == ZIP64_MARKER || entry.size == ZIP64_MARKER || entry.offset == ZIP64_MARKER) {
+                throw new IOException("ZIP64 archives are not supported");
+            }
+
+            position += CENTRAL_HEADER_SIZE;
+            entry.nameBytes = bytes(directory, position, nameLength);
+            entry.extra = bytes(directory, position + nameLength, extraLength);
+            entry.comment = bytes(directory, position + nameLength + extraLength, commentLength);
+            entry.name = new String(entry.nameBytes, StandardCharsets.UTF_8);
+            position += nameLength + extraLength + commentLength;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private Entry copyRaw(FileChannel in, FileChannel out, Entry entry) throws IOException {
+        ByteBuffer localHeader = read(in, entry.offset, LOCAL_HEADER_SIZE);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Corrupt local header for entry " + entry.name);
+        }
+        int nameLength = Short.toUnsignedInt(localHeader.getShort(26));
+        int extraLength = Short.toUnsignedInt(localHeader.getShort(28));
+        byte[] localExtra = bytes(read(in, entry.offset + LOCAL_HEADER_SIZE + nameLength, extraLength), 0, extraLength);
+
+        // Sizes are known from the central directory, so no data descriptor is needed
+        Entry copy = entry.copy();
+        copy.flags &= ~FLAG_DATA_DESCRIPTOR;
+        copy.offset = out.position();
+        writeLocalHeader(out, copy, localExtra);
+
+        long dataStart = entry.offset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        long transferred = 0;
+        while (transferred < entry.compressedSize) {
+            long count = in.transferTo(dataStart + transferred, entry.compressedSize - transferred, out);
+            if (count <= 0) {
+                throw new IOException("Unexpected end of data for entry " + entry.name);
+            }
+            transferred += count;
+        }
+        return copy;
+    }
+
+    private Entry writeDeflated(FileChannel out, Entry original, Compressed data) throws IOException {
+        Entry entry = original.copy();
+        entry.method = ZipEntry.DEFLATED;
+        entry.versionNeeded = 20;
+        entry.flags &= ~FLAG_DATA_DESCRIPTOR;
+        entry.crc = data.crc;
+        entry.size = data.size;
+        entry.compressedSize = data.bytes.length;
+        entry.offset = out.position();
+        writeLocalHeader(out, entry, new byte[0]);
+        writeFully(out, ByteBuffer.wrap(data.bytes));
+        return entry;
+    }
+
+    private static CompletableFuture<Compressed> deflate(CompletableFuture<byte[]> content, Executor executor) {
+        if (content == null) {
+            return null;
+        }
+        return content.thenApplyAsync(bytes -> bytes != null ? Compressed.deflate(bytes) : null, executor);
+    }
+
+    private static Compressed await(Future<Compressed> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for EPUB entries");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to prepare EPUB entry: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private Entry writeStored(FileChannel out, Entry original, byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        // OCF requires the mimetype entry to be uncompressed and without extra fields
+        Entry entry = original.copy();
+        entry.method = ZipEntry.STORED;
+        entry.versionNeeded = 10;
+        entry.flags &= ~FLAG_DATA_DESCRIPTOR;
+        entry.crc = (int) crc.getValue();
+        entry.size = data.length;
+        entry.compressedSize = data.length;
+        entry.extra = new byte[0];
+        entry.offset = out.position();
+        writeLocalHeader(out, entry, new byte[0]);
+        writeFully(out, ByteBuffer.wrap(data));
+        return entry;
+    }
+
+    private byte[] readMimetype(File source, FileChannel in, Entry entry) throws IOException {
+        if (entry.method == ZipEntry.STORED) {
+            ByteBuffer localHeader = read(in, entry.offset, LOCAL_HEADER_SIZE);
+            long dataStart = entry.offset + LOCAL_HEADER_SIZE
+                + Short.toUnsignedInt(localHeader.getShort(26)) + Short.toUnsignedInt(localHeader.getShort(28));
+            return bytes(read(in, dataStart, (int) entry.size), 0, (int) entry.size);
+        }
+        try (ZipFile zipFile = new ZipFile(source, StandardCharsets.UTF_8)) {
+            return zipFile.getInputStream(zipFile.getEntry(entry.name)).readAllBytes();
+        }
+    }
+
+    private void writeLocalHeader(FileChannel out, Entry entry, byte[] extra) throws IOException {
+        checkOffset(entry.offset);
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + entry.nameBytes.length + extra.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort(entry.versionNeeded);
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putShort(entry.time);
+        header.putShort(entry.date);
+        header.putInt(entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.nameBytes.length);
+        header.putShort((short) extra.length);
+        header.put(entry.nameBytes);
+        header.put(extra);
+        header.flip();
+        writeFully(out, header);
+    }
+
+    private void writeCentralDirectory(FileChannel out, List<Entry> entries) throws IOException {
+        long start = out.position();
+        checkOffset(start);
+        for (Entry entry : entries) {
+            ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + entry.nameBytes.length
+                + entry.extra.length + entry.comment.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(CENTRAL_HEADER_SIGNATURE);
+            header.putShort(entry.versionMadeBy);
+            header.putShort(entry.versionNeeded);
+            header.putShort((short) entry.flags);
+            header.putShort((short) entry.method);
+            header.putShort(entry.time);
+            header.putShort(entry.date);
+            header.putInt(entry.crc);
+            header.putInt((int) entry.compressedSize);
+            header.putInt((int) entry.size);
+            header.putShort((short) entry.nameBytes.length);
+            header.putShort((short) entry.extra.length);
+            header.putShort((short) entry.comment.length);
+            header.putShort((short) 0);
+            header.putShort(entry.internalAttributes);
+            header.putInt(entry.externalAttributes);
+            header.putInt((int) entry.offset);
+            header.put(entry.nameBytes);
+            header.put(entry.extra);
+            header.put(entry.comment);
+            header.flip();
+            writeFully(out, header);
+        }
+
+        long size = out.position() - start;
+        checkOffset(out.position());
+        ByteBuffer end = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) entries.size());
+        end.putShort((short) entries.size());
+        end.putInt((int) size);
+        end.putInt((int) start);
+        end.putShort((short) 0);
+        end.flip();
+        writeFully(out, end);
+    }
+
+    private static void checkOffset(long offset) throws IOException {
+        if (offset >= ZIP64_MARKER) {
+            throw new IOException("Output exceeds 4 GB, ZIP64 archives are not supported");
+        }
+    }
+
+    private static ByteBuffer read(FileChannel in, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of zip archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return bytes;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Deflated entry data with the CRC and size of the uncompressed content.
+     */
+    private static class Compressed {
+        final byte[] bytes;
+        final int crc;
+        final long size;
+
+        private Compressed(byte[] bytes, int crc, long size) {
+            this.bytes = bytes;
+            this.crc = crc;
+            this.size = size;
+        }
+
+        static Compressed deflate(byte[] data) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, count);
+                }
+            } finally {
+                deflater.end();
+            }
+            return new Compressed(compressed.toByteArray(), (int) crc.getValue(), data.length);
+        }
+    }
+
+    /**
+     * A central directory record.
+     */
+    static class Entry {
+        String name;
+        byte[] nameBytes;
+        byte[] extra;
+        byte[] comment;
+        short versionMadeBy;
+        short versionNeeded;
+        int flags;
+        int method;
+        short time;
+        short date;
+        int crc;
+        long compressedSize;
+        long size;
+        short internalAttributes;
+        int externalAttributes;
+        long offset;
+
+        Entry copy() {
+            Entry copy = new Entry();
+            copy.name = name;
+            copy.nameBytes = nameBytes;
+            copy.extra = extra;
+            copy.comment = comment;
+            copy.versionMadeBy = versionMadeBy;
+            copy.versionNeeded = versionNeeded;
+            copy.flags = flags;
+            copy.method = method;
+            copy.time = time;
+            copy.date = date;
+            copy.crc = crc;
+            copy.compressedSize = compressedSize;
+            copy.size = size;
+            copy.internalAttributes = internalAttributes;
+            copy.externalAttributes = externalAttributes;
+            copy.offset = offset;
+            return copy;
+        }
+    }
+}
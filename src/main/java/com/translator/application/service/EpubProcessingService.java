@@ -17,118 +17,157 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
- * Service for handling EPUB file processing: parsing, unzipping, updating, and zipping.
+ * Service for handling EPUB file processing: parsing and writing translated copies.
  */
 @Service
 public class EpubProcessingService {
 
     private static final Logger logger = LoggerFactory.getLogger(EpubProcessingService.class);
+    private static final String CONTAINER_PATH = "META-INF/container.xml";
 
     /**
-     * Parses the EPUB file by unzipping it and reading its structure.
+     * Receives the pages of an EPUB while it is being parsed.
+     */
+    public interface PageListener {
+
+        /**
+         * Called once, before any page is read, with the entry names of all spine pages in reading order.
+         */
+        default void onSpine(List<String> pageIds) {
+        }
+
+        /**
+         * Called after each page has been read and added to the book. May block to slow the parser down.
+         */
+        void onPage(Page page) throws InterruptedException;
+    }
+
+    /**
+     * Parses the EPUB file by reading its structure directly from the archive.
      */
     public Book parseEpub(String filePath) throws TranslationException {
-        Path tempDir = null;
+        Book book = new Book(filePath);
+        parseEpub(book, page -> { }, false);
+        return book;
+    }
+
+    /**
+     * Parses the EPUB file of the given book, handing each page to the listener as soon as it is read,
+     * so that later pages are still being parsed while earlier ones are already being processed.
+     * With {@code lazyContent}, pages only record where their content lives and read it from the
+     * archive each time it is requested, so parsed pages do not keep the book in memory.
+     */
+    public void parseEpub(Book book, PageListener listener, boolean lazyContent) throws TranslationException {
+        String filePath = book.getSourceFilePath();
         try {
             File file = new File(filePath);
             if (!file.exists()) {
                 throw new FileNotFoundException("EPUB file not found: " + filePath);
             }
 
-            // Create Book with source path
-            Book book = new Book(filePath);
-
-            // Unzip to temp dir to read structure
-            tempDir = Files.createTempDirectory("epub_parse_" + UUID.randomUUID());
-            unzip(file, tempDir.toFile());
+            try (EpubArchive archive = new EpubArchive(file)) {
+                // Parse container.xml to find OPF
+                if (!archive.contains(CONTAINER_PATH)) {
+                    throw new TranslationException("Invalid EPUB: META-INF/container.xml not found");
+                }
 
-            // Parse container.xml to find OPF
-            File containerFile = new File(tempDir.toFile(), "META-INF/container.xml");
-            if (!containerFile.exists()) {
-                 throw new TranslationException("Invalid EPUB: META-INF/container.xml not found");
-            }
+                String opfPath = parseContainerXml(archive);
+                if (!archive.contains(opfPath)) {
+                    throw new TranslationException("OPF file not found at: " + opfPath);
+                }
 
-            String opfPath = parseContainerXml(containerFile);
-            File opfFile = new File(tempDir.toFile(), opfPath);
-            if (!opfFile.exists()) {
-                throw new TranslationException("OPF file not found at: " + opfPath);
+                // Parse OPF to populate Book pages
+                parseOpf(book, archive, opfPath, listener, lazyContent);
             }
 
-            // Parse OPF to populate Book pages
-            parseOpf(book, opfFile, tempDir.toFile());
-
             logger.info("EPUB parsed: {}, {} pages", file.getName(), book.getTotalPages());
-            return book;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranslationException("EPUB parsing interrupted: " + filePath, e);
         } catch (Exception e) {
             logger.error("Failed to parse EPUB: {}", filePath, e);
             throw new TranslationException("Failed to parse EPUB: " + e.getMessage(), e);
-        } finally {
-            // Clean up temp dir
-            if (tempDir != null) {
-                deleteDirectory(tempDir.toFile());
-            }
         }
     }
 
     /**
-     * Creates a translated EPUB by updating the original files with translated content.
+     * Creates a translated EPUB by copying the original archive and replacing translated pages.
+     * Entries that were not translated are copied in their compressed form without re-deflating.
      */
     public String createTranslatedEpub(Book book, String outputDirectory) throws TranslationException {
-        Path tempDir = null;
+        // Collect translated content
+        Map<String, CompletableFuture<String>> translated = new HashMap<>();
+        for (Page page : book.getPages()) {
+            if (page.isTranslated()) {
+                // Page ID is the relative path from zip root
+                translated.put(page.getId(), CompletableFuture.completedFuture(page.getTranslatedContent()));
+            }
+        }
+        return createTranslatedEpub(book, outputDirectory, translated::get, false);
+    }
+
+    /**
+     * Creates a translated EPUB while pages are still being translated.
+     * The writer asks for each entry's translation when it reaches that entry: {@code null} keeps the
+     * original entry, otherwise it waits for the future, so the output is written in archive order as
+     * pages finish. A future that completes with {@code null} or empty content keeps the original entry;
+     * one that completes exceptionally aborts the copy and removes the partial output file.
+     * In {@code lowMemory} mode a translation is only looked up and compressed once the writer reaches
+     * its entry, instead of as soon as it is ready, so at most one translated page is held in memory.
+     */
+    public String createTranslatedEpub(Book book, String outputDirectory,
+                                       Function<String, CompletableFuture<String>> translatedPages,
+                                       boolean lowMemory) throws TranslationException {
+        File outputFile = null;
         try {
             File outputDir = new File(outputDirectory);
             if (!outputDir.exists()) {
                 outputDir.mkdirs();
             }
 
-            // Unzip original to temp
-            tempDir = Files.createTempDirectory("epub_gen_" + UUID.randomUUID());
-            unzip(new File(book.getSourceFilePath()), tempDir.toFile());
+            String outputFileName = book.getTranslatedFileName();
+            outputFile = new File(outputDir, outputFileName);
 
-            // Update files with translated content
-            for (Page page : book.getPages()) {
-                if (page.isTranslated() && page.getTranslatedContent() != null && !page.getTranslatedContent().isEmpty()) {
-                    // Page ID is the relative path from zip root
-                    File pageFile = new File(tempDir.toFile(), page.getId());
-                    if (pageFile.exists()) {
-                        // Write translated content, preserving UTF-8
-                        Files.writeString(pageFile.toPath(), page.getTranslatedContent(), StandardCharsets.UTF_8);
-                    } else {
-                        logger.warn("Page file not found for replacement: {}", page.getId());
+            // Encode translated content as UTF-8 once it arrives
+            Set<String> requested = ConcurrentHashMap.newKeySet();
+            EpubArchiveWriter writer = lowMemory
+                ? new EpubArchiveWriter(1, false) : new EpubArchiveWriter();
+            Set<String> replaced = writer.write(
+                new File(book.getSourceFilePath()), outputFile, name -> {
+                    CompletableFuture<String> content = translatedPages.apply(name);
+                    if (content == null) {
+                        return null;
                     }
+                    requested.add(name);
+                    return content.thenApply(text -> text != null && !text.isEmpty()
+                        ? text.getBytes(StandardCharsets.UTF_8) : null);
+                });
+            for (Page page : book.getPages()) {
+                if (page.isTranslated() && !requested.contains(page.getId())) {
+                    logger.warn("Page file not found for replacement: {}", page.getId());
                 }
             }
 
-            // Zip to output
-            String outputFileName = book.getTranslatedFileName();
-            File outputFile = new File(outputDir, outputFileName);
-            
-            // Re-zip
-            zip(tempDir.toFile(), outputFile);
-
-            logger.info("Translated EPUB created: {}", outputFile.getAbsolutePath());
+            logger.info("Translated EPUB created: {} ({} entries replaced)", outputFile.getAbsolutePath(), replaced.size());
             return outputFile.getAbsolutePath();
 
         } catch (Exception e) {
             logger.error("Failed to create translated EPUB", e);
-            throw new TranslationException("Failed to create EPUB: " + e.getMessage(), e);
-        } finally {
-             if (tempDir != null) {
-                deleteDirectory(tempDir.toFile());
+            if (outputFile != null && outputFile.exists() && !outputFile.delete()) {
+                logger.warn("Could not delete incomplete output: {}", outputFile.getAbsolutePath());
             }
+            throw new TranslationException("Failed to create EPUB: " + e.getMessage(), e);
         }
     }
 
-    private String parseContainerXml(File containerFile) throws Exception {
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dBuilder.parse(containerFile);
+    private String parseContainerXml(EpubArchive archive) throws Exception {
+        Document doc = parseXml(archive, CONTAINER_PATH);
         doc.getDocumentElement().normalize();
 
         NodeList rootfiles = doc.getElementsByTagName("rootfile");
@@ -139,10 +178,9 @@ public class EpubProcessingService {
         throw new Exception("No rootfile found in container.xml");
     }
 
-    private void parseOpf(Book book, File opfFile, File zipRoot) throws Exception {
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dBuilder.parse(opfFile);
+    private void parseOpf(Book book, EpubArchive archive, String opfPath, PageListener listener,
+                          boolean lazyContent) throws Exception {
+        Document doc = parseXml(archive, opfPath);
         doc.getDocumentElement().normalize();
 
         // Simple Metadata Extraction
@@ -178,134 +216,71 @@ public class EpubProcessingService {
         // Spine: Reading Order
         NodeList itemrefs = doc.getElementsByTagName("itemref");
         if (itemrefs.getLength() == 0) itemrefs = doc.getElementsByTagName("opf:itemref");
-        
-        Path opfDir = opfFile.getParentFile().toPath();
-        Path rootDir = zipRoot.toPath();
 
+        // Resolve entry names relative to zip root, keeping the spine position for page order
+        Map<Integer, String> spine = new LinkedHashMap<>();
         for (int i = 0; i < itemrefs.getLength(); i++) {
             Element itemref = (Element) itemrefs.item(i);
             String idref = itemref.getAttribute("idref");
             String href = manifest.get(idref);
             
             if (href != null) {
-                // Resolve full path relative to zip root
-                Path fullPath = opfDir.resolve(href).normalize();
-                
+                spine.put(i, EpubArchive.resolve(opfPath, href));
+            }
+        }
+        listener.onSpine(new ArrayList<>(spine.values()));
+
+        for (Map.Entry<Integer, String> item : spine.entrySet()) {
+            int i = item.getKey();
+            String relativePath = item.getValue();
+            
+            Page page;
+            if (lazyContent) {
+                if (!archive.contains(relativePath)) {
+                    throw new FileNotFoundException("Entry not found in EPUB: " + relativePath);
+                }
+                File file = archive.getFile();
+                page = new Page(relativePath, i + 1, "Page " + (i + 1), () -> readEntry(file, relativePath));
+            } else {
                 // Read content
-                String content = Files.readString(fullPath, StandardCharsets.UTF_8);
-                
-                // Calculate ID (relative path from zip root) for Page object
-                String relativePath = rootDir.relativize(fullPath).toString().replace("\\", "/");
+                String content = archive.readString(relativePath);
                 
-                Page page = new Page(
+                page = new Page(
                     relativePath, // ID is the relative file path
                     i + 1,
                     "Page " + (i + 1), // Simple title
                     content
                 );
-                book.addPage(page);
             }
+            book.addPage(page);
+            listener.onPage(page);
         }
     }
 
-    private String getTagValue(Document doc, String tagName) {
-        NodeList list = doc.getElementsByTagName(tagName);
-        if (list.getLength() > 0) {
-            return list.item(0).getTextContent();
-        }
-        return null;
-    }
-
-    private void unzip(File zipFile, File destDir) throws IOException {
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
-            ZipEntry zipEntry = zis.getNextEntry();
-            while (zipEntry != null) {
-                File newFile = newFile(destDir, zipEntry);
-                if (zipEntry.isDirectory()) {
-                    if (!newFile.isDirectory() && !newFile.mkdirs()) {
-                        throw new IOException("Failed to create directory " + newFile);
-                    }
-                } else {
-                    File parent = newFile.getParentFile();
-                    if (!parent.isDirectory() && !parent.mkdirs()) {
-                        throw new IOException("Failed to create directory " + parent);
-                    }
-                    try (FileOutputStream fos = new FileOutputStream(newFile)) {
-                        byte[] buffer = new byte[1024];
-                        int len;
-                        while ((len = zis.read(buffer)) > 0) {
-                            fos.write(buffer, 0, len);
-                        }
-                    }
-                }
-                zipEntry = zis.getNextEntry();
-            }
-        }
-    }
-    
-    private File newFile(File destinationDir, ZipEntry zipEntry) throws IOException {
-        File destFile = new File(destinationDir, zipEntry.getName());
-        String destDirPath = destinationDir.getCanonicalPath();
-        String destFilePath = destFile.getCanonicalPath();
-        if (!destFilePath.startsWith(destDirPath + File.separator)) {
-            throw new IOException("Entry is outside of the target dir: " + zipEntry.getName());
+    /**
+     * Reads a page on demand, opening the archive only for the duration of the read.
+     */
+    private static String readEntry(File file, String entryName) {
+        try (EpubArchive archive = new EpubArchive(file)) {
+            return archive.readString(entryName);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + entryName + " from " + file.getName(), e);
         }
-        return destFile;
     }
 
-    private void zip(File sourceDir, File zipFile) throws IOException {
-        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile))) {
-            Path sourcePath = sourceDir.toPath();
-            
-            // Handle mimetype specifically if it exists to be first and uncompressed
-            File mimetypeFile = new File(sourceDir, "mimetype");
-            if (mimetypeFile.exists()) {
-                 ZipEntry mimetypeEntry = new ZipEntry("mimetype");
-                 mimetypeEntry.setMethod(ZipEntry.STORED);
-                 mimetypeEntry.setSize(mimetypeFile.length());
-                 mimetypeEntry.setCrc(calculateCrc(mimetypeFile));
-                 zos.putNextEntry(mimetypeEntry);
-                 Files.copy(mimetypeFile.toPath(), zos);
-                 zos.closeEntry();
-            }
-            
-            Files.walk(sourcePath)
-                .filter(path -> !Files.isDirectory(path))
-                .filter(path -> !path.getFileName().toString().equals("mimetype"))
-                .forEach(path -> {
-                    ZipEntry zipEntry = new ZipEntry(sourcePath.relativize(path).toString().replace("\\", "/"));
-                    try {
-                        zos.putNextEntry(zipEntry);
-                        Files.copy(path, zos);
-                        zos.closeEntry();
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
-                });
-        }
-    }
-    
-    private long calculateCrc(File file) throws IOException {
-        try (InputStream in = new FileInputStream(file)) {
-            java.util.zip.CRC32 crc = new java.util.zip.CRC32();
-            byte[] buffer = new byte[1024];
-            int count;
-            while ((count = in.read(buffer)) != -1) {
-                crc.update(buffer, 0, count);
-            }
-            return crc.getValue();
+    private Document parseXml(EpubArchive archive, String entryName) throws Exception {
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        try (InputStream in = archive.open(entryName)) {
+            return dBuilder.parse(in);
         }
     }
 
-    private void deleteDirectory(File file) {
-        if (file.isDirectory()) {
-            File[] entries = file.listFiles();
-            if (entries != null) {
-                for (File entry : entries) {
-                    deleteDirectory(entry);
-                }
-            }
+    private String getTagValue(Document doc, String tagName) {
+        NodeList list = doc.getElementsByTagName(tagName);
+        if (list.getLength() > 0) {
+            return list.item(0).getTextContent();
         }
-        file.delete();
+        return null;
     }
 }
\ No newline at end of file
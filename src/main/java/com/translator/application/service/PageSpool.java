@@ -0,0 +1,67 @@
+package com.translator.application.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 译文暂存区
+ * 等待写出的译文每页一个临时文件，需要时再读回，已完成的页面不常驻内存；关闭时删除全部文件
+ */
+class PageSpool implements Closeable {
+    
+    private final Path directory;
+    private final AtomicInteger counter = new AtomicInteger();
+    private volatile boolean closed;
+    
+    PageSpool() throws IOException {
+        this.directory = Files.createTempDirectory("epub-spool-");
+    }
+    
+    /**
+     * 写入一页译文，返回每次调用都从磁盘读回译文的读取器
+     */
+    Supplier<String> write(String content) throws IOException {
+        Path file = directory.resolve(counter.incrementAndGet() + ".spool");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return () -> read(file);
+    }
+    
+    /**
+     * 暂存区关闭后返回null
+     */
+    private String read(Path file) {
+        if (closed) {
+            return null;
+        }
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            if (closed) {
+                return null;
+            }
+            throw new UncheckedIOException("无法读取暂存的译文: " + file.getFileName(), e);
+        }
+    }
+    
+    Path getDirectory() {
+        return directory;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
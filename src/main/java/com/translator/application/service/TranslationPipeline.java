@@ -0,0 +1,274 @@
+package com.translator.application.service;
+
+import com.translator.domain.exception.TranslationException;
+import com.translator.domain.model.Book;
+import com.translator.domain.model.Page;
+import com.translator.domain.repository.TranslationCheckpointRepository;
+import com.translator.domain.service.TranslationService;
+import com.translator.domain.valueobject.TranslationProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 书籍翻译流水线
+ * 解析、翻译、写出三个阶段同时进行：解析线程逐页把页面放入有界队列，翻译服务边取边翻译；
+ * 写出线程拿到书脊顺序后立即开始复制原始归档，按条目顺序等待各页译文，页面及其之前的条目就绪后即写出。
+ * 队列已满时解析线程阻塞，翻译并发已满时翻译服务不再取页面，形成逐级背压
+ *
+ * 低内存模式下页面只记录在归档中的位置，翻译端取走时才读取原文；完成的译文转存到磁盘，
+ * 写出线程到达该条目时再读回，堆中只保留正在翻译和正在写出的页面，与书的大小无关
+ *
+ * 每个实例只翻译一本书
+ */
+class TranslationPipeline {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TranslationPipeline.class);
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    // 队列结束标记
+    private static final Page END = new Page("", 0, "", "");
+    
+    private final Book book;
+    private final TranslationService translationService;
+    private final EpubProcessingService epubProcessingService;
+    private final TranslationCheckpointRepository checkpointRepository;
+    private final BlockingQueue<Page> queue;
+    private final int queueCapacity;
+    private final boolean lowMemory;
+    // 书脊中的每个页面，完成翻译时以该页面结束；未翻译的页面以null结束，写出时保留原文
+    private final Map<String, CompletableFuture<Page>> outputs = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> spine = new CompletableFuture<>();
+    // 检查点中尚未用到的译文，用过即移除，不在整个翻译期间占用内存
+    private final Map<String, String> checkpoint = new ConcurrentHashMap<>();
+    private final Set<String> resumedPages = ConcurrentHashMap.newKeySet();
+    private PageSpool spool;
+    private volatile TranslationException parseFailure;
+    private volatile boolean cancelled;
+    private boolean ended;
+    
+    /**
+     * @param queueCapacity 已解析、等待翻译的页面数上限
+     * @param lowMemory 是否使用低内存模式
+     */
+    TranslationPipeline(Book book, TranslationService translationService, EpubProcessingService epubProcessingService,
+                        TranslationCheckpointRepository checkpointRepository, int queueCapacity, boolean lowMemory) {
+        this.book = book;
+        this.translationService = translationService;
+        this.epubProcessingService = epubProcessingService;
+        this.checkpointRepository = checkpointRepository;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        this.lowMemory = lowMemory;
+    }
+    
+    /**
+     * 解析、翻译并写出整本书，返回输出文件路径
+     * 检查点中已有的页面直接使用保存的译文，不进入翻译队列；每完成一页都记录到检查点
+     * 任一阶段失败时停止其余阶段，并删除未写完的输出文件
+     */
+    String run(TranslationProvider provider, String outputDirectory) throws TranslationException {
+        if (!lowMemory) {
+            return execute(provider, outputDirectory);
+        }
+        try (PageSpool pageSpool = new PageSpool()) {
+            spool = pageSpool;
+            logger.info("低内存模式：原文按需读取，译文暂存于 {}", pageSpool.getDirectory());
+            try {
+                return execute(provider, outputDirectory);
+            } finally {
+                // 暂存目录随后删除，书籍仍保存在仓库中，页面改为报告译文已释放
+                book.getPages().forEach(Page::releaseSpilledContent);
+            }
+        } catch (IOException e) {
+            throw new TranslationException("无法创建译文暂存目录: " + e.getMessage(), e);
+        }
+    }
+    
+    private String execute(TranslationProvider provider, String outputDirectory) throws TranslationException {
+        checkpoint.putAll(checkpointRepository.findTranslatedPages(book, provider));
+        book.onPageTranslated(page -> {
+            if (!resumedPages.contains(page.getId())) {
+                checkpointRepository.save(book, provider, page);
+            }
+            if (spool != null) {
+                spill(page);
+            }
+            CompletableFuture<Page> output = outputs.get(page.getId());
+            if (output != null) {
+                output.complete(page);
+            }
+        });
+        
+        Thread parser = newThread("epub-parser-", this::parse);
+        parser.start();
+        CompletableFuture<String> written = spine.thenApplyAsync(ignored -> write(outputDirectory),
+            runnable -> newThread("epub-writer-", runnable).start());
+        
+        try {
+            translationService.translateStream(this::take, provider);
+            int untaken = 0;
+            for (List<Page> rest = take(Integer.MAX_VALUE); !rest.isEmpty(); rest = take(Integer.MAX_VALUE)) {
+                untaken += rest.size();
+            }
+            if (untaken > 0) {
+                logger.warn("翻译服务未取走{}个页面，这些页面保留原文", untaken);
+            }
+            parser.join();
+            if (parseFailure != null) {
+                throw parseFailure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            TranslationException failure = new TranslationException("翻译被中断", e);
+            abort(parser, written, failure);
+            throw failure;
+        } catch (TranslationException | RuntimeException e) {
+            abort(parser, written, e);
+            throw e;
+        }
+        if (!resumedPages.isEmpty()) {
+            logger.info("从检查点恢复 {}/{} 个已翻译页面", resumedPages.size(), book.getTotalPages());
+        }
+        
+        // 没有得到译文的页面保留原文
+        outputs.values().forEach(output -> output.complete(null));
+        try {
+            return written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranslationException("等待写出EPUB时被中断", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+    
+    private void parse() {
+        try {
+            epubProcessingService.parseEpub(book, new EpubProcessingService.PageListener() {
+                @Override
+                public void onSpine(List<String> pageIds) {
+                    pageIds.forEach(id -> outputs.put(id, new CompletableFuture<>()));
+                    spine.complete(null);
+                }
+                
+                @Override
+                public void onPage(Page page) throws InterruptedException {
+                    String saved = checkpoint.remove(page.getId());
+                    if (saved != null) {
+                        resumedPages.add(page.getId());
+                        page.translate(saved);
+                    } else if (!cancelled) {
+                        queue.put(page);
+                    }
+                }
+            }, lowMemory);
+        } catch (TranslationException e) {
+            parseFailure = e;
+            spine.completeExceptionally(e);
+        } finally {
+            try {
+                if (!cancelled) {
+                    queue.put(END);
+                }
+            } catch (InterruptedException e) {
+                // 流水线已取消，不再需要结束标记
+            }
+        }
+    }
+    
+    /**
+     * 取出已解析的页面，队列为空时等待解析线程
+     */
+    private List<Page> take(int maxPages) throws InterruptedException {
+        if (lowMemory) {
+            // 取走的页面会立即读取原文，数量不超过队列容量
+            maxPages = Math.min(maxPages, queueCapacity);
+        }
+        List<Page> pages = new ArrayList<>();
+        if (ended) {
+            return pages;
+        }
+        Page page = queue.take();
+        while (page != END) {
+            pages.add(page);
+            if (pages.size() >= maxPages || (page = queue.poll()) == null) {
+                return pages;
+            }
+        }
+        ended = true;
+        return pages;
+    }
+    
+    private String write(String outputDirectory) {
+        try {
+            return epubProcessingService.createTranslatedEpub(book, outputDirectory, this::translationOf, lowMemory);
+        } catch (TranslationException e) {
+            throw new CompletionException(e);
+        }
+    }
+    
+    /**
+     * 页面的译文，页面完成后可用；不在书脊中的条目返回null
+     * 低内存模式下写出线程到达该条目时才调用，译文此时才从磁盘读回
+     */
+    private CompletableFuture<String> translationOf(String pageId) {
+        CompletableFuture<Page> output = outputs.get(pageId);
+        if (output == null) {
+            return null;
+        }
+        return output.thenApply(page -> page != null && page.isTranslated() ? page.getTranslatedContent() : null);
+    }
+    
+    /**
+     * 把译文转存到磁盘并释放内存中的副本；转存失败时保留在内存中
+     */
+    private void spill(Page page) {
+        try {
+            page.spillTranslatedContent(spool.write(page.getTranslatedContent()));
+        } catch (IOException e) {
+            logger.warn("译文转存失败，保留在内存中: {} - {}", page.getId(), e.getMessage());
+        }
+    }
+    
+    private void abort(Thread parser, CompletableFuture<String> written, Exception cause) {
+        cancelled = true;
+        queue.clear();
+        parser.interrupt();
+        // 写出线程尚未开始时不再开始；已开始的在等待下一页时失败并删除未写完的文件
+        spine.completeExceptionally(cause);
+        outputs.values().forEach(output -> output.completeExceptionally(cause));
+        try {
+            parser.join();
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.debug("已停止写出EPUB: {}", e.getCause().getMessage());
+        }
+    }
+    
+    private static TranslationException unwrap(Throwable cause) {
+        if (cause instanceof TranslationException) {
+            return (TranslationException) cause;
+        }
+        return new TranslationException("生成EPUB失败: " + cause.getMessage(), cause);
+    }
+    
+    private static Thread newThread(String prefix, Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -3,9 +3,11 @@ package com.translator.domain.model;
 import com.translator.domain.valueobject.BookMetadata;
 import com.translator.domain.valueobject.TranslationStatus;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * 书籍聚合根
@@ -17,14 +19,16 @@ public class Book {
     private final String sourceFilePath;
     private String translatedFileName;
     private BookMetadata metadata;
+    // 解析线程逐页添加的同时，翻译和进度查询线程会读取
     private List<Page> pages;
     private TranslationStatus translationStatus;
+    private Consumer<Page> pageTranslatedListener;
 
     public Book(String sourceFilePath) {
         this.id = UUID.randomUUID().toString();
         this.sourceFilePath = sourceFilePath;
         this.originalFileName = new java.io.File(sourceFilePath).getName();
-        this.pages = new ArrayList<>();
+        this.pages = new CopyOnWriteArrayList<>();
         this.translationStatus = TranslationStatus.PENDING;
         generateTranslatedFileName();
     }
@@ -40,6 +44,19 @@ public class Book {
 
     public void addPage(Page page) {
         this.pages.add(page);
+        if (pageTranslatedListener != null) {
+            page.setTranslationListener(pageTranslatedListener);
+        }
+    }
+
+    /**
+     * 注册页面完成翻译时的回调，在执行翻译的线程上调用
+     */
+    public void onPageTranslated(Consumer<Page> listener) {
+        this.pageTranslatedListener = listener;
+        for (Page page : pages) {
+            page.setTranslationListener(listener);
+        }
     }
 
     public void updateMetadata(BookMetadata metadata) {
@@ -70,9 +87,33 @@ public class Book {
         return (int) pages.stream().filter(Page::isTranslated).count();
     }
 
+    /**
+     * 翻译单元总数，超长页面按段落组拆分后每组算一个单元
+     */
+    public int getTotalUnits() {
+        return pages.stream().mapToInt(Page::getTotalUnits).sum();
+    }
+
+    public int getTranslatedUnits() {
+        return pages.stream().mapToInt(Page::getCompletedUnits).sum();
+    }
+
+    /**
+     * 尚未完成的页面中已流式收到的译文字符数
+     */
+    public int getStreamedCharacters() {
+        return pages.stream()
+            .filter(page -> !page.isTranslated())
+            .mapToInt(Page::getPartialTranslationLength)
+            .sum();
+    }
+
+    /**
+     * 按翻译单元计算的进度，超长页面翻译过程中进度也会推进
+     */
     public double getTranslationProgress() {
         if (pages.isEmpty()) return 0.0;
-        return (double) getTranslatedPages() / getTotalPages() * 100;
+        return (double) getTranslatedUnits() / getTotalUnits() * 100;
     }
 
     // Getters
@@ -96,8 +137,11 @@ public class Book {
         return metadata;
     }
 
+    /**
+     * 页面的只读视图，不复制；遍历时看到的是开始遍历时的页面
+     */
     public List<Page> getPages() {
-        return new ArrayList<>(pages);
+        return Collections.unmodifiableList(pages);
     }
 
     public TranslationStatus getTranslationStatus() {
@@ -1,5 +1,9 @@
 package com.translator.domain.model;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 /**
  * 页面实体
  * 表示书籍中的一个页面或章节
@@ -9,29 +13,138 @@ public class Page {
     private final int order;
     private final String title;
     private String originalContent;
-    private String translatedContent;
-    private boolean isTranslated;
+    // 按需读取原文的来源；设置时原文不常驻内存，每次使用时重新读取
+    private final Supplier<String> contentSource;
+    // 页面可能由翻译线程写入、由进度查询线程读取
+    private volatile String translatedContent;
+    // 译文转存到内存之外后的读取方式
+    private volatile Supplier<String> translatedContentSource;
+    // 转存的译文已随转存处一起删除，页面仍是已翻译状态但不再持有译文
+    private volatile boolean translatedContentReleased;
+    private volatile boolean isTranslated;
+    // 流式翻译过程中已收到的部分译文，翻译完成后清空
+    private final StringBuffer partialTranslation = new StringBuffer();
+    // 页面拆成的翻译单元（段落组）数与已完成的单元数，用于细粒度进度；未拆分时视为一个单元
+    private volatile int totalUnits = 1;
+    private final AtomicInteger completedUnits = new AtomicInteger();
+    // 页面完成翻译时的回调，由所属书籍设置
+    private volatile Consumer<Page> translationListener;
 
     public Page(String id, int order, String title, String originalContent) {
+        this(id, order, title, originalContent, null);
+    }
+
+    /**
+     * 创建原文按需读取的页面，用于低内存模式：页面本身只保存位置信息
+     */
+    public Page(String id, int order, String title, Supplier<String> contentSource) {
+        this(id, order, title, null, contentSource);
+    }
+
+    private Page(String id, int order, String title, String originalContent, Supplier<String> contentSource) {
         this.id = id;
         this.order = order;
         this.title = title;
         this.originalContent = originalContent;
+        this.contentSource = contentSource;
         this.translatedContent = "";
         this.isTranslated = false;
     }
 
     public void translate(String translatedContent) {
         this.translatedContent = translatedContent;
+        this.translatedContentSource = null;
+        this.translatedContentReleased = false;
         this.isTranslated = true;
+        this.partialTranslation.setLength(0);
+
+        Consumer<Page> listener = translationListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * 开始按单元翻译，页面被拆成 units 个段落组分别翻译
+     */
+    public void startUnits(int units) {
+        this.totalUnits = Math.max(1, units);
+        this.completedUnits.set(0);
+    }
+
+    /**
+     * 记录一个单元完成，页面整体完成仍以 translate 为准
+     */
+    public void completeUnit() {
+        completedUnits.incrementAndGet();
+    }
+
+    public int getTotalUnits() {
+        return totalUnits;
+    }
+
+    public int getCompletedUnits() {
+        return isTranslated ? totalUnits : Math.min(completedUnits.get(), totalUnits);
+    }
+
+    void setTranslationListener(Consumer<Page> translationListener) {
+        this.translationListener = translationListener;
+    }
+
+    /**
+     * 追加流式返回的部分译文，用于展示进度，不影响最终译文
+     */
+    public void appendPartialTranslation(String chunk) {
+        if (!isTranslated) {
+            partialTranslation.append(chunk);
+        }
+    }
+
+    public void clearPartialTranslation() {
+        partialTranslation.setLength(0);
+    }
+
+    public String getPartialTranslation() {
+        return partialTranslation.toString();
+    }
+
+    public int getPartialTranslationLength() {
+        return partialTranslation.length();
+    }
+
+    /**
+     * 译文已转存到内存之外（如磁盘），释放内存中的副本，之后按需从 source 读取
+     */
+    public void spillTranslatedContent(Supplier<String> source) {
+        this.translatedContentSource = source;
+        this.translatedContent = null;
+    }
+
+    /**
+     * 转存处即将删除时调用：已转存的译文不再可读，页面改为报告译文已释放
+     */
+    public void releaseSpilledContent() {
+        if (translatedContentSource != null) {
+            this.translatedContentReleased = true;
+            this.translatedContentSource = null;
+        }
+    }
+
+    /**
+     * 已翻译但译文已释放（已写入输出文件、转存处已删除）
+     */
+    public boolean isTranslatedContentReleased() {
+        return translatedContentReleased;
     }
 
     public boolean hasContent() {
-        return originalContent != null && !originalContent.trim().isEmpty();
+        String content = getOriginalContent();
+        return content != null && !content.trim().isEmpty();
     }
 
     public int getContentLength() {
-        return originalContent != null ? originalContent.length() : 0;
+        String content = getOriginalContent();
+        return content != null ? content.length() : 0;
     }
 
     // Getters
@@ -47,12 +160,30 @@ public class Page {
         return title;
     }
 
+    /**
+     * 原文；按需读取的页面每次调用都从来源重新读取
+     */
     public String getOriginalContent() {
+        if (originalContent == null && contentSource != null) {
+            return contentSource.get();
+        }
         return originalContent;
     }
 
+    /**
+     * 译文；已转存的译文从转存处读取，已释放时返回null
+     */
     public String getTranslatedContent() {
-        return translatedContent;
+        Supplier<String> source = translatedContentSource;
+        if (source != null) {
+            return source.get();
+        }
+        String content = translatedContent;
+        // 读取期间刚好被转存
+        if (content == null && (source = translatedContentSource) != null) {
+            return source.get();
+        }
+        return content;
     }
 
     public boolean isTranslated() {
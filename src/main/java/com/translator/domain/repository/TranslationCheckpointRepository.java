@@ -0,0 +1,35 @@
+package com.translator.domain.repository;
+
+import com.translator.domain.model.Book;
+import com.translator.domain.model.Page;
+import com.translator.domain.valueobject.TranslationProvider;
+
+import java.util.Map;
+
+/**
+ * 翻译检查点仓库接口
+ * 逐页记录已完成的译文，翻译中断后再次执行时据此跳过已完成的页面
+ */
+public interface TranslationCheckpointRepository {
+    
+    /**
+     * 查找书籍已完成页面的译文，键为页面ID
+     * 只返回以相同的提供商、模型、提示词和目标语言翻译的页面，配置不同的检查点被丢弃
+     */
+    Map<String, String> findTranslatedPages(Book book, TranslationProvider provider);
+    
+    /**
+     * 记录一个以指定提供商的配置翻译完成的页面
+     */
+    void save(Book book, TranslationProvider provider, Page page);
+    
+    /**
+     * 翻译未完成时结束记录，释放占用的资源，检查点保留以便之后续译
+     */
+    void close(Book book);
+    
+    /**
+     * 删除书籍的检查点
+     */
+    void delete(Book book);
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.translator.domain.service;
+
+import com.translator.domain.model.Page;
+
+import java.util.List;
+
+/**
+ * 陆续到达的页面
+ * 由解析端逐页放入，翻译端边取边翻译，不必等待整本书解析完成
+ */
+public interface PageStream {
+    
+    /**
+     * 取出已到达的页面，暂时没有页面时阻塞等待
+     * @param maxPages 最多取出的页面数
+     * @return 已到达的页面；返回空列表表示不会再有页面
+     */
+    List<Page> take(int maxPages) throws InterruptedException;
+}
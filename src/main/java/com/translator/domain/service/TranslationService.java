@@ -26,6 +26,22 @@ public interface TranslationService {
      */
     void translatePages(java.util.List<Page> pages, TranslationProvider provider) throws TranslationException;
     
+    /**
+     * 翻译陆续到达的页面，直到页面流结束
+     * 默认实现每次取出已到达的全部页面并批量翻译；实现可以边取边翻译，并在并发已满时暂停取页面
+     */
+    default void translateStream(PageStream pages, TranslationProvider provider) throws TranslationException {
+        try {
+            java.util.List<Page> arrived;
+            while (!(arrived = pages.take(Integer.MAX_VALUE)).isEmpty()) {
+                translatePages(arrived, provider);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranslationException("翻译被中断", e);
+        }
+    }
+    
     /**
      * 检测文本语言
      */
@@ -33,6 +49,7 @@ public interface TranslationService {
     
     /**
      * 检查翻译服务是否可用
+     * 实现应读取缓存的健康状态并立即返回，不在调用线程上发出网络请求
      */
     boolean isServiceAvailable(TranslationProvider provider);
 }
\ No newline at end of file
@@ -34,11 +34,33 @@ public class TranslationProperties {
     }
     
     public static class ProviderConfig {
+        // 单次请求 max_tokens 的下限，避免很短的输入也被截断
+        private static final int MIN_OUTPUT_TOKENS = 64;
+        
         private String baseUrl;
         private String apiKey;
         private String model;
         private int maxTokens = 2000;
         private double temperature = 0.3;
+        // 单次请求的输入token预算
+        private int maxInputTokens = 4000;
+        // 预计输出token与输入token之比，用于保证输出不超过maxTokens
+        private double outputTokenRatio = 1.5;
+        // 使用SSE流式返回，边生成边写入页面
+        private boolean stream = false;
+        // 每分钟请求数和token数配额，0表示从响应头和429中自动学习
+        private int requestsPerMinute = 0;
+        private int tokensPerMinute = 0;
+        // 连接池：每个提供商的最大连接数、连接超时、空闲回收和连接存活时间（毫秒）
+        private int maxConnections = 20;
+        private long connectTimeout = 10000;
+        private long idleTimeout = 30000;
+        private long connectionTimeToLive = 300000;
+        // 启动时预先建立的连接数
+        private int warmupConnections = 2;
+        // 响应超时 = 基础时间 + 每个预计输出token的时间，非流式请求要等整段生成完才有响应
+        private long responseTimeout = 30000;
+        private long responseTimeoutPerToken = 40;
         
         // Getters and Setters
         public String getBaseUrl() {
@@ -80,13 +102,194 @@ public class TranslationProperties {
         public void setTemperature(double temperature) {
             this.temperature = temperature;
         }
+        
+        public int getMaxInputTokens() {
+            return maxInputTokens;
+        }
+        
+        public void setMaxInputTokens(int maxInputTokens) {
+            this.maxInputTokens = maxInputTokens;
+        }
+        
+        public double getOutputTokenRatio() {
+            return outputTokenRatio;
+        }
+        
+        public void setOutputTokenRatio(double outputTokenRatio) {
+            this.outputTokenRatio = outputTokenRatio;
+        }
+        
+        public boolean isStream() {
+            return stream;
+        }
+        
+        public void setStream(boolean stream) {
+            this.stream = stream;
+        }
+        
+        public int getRequestsPerMinute() {
+            return requestsPerMinute;
+        }
+        
+        public void setRequestsPerMinute(int requestsPerMinute) {
+            this.requestsPerMinute = requestsPerMinute;
+        }
+        
+        public int getTokensPerMinute() {
+            return tokensPerMinute;
+        }
+        
+        public void setTokensPerMinute(int tokensPerMinute) {
+            this.tokensPerMinute = tokensPerMinute;
+        }
+        
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+        
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+        
+        public long getConnectTimeout() {
+            return connectTimeout;
+        }
+        
+        public void setConnectTimeout(long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+        
+        public long getIdleTimeout() {
+            return idleTimeout;
+        }
+        
+        public void setIdleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+        
+        public long getConnectionTimeToLive() {
+            return connectionTimeToLive;
+        }
+        
+        public void setConnectionTimeToLive(long connectionTimeToLive) {
+            this.connectionTimeToLive = connectionTimeToLive;
+        }
+        
+        public int getWarmupConnections() {
+            return warmupConnections;
+        }
+        
+        public void setWarmupConnections(int warmupConnections) {
+            this.warmupConnections = warmupConnections;
+        }
+        
+        public long getResponseTimeout() {
+            return responseTimeout;
+        }
+        
+        public void setResponseTimeout(long responseTimeout) {
+            this.responseTimeout = responseTimeout;
+        }
+        
+        public long getResponseTimeoutPerToken() {
+            return responseTimeoutPerToken;
+        }
+        
+        public void setResponseTimeoutPerToken(long responseTimeoutPerToken) {
+            this.responseTimeoutPerToken = responseTimeoutPerToken;
+        }
+        
+        /**
+         * 按输入大小计算响应超时：预计输出token数不超过 maxTokens
+         */
+        public long getResponseTimeoutFor(int inputTokens) {
+            long expectedOutput = (long) Math.ceil(inputTokens * outputTokenRatio);
+            if (maxTokens > 0) {
+                expectedOutput = Math.min(expectedOutput, maxTokens);
+            }
+            return responseTimeout + responseTimeoutPerToken * expectedOutput;
+        }
+        
+        /**
+         * 按输入大小确定单次请求的 max_tokens：预计输出留出50%余量，不超过 maxTokens
+         * 较小的 max_tokens 让服务端更早调度请求，估计不足导致截断时由调用方切分重试
+         */
+        public int getMaxTokensFor(int inputTokens) {
+            if (outputTokenRatio <= 0) {
+                return maxTokens;
+            }
+            long sized = (long) Math.ceil(inputTokens * outputTokenRatio * 1.5) + MIN_OUTPUT_TOKENS;
+            if (maxTokens > 0) {
+                sized = Math.min(sized, maxTokens);
+            }
+            return (int) Math.min(sized, Integer.MAX_VALUE);
+        }
+        
+        /**
+         * 单次请求可打包的输入token数：同时受输入预算和输出上限约束
+         */
+        public int getBatchTokenBudget() {
+            int budget = maxInputTokens;
+            if (maxTokens > 0 && outputTokenRatio > 0) {
+                budget = Math.min(budget, (int) (maxTokens / outputTokenRatio));
+            }
+            return Math.max(1, budget);
+        }
     }
     
     public static class TranslationSettings {
         private String defaultProvider = "openai";
+        /**
+         * 已由按token预算打包取代（见 ProviderConfig.maxInputTokens），仅为兼容旧配置保留
+         */
+        @Deprecated
         private int batchSize = 1;
+        private int maxSegmentsPerBatch = 20;
+        // 批量响应中缺失或无效的片段单独重新请求的轮数
+        private int segmentRetryCount = 2;
         private int retryCount = 3;
         private long retryDelay = 1000;
+        private int maxConcurrency = 4;
+        // 翻译记忆库，默认关闭，启用后写入 memoryPath
+        private boolean memoryEnabled = false;
+        private String memoryPath = System.getProperty("user.home") + "/.epub-translator/translation-memory.jsonl";
+        private int memoryMaxEntries = 100000;
+        // 进程内片段缓存的容量，同时合并正在进行的相同片段请求
+        private int segmentCacheSize = 10000;
+        // 只抽取XHTML中的文本段翻译，标记结构保持不变
+        private boolean htmlAware = true;
+        // 发送前识别片段语言，已是目标语言或没有文字的片段原样保留
+        private boolean languageDetectionEnabled = true;
+        private String targetLanguage = "zh";
+        // 翻译检查点，进程中断后可从已完成的页面继续
+        private boolean checkpointEnabled = true;
+        private String checkpointDirectory = System.getProperty("user.home") + "/.epub-translator/checkpoints";
+        // 低内存模式：原文按需从归档读取，译文暂存到磁盘，堆内存只与同时翻译的页面数有关
+        private boolean lowMemoryMode = false;
+        // 批次失败时改用其他已配置的提供商重试该批次
+        private boolean failoverEnabled = true;
+        private int unhealthyThreshold = 3;
+        private long unhealthyCooldown = 30000;
+        // 后台健康探测的间隔和探测结果的有效期，间隔为0时只在结果过期后按需探测
+        private long healthProbeInterval = 60000;
+        private long healthProbeTtl = 180000;
+        // 重试退避上限，以及所有提供商共享的重试预算
+        private long maxRetryDelay = 30000;
+        private double retryBudgetRatio = 0.2;
+        private int retryBudgetMax = 20;
+        // 熔断器：连续服务端故障达到阈值后，在打开时间内直接失败
+        private int circuitFailureThreshold = 5;
+        private long circuitOpenDuration = 30000;
+        // 对冲请求：首选提供商超过近期耗时分位数仍未返回时，同时发给另一个提供商
+        private boolean hedgeEnabled = false;
+        private double hedgeQuantile = 0.95;
+        private double hedgeBudgetRatio = 0.1;
+        private int hedgeBudgetMax = 10;
+        // 同一本书的批次按吞吐和限流余量分配给所有可用的提供商
+        private boolean loadBalancingEnabled = false;
+        // 传输层：classic 为连接池阻塞式客户端，async 为 java.net.http 非阻塞客户端（支持HTTP/2）
+        private String transport = "classic";
+        private int asyncThreads = 4;
         
         // Getters and Setters
         public String getDefaultProvider() {
@@ -97,14 +300,32 @@ public class TranslationProperties {
             this.defaultProvider = defaultProvider;
         }
         
+        @Deprecated
         public int getBatchSize() {
             return batchSize;
         }
         
+        @Deprecated
         public void setBatchSize(int batchSize) {
             this.batchSize = batchSize;
         }
         
+        public int getMaxSegmentsPerBatch() {
+            return maxSegmentsPerBatch;
+        }
+        
+        public void setMaxSegmentsPerBatch(int maxSegmentsPerBatch) {
+            this.maxSegmentsPerBatch = maxSegmentsPerBatch;
+        }
+        
+        public int getSegmentRetryCount() {
+            return segmentRetryCount;
+        }
+        
+        public void setSegmentRetryCount(int segmentRetryCount) {
+            this.segmentRetryCount = segmentRetryCount;
+        }
+        
         public int getRetryCount() {
             return retryCount;
         }
@@ -120,6 +341,230 @@ public class TranslationProperties {
         public void setRetryDelay(long retryDelay) {
             this.retryDelay = retryDelay;
         }
+        
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+        
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+        
+        public boolean isMemoryEnabled() {
+            return memoryEnabled;
+        }
+        
+        public void setMemoryEnabled(boolean memoryEnabled) {
+            this.memoryEnabled = memoryEnabled;
+        }
+        
+        public String getMemoryPath() {
+            return memoryPath;
+        }
+        
+        public void setMemoryPath(String memoryPath) {
+            this.memoryPath = memoryPath;
+        }
+        
+        public int getMemoryMaxEntries() {
+            return memoryMaxEntries;
+        }
+        
+        public void setMemoryMaxEntries(int memoryMaxEntries) {
+            this.memoryMaxEntries = memoryMaxEntries;
+        }
+        
+        public int getSegmentCacheSize() {
+            return segmentCacheSize;
+        }
+        
+        public void setSegmentCacheSize(int segmentCacheSize) {
+            this.segmentCacheSize = segmentCacheSize;
+        }
+        
+        public boolean isHtmlAware() {
+            return htmlAware;
+        }
+        
+        public void setHtmlAware(boolean htmlAware) {
+            this.htmlAware = htmlAware;
+        }
+        
+        public boolean isLanguageDetectionEnabled() {
+            return languageDetectionEnabled;
+        }
+        
+        public void setLanguageDetectionEnabled(boolean languageDetectionEnabled) {
+            this.languageDetectionEnabled = languageDetectionEnabled;
+        }
+        
+        public String getTargetLanguage() {
+            return targetLanguage;
+        }
+        
+        public void setTargetLanguage(String targetLanguage) {
+            this.targetLanguage = targetLanguage;
+        }
+        
+        public boolean isCheckpointEnabled() {
+            return checkpointEnabled;
+        }
+        
+        public void setCheckpointEnabled(boolean checkpointEnabled) {
+            this.checkpointEnabled = checkpointEnabled;
+        }
+        
+        public String getCheckpointDirectory() {
+            return checkpointDirectory;
+        }
+        
+        public void setCheckpointDirectory(String checkpointDirectory) {
+            this.checkpointDirectory = checkpointDirectory;
+        }
+        
+        public boolean isLowMemoryMode() {
+            return lowMemoryMode;
+        }
+        
+        public void setLowMemoryMode(boolean lowMemoryMode) {
+            this.lowMemoryMode = lowMemoryMode;
+        }
+        
+        public boolean isFailoverEnabled() {
+            return failoverEnabled;
+        }
+        
+        public void setFailoverEnabled(boolean failoverEnabled) {
+            this.failoverEnabled = failoverEnabled;
+        }
+        
+        public int getUnhealthyThreshold() {
+            return unhealthyThreshold;
+        }
+        
+        public void setUnhealthyThreshold(int unhealthyThreshold) {
+            this.unhealthyThreshold = unhealthyThreshold;
+        }
+        
+        public long getUnhealthyCooldown() {
+            return unhealthyCooldown;
+        }
+        
+        public void setUnhealthyCooldown(long unhealthyCooldown) {
+            this.unhealthyCooldown = unhealthyCooldown;
+        }
+        
+        public long getHealthProbeInterval() {
+            return healthProbeInterval;
+        }
+        
+        public void setHealthProbeInterval(long healthProbeInterval) {
+            this.healthProbeInterval = healthProbeInterval;
+        }
+        
+        public long getHealthProbeTtl() {
+            return healthProbeTtl;
+        }
+        
+        public void setHealthProbeTtl(long healthProbeTtl) {
+            this.healthProbeTtl = healthProbeTtl;
+        }
+        
+        public long getMaxRetryDelay() {
+            return maxRetryDelay;
+        }
+        
+        public void setMaxRetryDelay(long maxRetryDelay) {
+            this.maxRetryDelay = maxRetryDelay;
+        }
+        
+        public double getRetryBudgetRatio() {
+            return retryBudgetRatio;
+        }
+        
+        public void setRetryBudgetRatio(double retryBudgetRatio) {
+            this.retryBudgetRatio = retryBudgetRatio;
+        }
+        
+        public int getRetryBudgetMax() {
+            return retryBudgetMax;
+        }
+        
+        public void setRetryBudgetMax(int retryBudgetMax) {
+            this.retryBudgetMax = retryBudgetMax;
+        }
+        
+        public int getCircuitFailureThreshold() {
+            return circuitFailureThreshold;
+        }
+        
+        public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+            this.circuitFailureThreshold = circuitFailureThreshold;
+        }
+        
+        public long getCircuitOpenDuration() {
+            return circuitOpenDuration;
+        }
+        
+        public void setCircuitOpenDuration(long circuitOpenDuration) {
+            this.circuitOpenDuration = circuitOpenDuration;
+        }
+        
+        public boolean isHedgeEnabled() {
+            return hedgeEnabled;
+        }
+        
+        public void setHedgeEnabled(boolean hedgeEnabled) {
+            this.hedgeEnabled = hedgeEnabled;
+        }
+        
+        public double getHedgeQuantile() {
+            return hedgeQuantile;
+        }
+        
+        public void setHedgeQuantile(double hedgeQuantile) {
+            this.hedgeQuantile = hedgeQuantile;
+        }
+        
+        public double getHedgeBudgetRatio() {
+            return hedgeBudgetRatio;
+        }
+        
+        public void setHedgeBudgetRatio(double hedgeBudgetRatio) {
+            this.hedgeBudgetRatio = hedgeBudgetRatio;
+        }
+        
+        public int getHedgeBudgetMax() {
+            return hedgeBudgetMax;
+        }
+        
+        public void setHedgeBudgetMax(int hedgeBudgetMax) {
+            this.hedgeBudgetMax = hedgeBudgetMax;
+        }
+        
+        public boolean isLoadBalancingEnabled() {
+            return loadBalancingEnabled;
+        }
+        
+        public void setLoadBalancingEnabled(boolean loadBalancingEnabled) {
+            this.loadBalancingEnabled = loadBalancingEnabled;
+        }
+        
+        public String getTransport() {
+            return transport;
+        }
+        
+        public void setTransport(String transport) {
+            this.transport = transport;
+        }
+        
+        public int getAsyncThreads() {
+            return asyncThreads;
+        }
+        
+        public void setAsyncThreads(int asyncThreads) {
+            this.asyncThreads = asyncThreads;
+        }
     }
     
     // Getters and Setters
@@ -151,10 +596,19 @@ public class TranslationProperties {
         }
     }
     
+    @Deprecated
     public int getBatchSize() {
         return settings.getBatchSize();
     }
     
+    public int getMaxSegmentsPerBatch() {
+        return settings.getMaxSegmentsPerBatch();
+    }
+    
+    public int getSegmentRetryCount() {
+        return settings.getSegmentRetryCount();
+    }
+    
     public int getRetryCount() {
         return settings.getRetryCount();
     }
@@ -162,4 +616,104 @@ public class TranslationProperties {
     public long getRetryDelay() {
         return settings.getRetryDelay();
     }
-}
\ No newline at end of file
+    
+    public int getMaxConcurrency() {
+        return settings.getMaxConcurrency();
+    }
+    
+    public boolean isMemoryEnabled() {
+        return settings.isMemoryEnabled();
+    }
+    
+    public boolean isHtmlAware() {
+        return settings.isHtmlAware();
+    }
+    
+    public boolean isCheckpointEnabled() {
+        return settings.isCheckpointEnabled();
+    }
+    
+    public boolean isLowMemoryMode() {
+        return settings.isLowMemoryMode();
+    }
+    
+    public boolean isFailoverEnabled() {
+        return settings.isFailoverEnabled();
+    }
+    
+    public int getUnhealthyThreshold() {
+        return settings.getUnhealthyThreshold();
+    }
+    
+    public long getUnhealthyCooldown() {
+        return settings.getUnhealthyCooldown();
+    }
+    
+    public long getMaxRetryDelay() {
+        return settings.getMaxRetryDelay();
+    }
+    
+    public double getRetryBudgetRatio() {
+        return settings.getRetryBudgetRatio();
+    }
+    
+    public int getRetryBudgetMax() {
+        return settings.getRetryBudgetMax();
+    }
+    
+    public int getCircuitFailureThreshold() {
+        return settings.getCircuitFailureThreshold();
+    }
+    
+    public long getCircuitOpenDuration() {
+        return settings.getCircuitOpenDuration();
+    }
+    
+    public boolean isHedgeEnabled() {
+        return settings.isHedgeEnabled();
+    }
+    
+    public double getHedgeQuantile() {
+        return settings.getHedgeQuantile();
+    }
+    
+    public double getHedgeBudgetRatio() {
+        return settings.getHedgeBudgetRatio();
+    }
+    
+    public int getHedgeBudgetMax() {
+        return settings.getHedgeBudgetMax();
+    }
+    
+    public boolean isLoadBalancingEnabled() {
+        return settings.isLoadBalancingEnabled();
+    }
+    
+    public String getTransport() {
+        return settings.getTransport();
+    }
+    
+    public int getAsyncThreads() {
+        return settings.getAsyncThreads();
+    }
+    
+    public int getSegmentCacheSize() {
+        return settings.getSegmentCacheSize();
+    }
+    
+    public long getHealthProbeInterval() {
+        return settings.getHealthProbeInterval();
+    }
+    
+    public long getHealthProbeTtl() {
+        return settings.getHealthProbeTtl();
+    }
+    
+    public boolean isLanguageDetectionEnabled() {
+        return settings.isLanguageDetectionEnabled();
+    }
+    
+    public String getTargetLanguage() {
+        return settings.getTargetLanguage();
+    }
+}
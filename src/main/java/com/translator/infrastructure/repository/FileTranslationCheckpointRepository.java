@@ -0,0 +1,288 @@
+package com.translator.infrastructure.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.translator.domain.model.Book;
+import com.translator.domain.model.Page;
+import com.translator.domain.repository.TranslationCheckpointRepository;
+import com.translator.domain.valueobject.TranslationProvider;
+import com.translator.infrastructure.config.TranslationProperties;
+import com.translator.infrastructure.translation.PromptService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于文件的翻译检查点仓库
+ * 每本书（按源文件内容的SHA-256区分）对应一个只追加的JSON Lines日志，每完成一页写入一行并立即落盘；
+ * 进程崩溃时最多留下不完整的最后一行，读取时忽略
+ * 日志的第一行记录翻译配置（首选提供商、可能给出译文的各提供商及模型、目标语言和提示词摘要），配置不同时日志作废
+ */
+@Repository
+public class FileTranslationCheckpointRepository implements TranslationCheckpointRepository {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FileTranslationCheckpointRepository.class);
+    
+    private final boolean enabled;
+    private final Path directory;
+    private final TranslationProperties properties;
+    private final PromptService promptService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // 书籍ID -> 日志
+    private final Map<String, Journal> journals = new ConcurrentHashMap<>();
+    
+    public FileTranslationCheckpointRepository(TranslationProperties properties, PromptService promptService) {
+        this.enabled = properties.isCheckpointEnabled();
+        this.directory = enabled ? Paths.get(properties.getSettings().getCheckpointDirectory()) : null;
+        this.properties = properties;
+        this.promptService = promptService;
+    }
+    
+    @Override
+    public Map<String, String> findTranslatedPages(Book book, TranslationProvider provider) {
+        Map<String, String> pages = new HashMap<>();
+        if (!enabled) {
+            return pages;
+        }
+        
+        try {
+            Journal journal = journalFor(book);
+            Path file = journal.file;
+            if (!Files.exists(file)) {
+                return pages;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                if (line != null && !header(provider).equals(readHeader(line))) {
+                    logger.info("翻译配置已变化，丢弃旧的翻译检查点: {}", book.getOriginalFileName());
+                    journal.discard();
+                    return pages;
+                }
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        JsonNode node = objectMapper.readTree(line);
+                        pages.put(node.get("page").asText(), node.get("content").asText());
+                    } catch (Exception e) {
+                        // 进程中断可能留下不完整的最后一行
+                        logger.debug("忽略无法解析的检查点记录");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("读取翻译检查点失败: {}", e.getMessage());
+        }
+        return pages;
+    }
+    
+    @Override
+    public void save(Book book, TranslationProvider provider, Page page) {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            String line = objectMapper.writeValueAsString(Map.of(
+                "page", page.getId(), "content", page.getTranslatedContent())) + "\n";
+            journalFor(book).append(objectMapper.writeValueAsString(header(provider)) + "\n", line);
+        } catch (IOException e) {
+            // 检查点只影响断点续译，写入失败不中断翻译
+            logger.warn("写入翻译检查点失败: {} - {}", page.getId(), e.getMessage());
+        }
+    }
+    
+    @Override
+    public void close(Book book) {
+        Journal journal = journals.remove(book.getId());
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.warn("关闭翻译检查点失败: {}", e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public void delete(Book book) {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            Journal journal = journalFor(book);
+            journals.remove(book.getId());
+            Files.deleteIfExists(journal.close());
+        } catch (IOException e) {
+            logger.warn("删除翻译检查点失败: {}", e.getMessage());
+        }
+    }
+    
+    private Journal journalFor(Book book) throws IOException {
+        Journal journal = journals.get(book.getId());
+        if (journal == null) {
+            Path file = directory.resolve(sha256(book.getSourceFilePath()) + ".jsonl");
+            journal = journals.computeIfAbsent(book.getId(), id -> new Journal(file));
+        }
+        return journal;
+    }
+    
+    /**
+     * 日志头：决定译文内容的翻译配置，提示词只记录摘要
+     */
+    private Map<String, String> header(TranslationProvider provider) {
+        String prompt = promptService.getSystemPrompt(properties.isHtmlAware()) + "\n"
+            + promptService.getBatchPrompt(properties.isHtmlAware());
+        Map<String, String> header = new LinkedHashMap<>();
+        header.put("provider", provider.name());
+        header.put("producers", producers(provider));
+        header.put("targetLanguage", properties.getTargetLanguage());
+        header.put("prompt", HexFormat.of().formatHex(digest().digest(prompt.getBytes(StandardCharsets.UTF_8))));
+        return header;
+    }
+    
+    /**
+     * 可能给出译文的提供商及其模型，如 "OPENAI=gpt-4o,DEEPSEEK=deepseek-chat"
+     * 除首选提供商外，启用故障转移、负载均衡或对冲时，其他已配置的提供商也会翻译页面
+     */
+    private String producers(TranslationProvider preferred) {
+        boolean shared = properties.isFailoverEnabled() || properties.isLoadBalancingEnabled()
+            || properties.isHedgeEnabled();
+        List<String> producers = new ArrayList<>();
+        for (TranslationProvider provider : TranslationProvider.values()) {
+            TranslationProperties.ProviderConfig config = properties.getProviderConfig(provider);
+            if (provider == preferred || (shared && isConfigured(config))) {
+                producers.add(provider.name() + "=" + (config != null ? config.getModel() : null));
+            }
+        }
+        return String.join(",", producers);
+    }
+    
+    private static boolean isConfigured(TranslationProperties.ProviderConfig config) {
+        return config != null && !isBlank(config.getBaseUrl()) && !isBlank(config.getApiKey())
+            && !isBlank(config.getModel());
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+    
+    /**
+     * 解析日志的第一行，不是日志头时返回null
+     */
+    private Map<String, String> readHeader(String line) {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            if (node == null || !node.has("provider") || node.has("page")) {
+                return null;
+            }
+            Map<String, String> header = new LinkedHashMap<>();
+            node.fields().forEachRemaining(field ->
+                header.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText()));
+            return header;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static String sha256(String filePath) throws IOException {
+        try (InputStream in = new FileInputStream(filePath)) {
+            MessageDigest digest = digest();
+            byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+    
+    /**
+     * 单本书的检查点日志，写入时才打开文件，新文件先写入日志头
+     */
+    private static class Journal {
+        
+        private final Path file;
+        private FileChannel channel;
+        
+        Journal(Path file) {
+            this.file = file;
+        }
+        
+        synchronized void append(String header, String line) throws IOException {
+            if (channel == null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+                channel.position(channel.size());
+                // 上次中断留下的半行单独成行，避免与新记录粘连
+                if (channel.size() > 0) {
+                    ByteBuffer last = ByteBuffer.allocate(1);
+                    channel.read(last, channel.size() - 1);
+                    if (last.get(0) != '\n') {
+                        channel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                    }
+                } else {
+                    write(header);
+                }
+            }
+            write(line);
+            // 每页落盘一次，页面之间通常相隔数秒，开销可以忽略
+            channel.force(false);
+        }
+        
+        private void write(String text) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        
+        /**
+         * 作废日志，之后的写入从新的日志头开始
+         */
+        synchronized void discard() throws IOException {
+            close();
+            Files.deleteIfExists(file);
+        }
+        
+        synchronized Path close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            return file;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.translator.infrastructure.translation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 自适应限流器
+ * 每个提供商一个，分别以令牌桶控制每分钟请求数和每分钟token数
+ * 配额可以预先配置，也可以从响应头 x-ratelimit-* 学习；收到429时按 Retry-After 暂停并下调速率
+ * 目标是把吞吐稳定在配额之下，而不是在突发与退避之间来回摆动
+ */
+public class AdaptiveRateLimiter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveRateLimiter.class);
+    
+    private static final long MINUTE_MILLIS = 60_000;
+    // 只使用配额的95%，给时钟误差和其他客户端留出余量
+    private static final double TARGET_UTILIZATION = 0.95;
+    // 桶容量为10秒的配额，允许小幅突发
+    private static final double BURST_FRACTION = 1.0 / 6;
+    // 429时若未给出 Retry-After，暂停的默认时长
+    private static final long DEFAULT_THROTTLE_PAUSE_MILLIS = 1000;
+    // 超出已知配额仍被限流时的速率下调比例
+    private static final double THROTTLE_DECREASE = 0.8;
+    // 每次等待的最长时间，之后重新检查配额
+    private static final long MAX_WAIT_STEP_MILLIS = 1000;
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    
+    private final String name;
+    private final LongSupplier clock;
+    private final Bucket requests;
+    private final Bucket tokens;
+    private final Deque<Long> recentRequests = new ArrayDeque<>();
+    private boolean requestLimitInferred;
+    private long pausedUntil;
+    
+    public AdaptiveRateLimiter(String name, int requestsPerMinute, int tokensPerMinute) {
+        this(name, requestsPerMinute, tokensPerMinute, System::currentTimeMillis);
+    }
+    
+    AdaptiveRateLimiter(String name, int requestsPerMinute, int tokensPerMinute, LongSupplier clock) {
+        this.name = name;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.requests = new Bucket(now);
+        this.tokens = new Bucket(now);
+        requests.setLimit(requestsPerMinute, now);
+        tokens.setLimit(tokensPerMinute, now);
+    }
+    
+    /**
+     * 等待一次请求及其预计token数被允许；等待期间不占用线程，配额可用时返回的Future完成
+     */
+    public CompletableFuture<Void> acquireAsync(int estimatedTokens) {
+        return acquireAsync(estimatedTokens, 0);
+    }
+    
+    private CompletableFuture<Void> acquireAsync(int estimatedTokens, long waited) {
+        long wait = tryAcquire(estimatedTokens);
+        if (wait <= 0) {
+            if (waited > 0) {
+                logger.debug("{} 限流等待 {} ms", name, waited);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        long step = Math.min(wait, MAX_WAIT_STEP_MILLIS);
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(step, TimeUnit.MILLISECONDS))
+            .thenCompose(ignored -> acquireAsync(estimatedTokens, waited + step));
+    }
+    
+    /**
+     * 尝试占用配额，成功返回0，否则返回建议等待的毫秒数
+     */
+    synchronized long tryAcquire(int estimatedTokens) {
+        long now = clock.getAsLong();
+        if (now < pausedUntil) {
+            return pausedUntil - now;
+        }
+        
+        requests.refill(now);
+        tokens.refill(now);
+        long wait = Math.max(requests.waitFor(1), tokens.waitFor(estimatedTokens));
+        if (wait > 0) {
+            return wait;
+        }
+        
+        requests.take(1);
+        tokens.take(estimatedTokens);
+        recentRequests.addLast(now);
+        while (!recentRequests.isEmpty() && recentRequests.peekFirst() <= now - MINUTE_MILLIS) {
+            recentRequests.pollFirst();
+        }
+        return 0;
+    }
+    
+    /**
+     * 根据响应头校准配额和剩余量
+     */
+    public synchronized void onResponse(Function<String, String> headers) {
+        long now = clock.getAsLong();
+        long limitRequests = parseLong(headers.apply("x-ratelimit-limit-requests"));
+        long limitTokens = parseLong(headers.apply("x-ratelimit-limit-tokens"));
+        if (limitRequests > 0 && limitRequests != requests.limit) {
+            requests.setLimit(limitRequests, now);
+            requestLimitInferred = false;
+            logger.info("{} 请求配额: {}/min", name, limitRequests);
+        }
+        if (limitTokens > 0 && limitTokens != tokens.limit) {
+            tokens.setLimit(limitTokens, now);
+            logger.info("{} token配额: {}/min", name, limitTokens);
+        }
+        
+        applyRemaining(requests, headers.apply("x-ratelimit-remaining-requests"),
+            headers.apply("x-ratelimit-reset-requests"), now);
+        applyRemaining(tokens, headers.apply("x-ratelimit-remaining-tokens"),
+            headers.apply("x-ratelimit-reset-tokens"), now);
+        
+        // 没有响应头时，由429推断出的配额随成功请求缓慢回升
+        if (limitRequests <= 0 && requestLimitInferred) {
+            requests.setLimit(requests.limit + 1, now);
+        }
+    }
+    
+    /**
+     * 收到429：按 Retry-After 暂停所有请求，并下调速率
+     */
+    public synchronized void onThrottled(long retryAfterMillis) {
+        long now = clock.getAsLong();
+        long pause = retryAfterMillis > 0 ? retryAfterMillis : DEFAULT_THROTTLE_PAUSE_MILLIS;
+        pausedUntil = Math.max(pausedUntil, now + pause);
+        
+        if (requests.isUnlimited()) {
+            // 配额未知时，以最近一分钟内实际的请求速率作为上限；样本跨度不足1秒时按1秒计
+            long span = recentRequests.isEmpty() ? 0 : now - recentRequests.peekFirst();
+            long observed = recentRequests.size() * MINUTE_MILLIS / Math.max(1000, span);
+            requests.setLimit(Math.max(1, observed), now);
+            requestLimitInferred = true;
+        } else {
+            requests.setLimit(Math.max(1, (long) (requests.limit * THROTTLE_DECREASE)), now);
+        }
+        requests.level = Math.min(requests.level, 0);
+        logger.warn("{} 被限流，暂停 {} ms，请求速率调整为 {}/min", name, pause, requests.limit);
+    }
+    
+    /**
+     * 当前余量（0~1）：两个令牌桶中较低的填充比例，暂停期间为0，配额未知时为1
+     */
+    public synchronized double getHeadroom() {
+        long now = clock.getAsLong();
+        if (now < pausedUntil) {
+            return 0;
+        }
+        requests.refill(now);
+        tokens.refill(now);
+        return Math.min(requests.fillRatio(), tokens.fillRatio());
+    }
+    
+    public synchronized long getRequestsPerMinute() {
+        return requests.limit;
+    }
+    
+    public synchronized long getTokensPerMinute() {
+        return tokens.limit;
+    }
+    
+    private void applyRemaining(Bucket bucket, String remainingHeader, String resetHeader, long now) {
+        long remaining = parseLong(remainingHeader);
+        if (remaining < 0) {
+            return;
+        }
+        bucket.refill(now);
+        bucket.level = Math.min(bucket.level, remaining);
+        long reset = parseDuration(resetHeader);
+        if (remaining == 0 && reset > 0) {
+            pausedUntil = Math.max(pausedUntil, now + reset);
+        }
+    }
+    
+    /**
+     * 解析 Retry-After / retry-after-ms 响应头，未提供时返回-1
+     */
+    static long parseRetryAfter(String retryAfter, String retryAfterMs) {
+        long millis = parseLong(retryAfterMs);
+        if (millis >= 0) {
+            return millis;
+        }
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return -1;
+        }
+        try {
+            return (long) (Double.parseDouble(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (Exception ignored) {
+                return -1;
+            }
+        }
+    }
+    
+    /**
+     * 解析 x-ratelimit-reset-* 的时长格式，如 "1s"、"6m0s"、"120ms"
+     */
+    static long parseDuration(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean found = false;
+        while (matcher.find()) {
+            found = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h" -> millis += amount * 3_600_000;
+                case "m" -> millis += amount * 60_000;
+                case "s" -> millis += amount * 1000;
+                default -> millis += amount;
+            }
+        }
+        return found ? (long) Math.ceil(millis) : -1;
+    }
+    
+    private static long parseLong(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * 令牌桶，limit 为0表示不限
+     */
+    private static class Bucket {
+        
+        private long limit;
+        private double ratePerMilli;
+        private double capacity;
+        private double level;
+        private long lastRefill;
+        
+        Bucket(long now) {
+            this.lastRefill = now;
+        }
+        
+        void setLimit(long perMinute, long now) {
+            refill(now);
+            boolean wasUnlimited = isUnlimited();
+            limit = Math.max(0, perMinute);
+            if (limit == 0) {
+                return;
+            }
+            double target = limit * TARGET_UTILIZATION;
+            ratePerMilli = target / MINUTE_MILLIS;
+            capacity = Math.max(1, target * BURST_FRACTION);
+            level = wasUnlimited ? capacity : Math.min(level, capacity);
+        }
+        
+        boolean isUnlimited() {
+            return limit == 0;
+        }
+        
+        void refill(long now) {
+            if (!isUnlimited() && now > lastRefill) {
+                level = Math.min(capacity, level + (now - lastRefill) * ratePerMilli);
+            }
+            lastRefill = Math.max(lastRefill, now);
+        }
+        
+        double fillRatio() {
+            return isUnlimited() ? 1 : Math.max(0, level / capacity);
+        }
+        
+        long waitFor(double amount) {
+            if (isUnlimited()) {
+                return 0;
+            }
+            // 超过桶容量的请求在桶满时放行，之后以负余额偿还
+            double needed = Math.min(amount, capacity);
+            if (level >= needed) {
+                return 0;
+            }
+            return (long) Math.ceil((needed - level) / ratePerMilli);
+        }
+        
+        void take(double amount) {
+            if (!isUnlimited()) {
+                level -= amount;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.translator.infrastructure.translation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 基于 java.net.http 的非阻塞传输
+ * 等待模型生成期间不占用线程，少量线程即可维持大量进行中的请求；
+ * 服务端支持时通过ALPN协商HTTP/2，多个请求复用同一连接；
+ * 关闭时取消进行中的请求并停止回调线程，HttpClient不再被引用后其内部线程随之退出
+ */
+public class AsyncChatTransport implements ChatTransport {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AsyncChatTransport.class);
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    // 进行中的请求（含预热和探测），关闭时取消
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * @param connectTimeout 建立连接的超时（毫秒）
+     * @param threads 处理响应回调的线程数
+     */
+    public AsyncChatTransport(long connectTimeout, int threads) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "llm-async-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeout))
+            .executor(executor)
+            .build();
+    }
+    
+    @Override
+    public CompletableFuture<ChatResponse> send(ChatRequest request, CancellationToken cancellation) {
+        HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(request.getUrl()))
+            .timeout(Duration.ofMillis(request.getResponseTimeout()))
+            .header("Authorization", "Bearer " + request.getApiKey())
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(request.getBody(), StandardCharsets.UTF_8))
+            .build();
+        
+        CompletableFuture<HttpResponse<String>> future = track(httpClient.sendAsync(httpRequest,
+            info -> bodySubscriber(info, request.getLineListener())));
+        if (cancellation != null) {
+            cancellation.register(() -> future.cancel(true));
+        }
+        return future.thenApply(response -> new ChatResponse(response.statusCode(), firstValues(response), response.body()));
+    }
+    
+    /**
+     * 流式请求的成功响应逐行交给监听器，其他响应读取完整正文
+     */
+    private static HttpResponse.BodySubscriber<String> bodySubscriber(HttpResponse.ResponseInfo info,
+                                                                      Consumer<String> lineListener) {
+        if (info.statusCode() == 200 && lineListener != null) {
+            return HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.fromLineSubscriber(new LineSubscriber(lineListener)), ignored -> null);
+        }
+        return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+    }
+    
+    private static Map<String, String> firstValues(HttpResponse<?> response) {
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : response.headers().map().entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                headers.put(entry.getKey(), entry.getValue().get(0));
+            }
+        }
+        return headers;
+    }
+    
+    @Override
+    public void warmUp(String url, String apiKey, int connections) {
+        for (int i = 0; i < connections; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Authorization", "Bearer " + apiKey)
+                .GET()
+                .build();
+            track(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()))
+                .exceptionally(e -> {
+                    logger.debug("连接预热失败: {} - {}", url, e.getMessage());
+                    return null;
+                });
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Integer> probe(String url, String apiKey, long timeoutMillis) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+            .timeout(Duration.ofMillis(timeoutMillis))
+            .header("Authorization", "Bearer " + apiKey)
+            .GET()
+            .build();
+        return track(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()))
+            .thenApply(HttpResponse::statusCode);
+    }
+    
+    private <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        inFlight.add(future);
+        future.whenComplete((result, error) -> inFlight.remove(future));
+        return future;
+    }
+    
+    /**
+     * Java 17 的 HttpClient 没有 close 方法：取消进行中的请求，使其不再持有连接，然后停止回调线程
+     */
+    @Override
+    public void close() throws IOException {
+        new ArrayList<>(inFlight).forEach(future -> future.cancel(true));
+        executor.shutdownNow();
+    }
+    
+    private static class LineSubscriber implements Flow.Subscriber<String> {
+        
+        private final Consumer<String> listener;
+        
+        LineSubscriber(Consumer<String> listener) {
+            this.listener = listener;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+        
+        @Override
+        public void onNext(String line) {
+            listener.accept(line);
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            // 错误通过 sendAsync 返回的Future传递
+        }
+        
+        @Override
+        public void onComplete() {
+        }
+    }
+}
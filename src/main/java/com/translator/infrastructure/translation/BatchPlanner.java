@@ -0,0 +1,185 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.model.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批次规划器
+ * 按token预算把页面打包成翻译请求：小页面合并到同一请求，超出预算的页面按段落边界切分
+ * 启用HTML感知时，XHTML页面只抽取其中的文本段参与打包，译文回填到原文档结构中
+ * 设置了语言识别时，已是目标语言或没有文字的片段不进入批次，原文直接写回
+ */
+public class BatchPlanner {
+    
+    private static final String[] PARAGRAPH_BOUNDARIES = {"\n\n", "\n"};
+    private static final String[] BOUNDARIES = {"\n\n", "\n", "。", ". ", "! ", "? ", " "};
+    
+    private final int tokenBudget;
+    private final int maxSegmentsPerBatch;
+    private final boolean htmlAware;
+    private final LanguageDetector languageDetector;
+    private final String targetLanguage;
+    private int skippedSegments;
+    
+    public BatchPlanner(int tokenBudget, int maxSegmentsPerBatch) {
+        this(tokenBudget, maxSegmentsPerBatch, false);
+    }
+    
+    public BatchPlanner(int tokenBudget, int maxSegmentsPerBatch, boolean htmlAware) {
+        this(tokenBudget, maxSegmentsPerBatch, htmlAware, null, null);
+    }
+    
+    /**
+     * @param languageDetector 语言识别器，为null时不跳过任何片段
+     * @param targetLanguage 目标语言，已是该语言的片段不翻译
+     */
+    public BatchPlanner(int tokenBudget, int maxSegmentsPerBatch, boolean htmlAware,
+                        LanguageDetector languageDetector, String targetLanguage) {
+        this.tokenBudget = Math.max(1, tokenBudget);
+        this.maxSegmentsPerBatch = Math.max(1, maxSegmentsPerBatch);
+        this.htmlAware = htmlAware;
+        this.languageDetector = languageDetector;
+        this.targetLanguage = targetLanguage;
+    }
+    
+    /**
+     * 规划批次，批次与片段保持页面的阅读顺序
+     */
+    public List<List<TranslationSegment>> plan(List<Page> pages) {
+        List<List<TranslationSegment>> batches = new ArrayList<>();
+        List<TranslationSegment> current = new ArrayList<>();
+        int currentTokens = 0;
+        skippedSegments = 0;
+        
+        for (Page page : pages) {
+            PageAssembly assembly = assemble(page);
+            for (TranslationSegment segment : assembly.getSegments()) {
+                if (segment.isBlank()) {
+                    // 纯空白片段无需翻译，直接原样写回
+                    segment.complete("");
+                    continue;
+                }
+                if (languageDetector != null && !languageDetector.needsTranslation(segment.getText(), targetLanguage)) {
+                    segment.complete(segment.getText());
+                    skippedSegments++;
+                    continue;
+                }
+                
+                if (!current.isEmpty()
+                    && (currentTokens + segment.getEstimatedTokens() > tokenBudget
+                        || current.size() >= maxSegmentsPerBatch)) {
+                    batches.add(current);
+                    current = new ArrayList<>();
+                    currentTokens = 0;
+                }
+                current.add(segment);
+                currentTokens += segment.getEstimatedTokens();
+            }
+        }
+        
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+    
+    /**
+     * 把页面拆成片段；原文只读取一次，按需读取的页面不会因此反复访问归档
+     */
+    private PageAssembly assemble(Page page) {
+        String content = page.getOriginalContent();
+        if (htmlAware) {
+            XhtmlDocument document = XhtmlDocument.parse(content);
+            if (document != null && document.getTextRuns().isEmpty()) {
+                // 没有可翻译的文本（如纯图片页），原样保留
+                page.translate(content);
+                return new PageAssembly(page, List.of());
+            }
+            if (document != null) {
+                return new PageAssembly(page, document.getTextRuns(), document::render);
+            }
+        }
+        return new PageAssembly(page, split(content));
+    }
+    
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+    
+    /**
+     * 上次规划时因语言识别而跳过的片段数
+     */
+    public int getSkippedSegments() {
+        return skippedSegments;
+    }
+    
+    /**
+     * 把文本切分为不超过预算的若干片，各片按顺序拼接后与原文完全一致
+     * 切分点依次优先选择空行、换行、句末和空格
+     */
+    List<String> split(String text) {
+        List<String> pieces = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            pieces.add(text == null ? "" : text);
+            return pieces;
+        }
+        
+        int totalTokens = TokenEstimator.estimate(text);
+        if (totalTokens <= tokenBudget) {
+            pieces.add(text);
+            return pieces;
+        }
+        
+        // 按整体字符/token比例换算每片的字符上限，各片大小尽量均衡，避免最后剩下一个很小的片
+        int pieceCount = (totalTokens + tokenBudget - 1) / tokenBudget;
+        int charsPerPiece = Math.max(1, (text.length() + pieceCount - 1) / pieceCount);
+        int start = 0;
+        while (text.length() - start > charsPerPiece) {
+            int limit = start + charsPerPiece;
+            int cut = findBoundary(text, start + charsPerPiece / 2, limit);
+            pieces.add(text.substring(start, cut));
+            start = cut;
+        }
+        pieces.add(text.substring(start));
+        return pieces;
+    }
+    
+    /**
+     * 最接近文本中点的段落边界（空行，其次换行）之后的位置，两侧都有非空白内容；没有时返回-1
+     * 只在段落之间切分，避免拆开行内占位符标签
+     */
+    static int findParagraphMidpoint(String text) {
+        int middle = text.length() / 2;
+        for (String boundary : PARAGRAPH_BOUNDARIES) {
+            int best = -1;
+            int before = text.lastIndexOf(boundary, middle);
+            if (before >= 0 && isCut(text, before, boundary)) {
+                best = before + boundary.length();
+            }
+            int after = text.indexOf(boundary, middle);
+            if (after >= 0 && isCut(text, after, boundary) && (best < 0 || after - middle < middle - before)) {
+                best = after + boundary.length();
+            }
+            if (best >= 0) {
+                return best;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean isCut(String text, int index, String boundary) {
+        return !text.substring(0, index).isBlank() && !text.substring(index + boundary.length()).isBlank();
+    }
+    
+    private int findBoundary(String text, int from, int limit) {
+        for (String boundary : BOUNDARIES) {
+            int index = text.lastIndexOf(boundary, limit - boundary.length());
+            if (index >= from) {
+                return index + boundary.length();
+            }
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,87 @@
+package com.translator.infrastructure.translation;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 一次调用的取消信号
+ * 调用过程中登记正在进行的HTTP请求，取消时中止该请求；
+ * 子信号随父信号一起取消，一次翻译的所有请求可以由同一个父信号统一中止
+ */
+public class CancellationToken {
+    
+    private final CancellationToken parent;
+    // 子信号只被进行中的调用引用，调用结束后自动回收
+    private final Set<CancellationToken> children = Collections.newSetFromMap(new WeakHashMap<>());
+    private boolean cancelled;
+    private Cancellable current;
+    
+    public CancellationToken() {
+        this(null);
+    }
+    
+    private CancellationToken(CancellationToken parent) {
+        this.parent = parent;
+    }
+    
+    /**
+     * 创建子信号；本信号已取消时子信号同样处于取消状态
+     */
+    public CancellationToken child() {
+        CancellationToken child = new CancellationToken(this);
+        synchronized (this) {
+            if (!cancelled) {
+                children.add(child);
+                return child;
+            }
+        }
+        child.cancel();
+        return child;
+    }
+    
+    /**
+     * 登记正在进行的请求；已取消时立即中止它
+     */
+    public void register(Cancellable request) {
+        boolean cancelNow;
+        synchronized (this) {
+            current = request;
+            cancelNow = cancelled;
+        }
+        if (cancelNow) {
+            request.cancel();
+        }
+    }
+    
+    public void cancel() {
+        Cancellable request;
+        List<CancellationToken> cancelledChildren;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            request = current;
+            cancelledChildren = new ArrayList<>(children);
+            children.clear();
+        }
+        if (request != null) {
+            request.cancel();
+        }
+        cancelledChildren.forEach(CancellationToken::cancel);
+    }
+    
+    public boolean isCancelled() {
+        synchronized (this) {
+            if (cancelled) {
+                return true;
+            }
+        }
+        return parent != null && parent.isCancelled();
+    }
+}
@@ -0,0 +1,47 @@
+package com.translator.infrastructure.translation;
+
+import java.util.function.Consumer;
+
+/**
+ * 一次聊天补全请求
+ */
+public class ChatRequest {
+    
+    private final String url;
+    private final String apiKey;
+    private final String body;
+    private final long responseTimeout;
+    private final Consumer<String> lineListener;
+    
+    /**
+     * @param responseTimeout 等待响应的超时（毫秒）
+     * @param lineListener 流式请求逐行接收成功响应的正文，非流式请求为null
+     */
+    public ChatRequest(String url, String apiKey, String body, long responseTimeout, Consumer<String> lineListener) {
+        this.url = url;
+        this.apiKey = apiKey;
+        this.body = body;
+        this.responseTimeout = responseTimeout;
+        this.lineListener = lineListener;
+    }
+    
+    public String getUrl() {
+        return url;
+    }
+    
+    public String getApiKey() {
+        return apiKey;
+    }
+    
+    public String getBody() {
+        return body;
+    }
+    
+    public long getResponseTimeout() {
+        return responseTimeout;
+    }
+    
+    public Consumer<String> getLineListener() {
+        return lineListener;
+    }
+}
@@ -0,0 +1,39 @@
+package com.translator.infrastructure.translation;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 聊天补全响应
+ * 流式请求成功时正文已逐行交给监听器，body 为null
+ */
+public class ChatResponse {
+    
+    private final int statusCode;
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final String body;
+    
+    /**
+     * @param headers 响应头，每个名称只保留第一个值
+     */
+    public ChatResponse(int statusCode, Map<String, String> headers, String body) {
+        this.statusCode = statusCode;
+        this.headers.putAll(headers);
+        this.body = body;
+    }
+    
+    public int getStatusCode() {
+        return statusCode;
+    }
+    
+    /**
+     * 响应头的值，名称不区分大小写，不存在时返回null
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+    
+    public String getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,27 @@
+package com.translator.infrastructure.translation;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 聊天补全请求的传输层
+ * 只负责发送请求和接收响应，重试、限流和响应解析由调用方处理
+ */
+public interface ChatTransport extends Closeable {
+    
+    /**
+     * 发送请求；网络错误和超时以异常完成返回的Future
+     * @param cancellation 取消信号，取消时中止请求，可为null
+     */
+    CompletableFuture<ChatResponse> send(ChatRequest request, CancellationToken cancellation);
+    
+    /**
+     * 后台预先建立到指定地址的连接
+     */
+    void warmUp(String url, String apiKey, int connections);
+    
+    /**
+     * 向指定地址发出轻量的GET请求，返回HTTP状态码；网络错误和超时以异常完成返回的Future
+     */
+    CompletableFuture<Integer> probe(String url, String apiKey, long timeoutMillis);
+}
@@ -0,0 +1,104 @@
+package com.translator.infrastructure.translation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 单个提供商的熔断器
+ * 连续出现可重试的服务端故障（超时、5xx）达到阈值后打开，打开期间的请求立即失败；
+ * 打开时间结束后进入半开状态，只放行一个探测请求，成功则关闭，失败则重新打开
+ * 400等请求本身的错误和429限流不计入，它们不代表服务故障
+ */
+public class CircuitBreaker {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+    
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+    
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this(name, failureThreshold, openMillis, System::currentTimeMillis);
+    }
+    
+    CircuitBreaker(String name, int failureThreshold, long openMillis, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = Math.max(0, openMillis);
+        this.clock = clock;
+    }
+    
+    /**
+     * 是否允许发出请求；半开状态下只有第一个调用者获得探测机会
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = false;
+                logger.info("{} 熔断器半开，放行一个探测请求", name);
+                // 继续按半开处理
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+    
+    /**
+     * 不占用探测机会，仅判断当前是否会放行请求，用于路由排序
+     */
+    public synchronized boolean isCallPermitted() {
+        return state == State.CLOSED
+            || (state == State.OPEN && clock.getAsLong() - openedAt >= openMillis)
+            || (state == State.HALF_OPEN && !probeInFlight);
+    }
+    
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("{} 熔断器关闭，服务已恢复", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+    
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            probeInFlight = false;
+            logger.warn("{} 连续失败{}次，熔断器打开，{}ms内的请求直接失败", name, consecutiveFailures, openMillis);
+        }
+    }
+    
+    /**
+     * 请求未能得出服务是否健康的结论（如被限流或请求本身有误），释放半开状态下的探测机会
+     */
+    public synchronized void recordIgnored() {
+        probeInFlight = false;
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,116 @@
+package com.translator.infrastructure.translation;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于连接池的阻塞式传输
+ * 每个请求在传输层自己的线程上完成，进行中的请求各占用一个线程，同时进行的请求数受连接池限制
+ */
+public class ClassicChatTransport implements ChatTransport {
+    
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    
+    private final HttpConnectionPool connectionPool;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "llm-classic-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public ClassicChatTransport(HttpConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+    
+    @Override
+    public CompletableFuture<ChatResponse> send(ChatRequest request, CancellationToken cancellation) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return execute(request, cancellation);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+    
+    private ChatResponse execute(ChatRequest request, CancellationToken cancellation) throws IOException {
+        HttpPost httpPost = new HttpPost(request.getUrl());
+        // 响应超时随请求大小增长，卡住的连接最终会超时并进入重试
+        httpPost.setConfig(RequestConfig.custom()
+            .setResponseTimeout(Timeout.ofMilliseconds(request.getResponseTimeout()))
+            .build());
+        httpPost.setHeader("Authorization", "Bearer " + request.getApiKey());
+        httpPost.setHeader("Content-Type", "application/json");
+        httpPost.setEntity(new StringEntity(request.getBody(), ContentType.APPLICATION_JSON));
+        if (cancellation != null) {
+            cancellation.register(httpPost);
+        }
+        
+        try (CloseableHttpResponse response = connectionPool.getClient().execute(httpPost)) {
+            Map<String, String> headers = new HashMap<>();
+            for (Header header : response.getHeaders()) {
+                headers.putIfAbsent(header.getName(), header.getValue());
+            }
+            
+            InputStream content = response.getEntity().getContent();
+            if (response.getCode() == 200 && request.getLineListener() != null) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        request.getLineListener().accept(line);
+                    }
+                }
+                return new ChatResponse(response.getCode(), headers, null);
+            }
+            
+            String body = new String(content.readAllBytes(), StandardCharsets.UTF_8);
+            return new ChatResponse(response.getCode(), headers, body);
+        }
+    }
+    
+    @Override
+    public void warmUp(String url, String apiKey, int connections) {
+        connectionPool.warmUp(url, apiKey, connections);
+    }
+    
+    @Override
+    public CompletableFuture<Integer> probe(String url, String apiKey, long timeoutMillis) {
+        HttpGet request = new HttpGet(url);
+        request.setConfig(RequestConfig.custom()
+            .setResponseTimeout(Timeout.ofMilliseconds(timeoutMillis))
+            .build());
+        request.setHeader("Authorization", "Bearer " + apiKey);
+        try (CloseableHttpResponse response = connectionPool.getClient().execute(request)) {
+            EntityUtils.consume(response.getEntity());
+            return CompletableFuture.completedFuture(response.getCode());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        connectionPool.close();
+    }
+}
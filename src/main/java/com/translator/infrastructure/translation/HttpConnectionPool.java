@@ -0,0 +1,155 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.infrastructure.config.TranslationProperties;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.routing.RoutingSupport;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LLM API的HTTP连接池
+ * 每个提供商的地址是一个路由，分别设置最大连接数、连接超时和连接存活时间；
+ * 空闲连接由后台线程定期回收，所有连接共用一个SSLContext，重连时可以复用TLS会话；
+ * 关闭时停止预热线程并释放全部连接
+ */
+public class HttpConnectionPool implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(HttpConnectionPool.class);
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    
+    // 目标主机 -> 配置，未登记的主机使用默认配置
+    private final Map<HttpHost, TranslationProperties.ProviderConfig> routes = new HashMap<>();
+    private final TranslationProperties.ProviderConfig defaults = new TranslationProperties.ProviderConfig();
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService warmUpExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "http-warmup-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * @param providers 各提供商的Base URL及其配置
+     */
+    public HttpConnectionPool(Map<String, TranslationProperties.ProviderConfig> providers) {
+        providers.forEach((baseUrl, config) -> {
+            try {
+                routes.put(targetHost(baseUrl), config);
+            } catch (IllegalArgumentException e) {
+                logger.warn("{}，使用默认连接配置", e.getMessage());
+            }
+        });
+        
+        // 同一个SSLContext内的会话缓存让重连跳过完整握手
+        SSLContext sslContext = SSLContexts.createSystemDefault();
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setSSLSocketFactory(SSLConnectionSocketFactoryBuilder.create().setSslContext(sslContext).build())
+            .setConnectionConfigResolver(route -> connectionConfig(configFor(route.getTargetHost())))
+            .setMaxConnPerRoute(defaults.getMaxConnections())
+            .build();
+        int total = defaults.getMaxConnections();
+        for (Map.Entry<HttpHost, TranslationProperties.ProviderConfig> entry : routes.entrySet()) {
+            HttpHost host = entry.getKey();
+            connectionManager.setMaxPerRoute(new HttpRoute(host, null, "https".equalsIgnoreCase(host.getSchemeName())),
+                entry.getValue().getMaxConnections());
+            total += entry.getValue().getMaxConnections();
+        }
+        connectionManager.setMaxTotal(total);
+        
+        long idleTimeout = routes.values().stream()
+            .mapToLong(TranslationProperties.ProviderConfig::getIdleTimeout)
+            .min().orElse(defaults.getIdleTimeout());
+        // 重试统一由 callWithRetry 负责，关闭HttpClient对429/503的自动重试，避免两层重试叠加
+        httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .disableAutomaticRetries()
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofMilliseconds(Math.max(1000, idleTimeout)))
+            .build();
+    }
+    
+    public CloseableHttpClient getClient() {
+        return httpClient;
+    }
+    
+    public int getMaxConnections(String baseUrl) {
+        HttpHost host = targetHost(baseUrl);
+        return connectionManager.getMaxPerRoute(new HttpRoute(host, null, "https".equalsIgnoreCase(host.getSchemeName())));
+    }
+    
+    /**
+     * 后台预先建立若干连接：并发发出轻量请求，完成后连接留在池中供翻译请求复用
+     */
+    public void warmUp(String url, String apiKey, int connections) {
+        for (int i = 0; i < connections; i++) {
+            warmUpExecutor.execute(() -> {
+                HttpGet request = new HttpGet(url);
+                request.setHeader("Authorization", "Bearer " + apiKey);
+                try {
+                    // 响应处理器读完响应后把连接归还连接池
+                    httpClient.execute(request, response -> {
+                        EntityUtils.consume(response.getEntity());
+                        return null;
+                    });
+                } catch (Exception e) {
+                    logger.debug("连接预热失败: {} - {}", url, e.getMessage());
+                }
+            });
+        }
+    }
+    
+    private TranslationProperties.ProviderConfig configFor(HttpHost host) {
+        return routes.getOrDefault(RoutingSupport.normalize(host, DefaultSchemePortResolver.INSTANCE), defaults);
+    }
+    
+    private static ConnectionConfig connectionConfig(TranslationProperties.ProviderConfig config) {
+        return ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeout()))
+            .setTimeToLive(TimeValue.ofMilliseconds(config.getConnectionTimeToLive()))
+            .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+            .build();
+    }
+    
+    private static HttpHost targetHost(String baseUrl) {
+        try {
+            return RoutingSupport.normalize(HttpHost.create(URI.create(baseUrl)), DefaultSchemePortResolver.INSTANCE);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的Base URL: " + baseUrl, e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        warmUpExecutor.shutdownNow();
+        try {
+            httpClient.close(CloseMode.IMMEDIATE);
+        } finally {
+            // 同时关闭仍被预热请求占用的连接，阻塞在读取上的线程随之结束
+            connectionManager.close(CloseMode.IMMEDIATE);
+        }
+    }
+}
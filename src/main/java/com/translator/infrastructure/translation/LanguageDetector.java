@@ -0,0 +1,271 @@
+package com.translator.infrastructure.translation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 离线语言识别
+ * 先按文字系统统计：汉字占多数且没有假名时判定为中文，假名、谚文、西里尔字母等同样直接判定；
+ * 拉丁字母文本再用字符三元组（trigram）频率轮廓打分，在常见欧洲语言中选出得分最高的一种。
+ * 只检查文本开头的一部分，逐字符扫描，不为每个n-gram创建字符串
+ */
+public class LanguageDetector {
+    
+    /**
+     * 没有可翻译的文字（数字、标点、符号等），ISO 639-2 的 "no linguistic content"
+     */
+    public static final String NO_TEXT = "zxx";
+    
+    /**
+     * 有文字但无法判断语言
+     */
+    public static final String UNDETERMINED = "und";
+    
+    // 汉字在"汉字 + 其他文字的单词"中的占比达到该值时视为中文，允许夹杂英文术语
+    private static final double CJK_RATIO = 0.6;
+    private static final int MAX_CHARS = 4096;
+    private static final int PROFILE_SIZE = 200;
+    
+    // 各语言的训练语料，启动时统计出三元组频率轮廓
+    private static final Map<String, String> SAMPLES = new LinkedHashMap<>();
+    
+    static {
+        SAMPLES.put("en", "The old man was thin and gaunt with deep wrinkles in the back of his neck. "
+            + "Everything about him was old except his eyes, and they were the same color as the sea. "
+            + "It is a truth universally acknowledged that a single man in possession of a good fortune "
+            + "must be in want of a wife. She said that they would have to wait until the morning, "
+            + "because there was nothing more that anyone could do for him in the dark. "
+            + "This chapter describes how the system works and what you should know before you begin.");
+        SAMPLES.put("fr", "Le vieil homme était maigre et sec, avec des rides profondes sur la nuque. "
+            + "Tout en lui était vieux, sauf ses yeux, qui avaient la couleur de la mer. "
+            + "Elle a dit qu'il faudrait attendre jusqu'au matin, parce qu'il n'y avait plus rien "
+            + "que l'on pouvait faire pour lui dans la nuit. Ce chapitre décrit comment le système "
+            + "fonctionne et ce que vous devez savoir avant de commencer. Nous sommes allés dans "
+            + "les rues de la ville pour voir les gens qui travaillent et qui vivent ici.");
+        SAMPLES.put("de", "Der alte Mann war dünn und hager, mit tiefen Falten im Nacken. "
+            + "Alles an ihm war alt, außer seinen Augen, und die hatten die gleiche Farbe wie das Meer. "
+            + "Sie sagte, dass sie bis zum Morgen warten müssten, weil niemand in der Dunkelheit "
+            + "noch etwas für ihn tun konnte. Dieses Kapitel beschreibt, wie das System funktioniert "
+            + "und was Sie wissen sollten, bevor Sie beginnen. Wir gingen durch die Straßen der Stadt, "
+            + "um die Menschen zu sehen, die hier leben und arbeiten.");
+        SAMPLES.put("es", "El viejo era flaco y desgarbado, con arrugas profundas en la parte posterior del cuello. "
+            + "Todo en él era viejo, salvo sus ojos, que tenían el mismo color del mar. "
+            + "Ella dijo que tendrían que esperar hasta la mañana, porque no había nada más que "
+            + "nadie pudiera hacer por él en la oscuridad. Este capítulo describe cómo funciona el sistema "
+            + "y lo que usted debe saber antes de empezar. Fuimos por las calles de la ciudad para ver "
+            + "a las personas que viven y trabajan aquí.");
+        SAMPLES.put("it", "Il vecchio era magro e scarno, con rughe profonde sulla nuca. "
+            + "Tutto in lui era vecchio, tranne gli occhi, che avevano lo stesso colore del mare. "
+            + "Lei disse che avrebbero dovuto aspettare fino alla mattina, perché non c'era più niente "
+            + "che qualcuno potesse fare per lui nel buio. Questo capitolo descrive come funziona il sistema "
+            + "e che cosa dovete sapere prima di cominciare. Siamo andati per le strade della città per "
+            + "vedere le persone che vivono e lavorano qui.");
+        SAMPLES.put("pt", "O velho era magro e seco, com rugas profundas na parte de trás do pescoço. "
+            + "Tudo nele era velho, com exceção dos olhos, que tinham a mesma cor do mar. "
+            + "Ela disse que teriam de esperar até de manhã, porque não havia mais nada que "
+            + "alguém pudesse fazer por ele no escuro. Este capítulo descreve como o sistema funciona "
+            + "e o que você precisa saber antes de começar. Fomos pelas ruas da cidade para ver "
+            + "as pessoas que vivem e trabalham aqui.");
+        SAMPLES.put("nl", "De oude man was mager en uitgeteerd, met diepe rimpels in zijn nek. "
+            + "Alles aan hem was oud, behalve zijn ogen, en die hadden dezelfde kleur als de zee. "
+            + "Ze zei dat ze tot de ochtend moesten wachten, omdat niemand in het donker nog iets "
+            + "voor hem kon doen. Dit hoofdstuk beschrijft hoe het systeem werkt en wat u moet weten "
+            + "voordat u begint. We liepen door de straten van de stad om de mensen te zien die "
+            + "hier wonen en werken.");
+    }
+    
+    // 各语言的三元组（按编码排序）及其对应得分，得分按频率排名递减
+    private final String[] languages;
+    private final long[][] trigrams;
+    private final int[][] weights;
+    
+    public LanguageDetector() {
+        languages = SAMPLES.keySet().toArray(new String[0]);
+        trigrams = new long[languages.length][];
+        weights = new int[languages.length][];
+        for (int i = 0; i < languages.length; i++) {
+            buildProfile(i, SAMPLES.get(languages[i]));
+        }
+    }
+    
+    /**
+     * 识别文本的语言，返回ISO 639-1代码；没有文字时返回 {@link #NO_TEXT}，无法判断时返回 {@link #UNDETERMINED}
+     */
+    public String detect(String text) {
+        if (text == null) {
+            return NO_TEXT;
+        }
+        
+        int han = 0;
+        int kana = 0;
+        int hangul = 0;
+        int latinWords = 0;
+        int otherWords = 0;
+        Character.UnicodeScript otherScript = null;
+        Character.UnicodeScript previous = null;
+        int end = Math.min(text.length(), MAX_CHARS);
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetter(c)) {
+                previous = null;
+                continue;
+            }
+            Character.UnicodeScript script = Character.UnicodeScript.of(c);
+            switch (script) {
+                case HAN:
+                    han++;
+                    break;
+                case HIRAGANA:
+                case KATAKANA:
+                    kana++;
+                    break;
+                case HANGUL:
+                    hangul++;
+                    break;
+                case LATIN:
+                    if (previous != script) {
+                        latinWords++;
+                    }
+                    break;
+                default:
+                    if (previous != script) {
+                        otherWords++;
+                        otherScript = script;
+                    }
+                    break;
+            }
+            previous = script;
+        }
+        
+        int units = han + kana + hangul + latinWords + otherWords;
+        if (units == 0) {
+            return NO_TEXT;
+        }
+        if (kana > 0 && kana * 10 >= han && (han + kana) * 2 >= units) {
+            return "ja";
+        }
+        if (hangul * 2 >= units) {
+            return "ko";
+        }
+        if (han >= units * CJK_RATIO) {
+            return "zh";
+        }
+        if (otherWords * 2 > units) {
+            return scriptLanguage(otherScript);
+        }
+        if (latinWords == 0) {
+            return UNDETERMINED;
+        }
+        return scoreLatin(text, end);
+    }
+    
+    /**
+     * 文本是否需要翻译：没有文字，或已经是目标语言时不需要
+     */
+    public boolean needsTranslation(String text, String targetLanguage) {
+        String language = detect(text);
+        if (NO_TEXT.equals(language)) {
+            return false;
+        }
+        return targetLanguage == null
+            || !(language.equalsIgnoreCase(targetLanguage)
+                || targetLanguage.toLowerCase().startsWith(language + "-"));
+    }
+    
+    private String scoreLatin(String text, int end) {
+        long[] scores = new long[languages.length];
+        long window = ' ';
+        int filled = 1;
+        char last = ' ';
+        // 非字母字符折叠为一个空格，单词首尾的三元组带空格
+        for (int i = 0; i <= end; i++) {
+            char c = i < end ? normalize(text.charAt(i)) : ' ';
+            if (c == ' ' && last == ' ') {
+                continue;
+            }
+            last = c;
+            window = ((window << 16) | c) & 0xFFFFFFFFFFFFL;
+            if (++filled < 3) {
+                continue;
+            }
+            for (int l = 0; l < languages.length; l++) {
+                int index = Arrays.binarySearch(trigrams[l], window);
+                if (index >= 0) {
+                    scores[l] += weights[l][index];
+                }
+            }
+        }
+        
+        int best = -1;
+        for (int l = 0; l < languages.length; l++) {
+            if (scores[l] > 0 && (best < 0 || scores[l] > scores[best])) {
+                best = l;
+            }
+        }
+        return best < 0 ? UNDETERMINED : languages[best];
+    }
+    
+    private void buildProfile(int language, String sample) {
+        Map<Long, Integer> counts = new HashMap<>();
+        long window = 0;
+        int filled = 0;
+        char last = ' ';
+        String padded = " " + sample + " ";
+        for (int i = 0; i < padded.length(); i++) {
+            char c = normalize(padded.charAt(i));
+            if (c == ' ' && last == ' ' && i > 0) {
+                continue;
+            }
+            last = c;
+            window = ((window << 16) | c) & 0xFFFFFFFFFFFFL;
+            if (++filled >= 3) {
+                counts.merge(window, 1, Integer::sum);
+            }
+        }
+        
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(counts.entrySet());
+        ranked.sort(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        int size = Math.min(PROFILE_SIZE, ranked.size());
+        Map<Long, Integer> profile = new HashMap<>();
+        for (int rank = 0; rank < size; rank++) {
+            profile.put(ranked.get(rank).getKey(), PROFILE_SIZE - rank);
+        }
+        long[] keys = profile.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        int[] values = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = profile.get(keys[i]);
+        }
+        trigrams[language] = keys;
+        weights[language] = values;
+    }
+    
+    private static char normalize(char c) {
+        return Character.isLetter(c) ? Character.toLowerCase(c) : ' ';
+    }
+    
+    private static String scriptLanguage(Character.UnicodeScript script) {
+        if (script == null) {
+            return UNDETERMINED;
+        }
+        switch (script) {
+            case CYRILLIC:
+                return "ru";
+            case GREEK:
+                return "el";
+            case ARABIC:
+                return "ar";
+            case HEBREW:
+                return "he";
+            case THAI:
+                return "th";
+            case DEVANAGARI:
+                return "hi";
+            default:
+                return UNDETERMINED;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.translator.infrastructure.translation;
+
+import java.util.Arrays;
+
+/**
+ * 最近若干次调用的耗时统计，用于估算延迟分位数
+ */
+public class LatencyTracker {
+    
+    private final long[] samples;
+    private int count;
+    private int next;
+    
+    public LatencyTracker(int windowSize) {
+        this.samples = new long[Math.max(1, windowSize)];
+    }
+    
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+    
+    /**
+     * 指定分位数（0~1）的耗时，样本数不足 minSamples 时返回-1
+     */
+    public synchronized long percentile(double quantile, int minSamples) {
+        if (count == 0 || count < minSamples) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(Math.min(1, Math.max(0, quantile)) * count) - 1;
+        return sorted[Math.max(0, index)];
+    }
+    
+    public synchronized int getSampleCount() {
+        return count;
+    }
+}
@@ -0,0 +1,34 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.exception.TranslationException;
+
+/**
+ * LLM API返回非成功状态码时的异常
+ * 携带HTTP状态码和服务端要求的等待时间，供限流与重试策略使用
+ */
+public class LlmApiException extends TranslationException {
+    
+    private final int statusCode;
+    private final long retryAfterMillis;
+    
+    public LlmApiException(int statusCode, long retryAfterMillis, String message) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+    
+    public int getStatusCode() {
+        return statusCode;
+    }
+    
+    /**
+     * 服务端通过 Retry-After 要求的等待时间，未提供时为 -1
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+    
+    public boolean isRateLimited() {
+        return statusCode == 429;
+    }
+}
\ No newline at end of file
@@ -1,24 +1,31 @@
 package com.translator.infrastructure.translation;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.translator.domain.model.Page;
+import com.translator.domain.service.PageStream;
 import com.translator.domain.service.TranslationService;
 import com.translator.domain.valueobject.TranslationProvider;
 import com.translator.domain.valueobject.TranslationRequest;
 import com.translator.domain.exception.TranslationException;
 import com.translator.infrastructure.config.TranslationProperties;
-import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.io.entity.StringEntity;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * OpenAI翻译服务实现
@@ -27,11 +34,25 @@ import java.util.concurrent.TimeUnit;
 public class OpenAITranslationService implements TranslationService {
     
     private static final Logger logger = LoggerFactory.getLogger(OpenAITranslationService.class);
+    // 健康探测的超时
+    private static final long PROBE_TIMEOUT = 10000;
+    // 流式翻译时每次最多取出并规划的页面数
+    private static final int STREAM_PAGES_PER_PLAN = 64;
     
     private final TranslationProperties properties;
     private final ObjectMapper objectMapper;
-    private final CloseableHttpClient httpClient;
+    private final ChatTransport transport;
     private final PromptService promptService;
+    private final TranslationMemory translationMemory;
+    private final SegmentCache segmentCache;
+    private final ProviderHealthRegistry healthRegistry;
+    private final ProviderHealthProber healthProber;
+    private final LanguageDetector languageDetector = new LanguageDetector();
+    private final Map<TranslationProvider, AdaptiveRateLimiter> rateLimiters = new EnumMap<>(TranslationProvider.class);
+    private final Map<TranslationProvider, CircuitBreaker> circuitBreakers = new EnumMap<>(TranslationProvider.class);
+    private final RetryPolicy retryPolicy;
+    private final RequestHedger requestHedger;
+    private final ProviderBalancer providerBalancer = new ProviderBalancer();
     
     public OpenAITranslationService(TranslationProperties properties, PromptService promptService) {
         this.properties = properties;
@@ -39,10 +60,73 @@ public class OpenAITranslationService implements TranslationService {
         this.objectMapper = new ObjectMapper();
         this.objectMapper.configure(com.fasterxml.jackson.core.JsonParser.Feature.ALLOW_COMMENTS, true);
         this.objectMapper.configure(com.fasterxml.jackson.core.JsonParser.Feature.ALLOW_UNQUOTED_CONTROL_CHARS, true);
-        this.httpClient = HttpClients.createDefault();
+        this.transport = createTransport();
+        this.translationMemory = properties.isMemoryEnabled()
+            ? new TranslationMemory(Paths.get(properties.getSettings().getMemoryPath()),
+                properties.getSettings().getMemoryMaxEntries())
+            : null;
+        this.segmentCache = new SegmentCache(properties.getSegmentCacheSize());
+        this.healthRegistry = new ProviderHealthRegistry(properties.getUnhealthyThreshold(),
+            properties.getUnhealthyCooldown(), properties.getHealthProbeTtl());
+        this.healthProber = new ProviderHealthProber(healthRegistry, this::probe);
+        this.retryPolicy = new RetryPolicy(properties.getRetryBudgetRatio(), properties.getRetryBudgetMax());
+        this.requestHedger = new RequestHedger(properties.getHedgeQuantile(), properties.getHedgeBudgetRatio(),
+            properties.getHedgeBudgetMax());
+        for (TranslationProvider provider : TranslationProvider.values()) {
+            circuitBreakers.put(provider, new CircuitBreaker(provider.getName(),
+                properties.getCircuitFailureThreshold(), properties.getCircuitOpenDuration()));
+        }
         
         // 记录配置信息
         logConfiguration();
+        warmUpConnections();
+        healthProber.start(configuredProviders(), properties.getHealthProbeInterval());
+    }
+    
+    /**
+     * 按配置选择传输层：默认使用连接池的阻塞式客户端，async 使用支持HTTP/2的非阻塞客户端
+     */
+    private ChatTransport createTransport() {
+        Map<String, TranslationProperties.ProviderConfig> baseUrls = providerBaseUrls();
+        if ("async".equalsIgnoreCase(properties.getTransport())) {
+            long connectTimeout = baseUrls.values().stream()
+                .mapToLong(TranslationProperties.ProviderConfig::getConnectTimeout)
+                .max().orElse(new TranslationProperties.ProviderConfig().getConnectTimeout());
+            logger.info("使用异步传输（HTTP/2），回调线程数: {}", properties.getAsyncThreads());
+            return new AsyncChatTransport(connectTimeout, properties.getAsyncThreads());
+        }
+        return new ClassicChatTransport(new HttpConnectionPool(baseUrls));
+    }
+    
+    private Map<String, TranslationProperties.ProviderConfig> providerBaseUrls() {
+        Map<String, TranslationProperties.ProviderConfig> baseUrls = new LinkedHashMap<>();
+        for (TranslationProvider provider : TranslationProvider.values()) {
+            TranslationProperties.ProviderConfig config = properties.getProviderConfig(provider);
+            if (config != null && config.getBaseUrl() != null && !config.getBaseUrl().trim().isEmpty()) {
+                baseUrls.put(normalizeBaseUrl(config.getBaseUrl()), config);
+            }
+        }
+        return baseUrls;
+    }
+    
+    /**
+     * 启动时为已配置的提供商预先建立连接，首批翻译请求不必等待TCP和TLS握手
+     */
+    private void warmUpConnections() {
+        for (TranslationProvider provider : TranslationProvider.values()) {
+            TranslationProperties.ProviderConfig config = properties.getProviderConfig(provider);
+            if (config != null && config.getWarmupConnections() > 0 && isConfigured(provider)) {
+                transport.warmUp(apiBaseUrl(config) + "/models", config.getApiKey(), config.getWarmupConnections());
+            }
+        }
+    }
+    
+    /**
+     * API根地址，如果baseUrl已经包含/v1，则不要重复添加
+     */
+    private String apiBaseUrl(TranslationProperties.ProviderConfig config) {
+        String baseUrl = normalizeBaseUrl(config.getBaseUrl());
+        return baseUrl.endsWith("/v1") ? baseUrl : baseUrl + "/v1";
     }
     
     /**
@@ -121,20 +205,14 @@ public class OpenAITranslationService implements TranslationService {
     public void translateBook(com.translator.domain.model.Book book, TranslationProvider provider) throws TranslationException {
         logger.info("开始翻译书籍: {}，共{}页", book.getOriginalFileName(), book.getTotalPages());
         
-        List<Page> pages = book.getPages();
-        int batchSize = properties.getBatchSize();
-        
-        for (int i = 0; i < pages.size(); i += batchSize) {
-            int endIndex = Math.min(i + batchSize, pages.size());
-            List<Page> batch = pages.subList(i, endIndex);
-            
-            logger.info("翻译批次: {}-{}/{}", i + 1, endIndex, pages.size());
-            translatePages(batch, provider);
-            
-            // 简单的进度报告
-            double progress = (double) (i + batch.size()) / pages.size() * 100;
-            logger.info("翻译进度: {:.1f}%", progress);
+        // 已完成的页面（如从检查点恢复的）不再重复翻译
+        List<Page> pending = book.getPages().stream()
+            .filter(page -> !page.isTranslated())
+            .collect(Collectors.toList());
+        if (pending.size() < book.getTotalPages()) {
+            logger.info("跳过{}个已翻译页面，剩余{}页", book.getTotalPages() - pending.size(), pending.size());
         }
+        translatePlanned(pending, provider);
         
         logger.info("书籍翻译完成: {}", book.getOriginalFileName());
     }
@@ -146,8 +224,8 @@ public class OpenAITranslationService implements TranslationService {
             return;
         }
         
-        String translatedText = translateText(page.getOriginalContent(), provider);
-        page.translate(translatedText);
+        // 超长页面同样需要按预算切分，避免输出被截断
+        translatePlanned(List.of(page), provider);
         
         logger.debug("页面翻译完成: {}", page.getId());
     }
@@ -158,65 +236,525 @@ public class OpenAITranslationService implements TranslationService {
             return;
         }
         
-        // 合并页面内容以提高翻译效率
-        StringBuilder combinedContent = new StringBuilder();
-        List<Integer> pageBoundaries = new ArrayList<>();
+        translatePlanned(pages, provider);
+    }
+    
+    /**
+     * 按token预算规划批次，并以有界并发执行
+     * 每个批次是一个独立的异步任务，译文由片段直接写回所属页面，完成顺序不影响结果
+     */
+    private void translatePlanned(List<Page> pages, TranslationProvider provider) throws TranslationException {
+        TranslationProperties.ProviderConfig config = properties.getProviderConfig(provider);
+        validateApiConfig(config, provider);
+        
+        BatchPlanner planner = newPlanner(config);
+        List<List<TranslationSegment>> batches = plan(planner, pages);
+        int totalSegments = batches.stream().mapToInt(List::size).sum();
+        AtomicInteger completedSegments = new AtomicInteger();
+        
+        List<ParallelTranslationExecutor.Task> tasks = new ArrayList<>();
+        for (int i = 0; i < batches.size(); i++) {
+            int batchNumber = i + 1;
+            List<TranslationSegment> batch = batches.get(i);
+            
+            tasks.add(cancellation -> {
+                logger.info("翻译批次: {}/{}，{}个片段，约{} tokens", batchNumber, batches.size(), batch.size(),
+                    batch.stream().mapToInt(TranslationSegment::getEstimatedTokens).sum());
+                return translateBatch(batch, provider, cancellation).thenRun(() -> {
+                    // 简单的进度报告
+                    double progress = (double) completedSegments.addAndGet(batch.size()) / totalSegments * 100;
+                    logger.info("翻译进度: {}%", String.format("%.1f", progress));
+                });
+            });
+        }
+        
+        ParallelTranslationExecutor executor = new ParallelTranslationExecutor(properties.getMaxConcurrency());
+        logger.info("{}个页面规划为{}个批次（每批预算{} tokens），最大并发数: {}",
+            pages.size(), batches.size(), planner.getTokenBudget(), executor.getMaxConcurrency());
+        executor.executeAll(tasks);
+        logger.debug("片段缓存命中率: {}%，合并重复请求{}次", String.format("%.1f", segmentCache.getHitRate() * 100),
+            segmentCache.getCoalescedCount());
+    }
+    
+    /**
+     * 边取页面边翻译：每次取出已到达的页面，规划为批次后立即提交
+     * 同时进行的批次数不超过最大并发数；并发已满时不再取页面，上游的有界队列随之填满，解析端被阻塞
+     */
+    @Override
+    public void translateStream(PageStream pages, TranslationProvider provider) throws TranslationException {
+        TranslationProperties.ProviderConfig config = properties.getProviderConfig(provider);
+        validateApiConfig(config, provider);
+        
+        BatchPlanner planner = newPlanner(config);
+        ParallelTranslationExecutor executor = new ParallelTranslationExecutor(properties.getMaxConcurrency());
+        int totalPages = 0;
+        int totalBatches = 0;
+        try (ParallelTranslationExecutor.Session session = executor.open()) {
+            List<Page> arrived;
+            while (!(arrived = pages.take(STREAM_PAGES_PER_PLAN)).isEmpty()) {
+                List<List<TranslationSegment>> batches = plan(planner, arrived);
+                totalPages += arrived.size();
+                totalBatches += batches.size();
+                logger.debug("收到{}个页面，规划为{}个批次", arrived.size(), batches.size());
+                for (List<TranslationSegment> batch : batches) {
+                    session.submit(cancellation -> translateBatch(batch, provider, cancellation));
+                }
+            }
+            session.awaitAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranslationException("翻译被中断", e);
+        }
+        logger.info("{}个页面共{}个批次翻译完成，最大并发数: {}", totalPages, totalBatches, executor.getMaxConcurrency());
+    }
+    
+    private BatchPlanner newPlanner(TranslationProperties.ProviderConfig config) {
+        return new BatchPlanner(config.getBatchTokenBudget(), properties.getMaxSegmentsPerBatch(),
+            properties.isHtmlAware(), properties.isLanguageDetectionEnabled() ? languageDetector : null,
+            properties.getTargetLanguage());
+    }
+    
+    private List<List<TranslationSegment>> plan(BatchPlanner planner, List<Page> pages) {
+        List<List<TranslationSegment>> batches = planner.plan(pages);
+        if (planner.getSkippedSegments() > 0) {
+            logger.info("跳过{}个已是目标语言或没有文字的片段", planner.getSkippedSegments());
+        }
+        // 最长处理时间优先：最大的批次（通常是超长章节的段落组）先开始，缩短整本书的完成时间
+        batches.sort(Comparator.comparingInt(OpenAITranslationService::estimatedTokens).reversed());
+        return batches;
+    }
+    
+    /**
+     * 翻译一个批次，失败或缺少译文的片段交给下一个提供商
+     * 已完成的片段保留，不会重复翻译；启用负载均衡时首个提供商由均衡器选择
+     */
+    private CompletableFuture<Void> translateBatch(List<TranslationSegment> batch, TranslationProvider preferred,
+                                                   CancellationToken cancellation) {
+        List<TranslationProvider> candidates = properties.isLoadBalancingEnabled()
+            ? availableProviders(preferred) : List.of(preferred);
+        TranslationProvider first = providerBalancer.acquire(candidates, estimatedTokens(batch), this::headroom);
+        return translateBatchVia(batch, route(first).iterator(), first, null, cancellation);
+    }
+    
+    /**
+     * 依次交给路由中的下一个提供商，直到所有片段完成或没有提供商可用
+     */
+    private CompletableFuture<Void> translateBatchVia(List<TranslationSegment> remaining,
+                                                      Iterator<TranslationProvider> route, TranslationProvider first,
+                                                      TranslationException lastError, CancellationToken cancellation) {
+        if (!route.hasNext()) {
+            if (lastError != null) {
+                return CompletableFuture.failedFuture(lastError);
+            }
+            // 如果分段少于片段数，剩下的页面可能没有被翻译
+            logger.warn("有 {} 个片段未能在批量翻译中获得结果，所在页面保持原文。", remaining.size());
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        TranslationProvider provider = route.next();
+        int tokens = estimatedTokens(remaining);
+        if (provider != first) {
+            logger.warn("{}个片段改由 {} 翻译", remaining.size(), provider.getName());
+            providerBalancer.onStart(provider, tokens);
+        }
+        long start = System.currentTimeMillis();
+        return translateBatchWith(remaining, provider, cancellation).handle((ignored, error) -> {
+            boolean success = error == null;
+            providerBalancer.onComplete(provider, tokens, System.currentTimeMillis() - start, success);
+            TranslationException failure = success ? null : ParallelTranslationExecutor.unwrap(error);
+            if (cancellation.isCancelled()) {
+                // 整个翻译已被取消，不计入提供商的健康状态，也不再交给其他提供商
+                return CompletableFuture.<Void>failedFuture(failure != null ? failure : new TranslationException("请求已取消"));
+            }
+            if (success) {
+                healthRegistry.recordSuccess(provider);
+            } else {
+                healthRegistry.recordFailure(provider);
+                logger.warn("{} 翻译批次失败: {}", provider.getName(), failure.getMessage());
+            }
+            
+            List<TranslationSegment> left = remaining.stream()
+                .filter(segment -> !segment.isCompleted())
+                .collect(Collectors.toList());
+            if (left.isEmpty()) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            return translateBatchVia(left, route, first, failure, cancellation);
+        }).thenCompose(Function.identity());
+    }
+    
+    /**
+     * 可参与负载均衡的提供商：已配置、健康且未熔断；都不可用时只用首选提供商
+     */
+    private List<TranslationProvider> availableProviders(TranslationProvider preferred) {
+        List<TranslationProvider> providers = new ArrayList<>();
+        for (TranslationProvider provider : TranslationProvider.values()) {
+            if ((provider == preferred || isConfigured(provider)) && healthRegistry.isHealthy(provider)
+                    && circuitBreakers.get(provider).isCallPermitted()) {
+                providers.add(provider);
+            }
+        }
+        return providers.isEmpty() ? List.of(preferred) : providers;
+    }
+    
+    private double headroom(TranslationProvider provider) {
+        AdaptiveRateLimiter rateLimiter = getRateLimiter(provider);
+        return rateLimiter != null ? rateLimiter.getHeadroom() : 1;
+    }
+    
+    private static int estimatedTokens(List<TranslationSegment> segments) {
+        return segments.stream().mapToInt(TranslationSegment::getEstimatedTokens).sum();
+    }
+    
+    /**
+     * 按提供商健康状态决定本次请求的尝试顺序
+     * 首选提供商排在最前，不健康或已熔断时让位于可用的备用提供商
+     */
+    private List<TranslationProvider> route(TranslationProvider preferred) {
+        List<TranslationProvider> route = new ArrayList<>();
+        route.add(preferred);
+        if (properties.isFailoverEnabled()) {
+            for (TranslationProvider provider : TranslationProvider.values()) {
+                if (provider != preferred && isConfigured(provider)) {
+                    route.add(provider);
+                }
+            }
+        }
+        // 稳定排序，健康状况相同时保持原有顺序
+        route.sort(Comparator.comparing(provider -> !healthRegistry.isHealthy(provider)
+            || !circuitBreakers.get(provider).isCallPermitted()));
+        return route;
+    }
+    
+    private boolean isConfigured(TranslationProvider provider) {
+        try {
+            validateApiConfig(properties.getProviderConfig(provider), provider);
+            return true;
+        } catch (TranslationException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 使用指定提供商翻译片段，先查翻译记忆库，未命中的片段按id发送
+     */
+    private CompletableFuture<Void> translateBatchWith(List<TranslationSegment> batch, TranslationProvider provider,
+                                                      CancellationToken cancellation) {
+        TranslationProperties.ProviderConfig config = properties.getProviderConfig(provider);
+        String systemPrompt = promptService.getSystemPrompt(properties.isHtmlAware());
         
-        for (Page page : pages) {
-            if (pageBoundaries.size() > 0) {
-                combinedContent.append("\n\n--- PAGE BREAK ---\n\n");
+        // 先查翻译记忆库，只发送未命中的片段
+        List<TranslationSegment> pending = new ArrayList<>();
+        for (TranslationSegment segment : batch) {
+            String key = memoryKey(segment.getText(), provider, config, systemPrompt);
+            String remembered = key != null ? translationMemory.lookup(key) : null;
+            if (remembered != null && segment.accepts(remembered)) {
+                segment.complete(remembered);
+            } else {
+                pending.add(segment);
             }
-            pageBoundaries.add(combinedContent.length());
-            combinedContent.append(page.getOriginalContent());
         }
-        pageBoundaries.add(combinedContent.length());
+        if (pending.size() < batch.size()) {
+            logger.debug("翻译记忆库命中{}个片段，剩余{}个待翻译", batch.size() - pending.size(), pending.size());
+        }
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
         
-        // 翻译合并后的内容
-        String translatedContent = translateText(combinedContent.toString(), provider);
+        // 进程内缓存与single-flight：相同内容已有译文，或正由其他批次（包括其他书）翻译时不再发送
+        Map<Integer, TranslationSegment> outstanding = new LinkedHashMap<>();
+        Map<Integer, String> cacheKeys = new HashMap<>();
+        Map<TranslationSegment, CompletableFuture<String>> followers = new LinkedHashMap<>();
+        for (int i = 0; i < pending.size(); i++) {
+            TranslationSegment segment = pending.get(i);
+            String cacheKey = SegmentCache.key(segment.getText(), systemPrompt);
+            String cached = segmentCache.lookup(cacheKey);
+            CompletableFuture<String> flight = cached == null ? segmentCache.claim(cacheKey) : null;
+            if (cached != null) {
+                segment.complete(cached);
+            } else if (flight != null) {
+                followers.put(segment, flight);
+            } else {
+                outstanding.put(i + 1, segment);
+                cacheKeys.put(i + 1, cacheKey);
+            }
+        }
+        if (!followers.isEmpty()) {
+            logger.debug("{}个片段与进行中的请求相同，等待其结果", followers.size());
+        }
         
-        // 使用分隔符分割翻译结果
-        // 注意：大模型可能会在分隔符前后添加额外的空白字符，或者稍微改变分隔符格式
-        // 这里使用正则表达式来稍微放宽匹配条件
-        String[] segments = translatedContent.split("\\s*--- PAGE BREAK ---\\s*");
+        // 片段按id编号；缺失、无效或丢失了占位符的片段单独重新请求，已得到的译文保留
+        Map<Integer, String> results = new HashMap<>();
+        Map<Integer, String> rejected = new HashMap<>();
+        return requestRounds(outstanding, systemPrompt, results, rejected, 0, provider, config, cancellation)
+            .thenRun(() -> {
+                // 重试后占位符仍不完整的片段按尽量还原的译文写回，不进入缓存和记忆库
+                rejected.forEach((id, translation) -> {
+                    TranslationSegment segment = outstanding.remove(id);
+                    if (segment != null) {
+                        logger.warn("片段{}的译文占位符不完整，按尽量还原的结果写回", id);
+                        segment.complete(translation);
+                    }
+                });
+            })
+            // 未得到译文的片段以null结束认领，等待者留给后续的提供商处理
+            .whenComplete((ignored, error) ->
+                cacheKeys.forEach((id, cacheKey) -> segmentCache.release(cacheKey, results.get(id))))
+            .thenCompose(ignored -> awaitFollowers(followers))
+            .thenCompose(failed -> {
+                if (failed.isEmpty()) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                // 被等待的请求失败时，这些片段重新认领并由本批次自己翻译
+                logger.debug("{}个片段等待的请求未得到译文，改为自行翻译", failed.size());
+                return translateBatchWith(failed, provider, cancellation);
+            });
+    }
+    
+    /**
+     * 逐轮请求尚未得到有效译文的片段，最多重试 segmentRetryCount 轮
+     * 译文按实际给出它的提供商写入记忆库；一轮的译文来自多个提供商时（如对冲双方都返回）不写入
+     */
+    private CompletableFuture<Void> requestRounds(Map<Integer, TranslationSegment> outstanding, String systemPrompt,
+                                                  Map<Integer, String> results, Map<Integer, String> rejected, int round,
+                                                  TranslationProvider provider, TranslationProperties.ProviderConfig config,
+                                                  CancellationToken cancellation) {
+        if (round > properties.getSegmentRetryCount() || outstanding.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (round > 0) {
+            logger.warn("批量响应缺少{}个片段的有效译文，仅重新请求这些片段: {}", outstanding.size(), outstanding.keySet());
+        }
+        Set<TranslationProvider> producers = ConcurrentHashMap.newKeySet();
+        return requestSegments(outstanding, provider, config, producers, cancellation).thenCompose(translations -> {
+            TranslationProvider producer = producers.size() == 1 ? producers.iterator().next() : null;
+            translations.forEach((id, translation) -> {
+                if (!outstanding.get(id).accepts(translation)) {
+                    rejected.put(id, translation);
+                    return;
+                }
+                if (producer != null) {
+                    remember(memoryKey(outstanding.get(id).getText(), producer,
+                        properties.getProviderConfig(producer), systemPrompt), translation);
+                }
+                results.put(id, translation);
+                outstanding.remove(id).complete(translation);
+            });
+            return requestRounds(outstanding, systemPrompt, results, rejected, round + 1, provider, config,
+                cancellation);
+        });
+    }
+    
+    /**
+     * 等待相同内容的进行中请求，得到译文的片段随之完成；返回请求失败、仍需翻译的片段
+     */
+    private static CompletableFuture<List<TranslationSegment>> awaitFollowers(
+            Map<TranslationSegment, CompletableFuture<String>> followers) {
+        List<TranslationSegment> failed = Collections.synchronizedList(new ArrayList<>());
+        return CompletableFuture.allOf(followers.entrySet().stream()
+            .map(follower -> follower.getValue().handle((translation, error) -> {
+                if (error == null && translation != null) {
+                    follower.getKey().complete(translation);
+                } else {
+                    failed.add(follower.getKey());
+                }
+                return null;
+            }))
+            .toArray(CompletableFuture[]::new))
+            .thenApply(ignored -> new ArrayList<>(failed));
+    }
+    
+    private static String awaitFlight(CompletableFuture<String> flight) throws TranslationException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranslationException("翻译被中断", e);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 发送一组片段，返回得到有效译文的片段（id -> 译文）
+     * 单个片段直接发送原文；多个片段按JSON片段协议合并为一次请求
+     * @param producers 收集给出译文的提供商
+     */
+    private CompletableFuture<Map<Integer, String>> requestSegments(Map<Integer, TranslationSegment> segments,
+                                                                    TranslationProvider provider,
+                                                                    TranslationProperties.ProviderConfig config,
+                                                                    Set<TranslationProvider> producers,
+                                                                    CancellationToken cancellation) {
+        // 原始标签编码为占位符的片段同样需要保留占位符的要求
+        boolean placeholders = properties.isHtmlAware()
+            || segments.values().stream().anyMatch(TranslationSegment::hasPlaceholders);
+        if (segments.size() == 1) {
+            Map.Entry<Integer, TranslationSegment> entry = segments.entrySet().iterator().next();
+            return translateSplitting(entry.getValue().getText(), provider, config,
+                promptService.getSystemPrompt(placeholders), entry.getValue().getPage(), producers, cancellation)
+                .thenApply(translation -> Map.of(entry.getKey(), translation));
+        }
         
-        if (segments.length != pages.size()) {
-            logger.warn("翻译结果的分段数量({})与页面数量({})不匹配。尝试按顺序分配，但这可能导致内容错位。", 
-                segments.length, pages.size());
+        Map<Integer, String> texts = new LinkedHashMap<>();
+        segments.forEach((id, segment) -> texts.put(id, segment.getText()));
+        String content;
+        try {
+            content = SegmentProtocol.encode(objectMapper, texts);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new TranslationException("无法编码批量请求", e));
         }
         
-        // 分配翻译结果
-        for (int i = 0; i < Math.min(pages.size(), segments.length); i++) {
-            String pageTranslation = segments[i].trim();
-            pages.get(i).translate(pageTranslation);
+        return callHedged(content, provider, config, promptService.getBatchPrompt(placeholders),
+            new SegmentStreamListener(segments), producers, cancellation)
+            .handle((response, error) -> {
+                if (error == null) {
+                    return collectSegments(segments, response, false, provider, config, producers, cancellation);
+                }
+                Throwable cause = ParallelTranslationExecutor.cause(error);
+                if (cause instanceof TruncatedResponseException) {
+                    return collectSegments(segments, ((TruncatedResponseException) cause).getPartialContent(), true,
+                        provider, config, producers, cancellation);
+                }
+                return CompletableFuture.<Map<Integer, String>>failedFuture(cause);
+            })
+            .thenCompose(Function.identity());
+    }
+    
+    /**
+     * 解析批量响应；译文被截断时，截断前已完整的片段保留，其余片段分成两半并行重新请求
+     */
+    private CompletableFuture<Map<Integer, String>> collectSegments(Map<Integer, TranslationSegment> segments,
+                                                                    String response, boolean truncated,
+                                                                    TranslationProvider provider,
+                                                                    TranslationProperties.ProviderConfig config,
+                                                                    Set<TranslationProvider> producers,
+                                                                    CancellationToken cancellation) {
+        SegmentProtocol protocol = new SegmentProtocol(new HashSet<>(segments.keySet()), null);
+        protocol.feed(response);
+        Map<Integer, String> translations = new ConcurrentHashMap<>(protocol.finish());
+        if (!truncated) {
+            if (protocol.getError() != null) {
+                logger.warn("批量响应的JSON不完整，已解析出{}/{}个片段: {}", translations.size(), segments.size(),
+                    protocol.getError().getMessage());
+            }
+            return CompletableFuture.completedFuture(translations);
         }
         
-        // 如果分段少于页面数，剩下的页面可能没有被翻译
-        if (segments.length < pages.size()) {
-            logger.warn("有 {} 个页面未能在批量翻译中获得结果，保持原文。", pages.size() - segments.length);
+        List<Integer> missing = new ArrayList<>(segments.keySet());
+        missing.removeAll(translations.keySet());
+        logger.warn("批量译文被截断，已得到{}/{}个片段，其余{}个分成两半重新请求", translations.size(), segments.size(),
+            missing.size());
+        List<CompletableFuture<Void>> parts = new ArrayList<>();
+        int half = (missing.size() + 1) / 2;
+        for (List<Integer> ids : List.of(missing.subList(0, half), missing.subList(half, missing.size()))) {
+            if (ids.isEmpty()) {
+                continue;
+            }
+            Map<Integer, TranslationSegment> part = new LinkedHashMap<>();
+            ids.forEach(id -> part.put(id, segments.get(id)));
+            parts.add(requestSegments(part, provider, config, producers, cancellation)
+                .thenAccept(translations::putAll));
         }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).thenApply(ignored -> translations);
     }
     
+    /**
+     * 翻译单个片段；译文被截断时在最接近中点的段落边界处切成两半，并行翻译后按原有空白拼接
+     * 两半并行时不再写流式预览，避免预览内容交错
+     */
+    private CompletableFuture<String> translateSplitting(String text, TranslationProvider provider,
+                                                         TranslationProperties.ProviderConfig config, String systemPrompt,
+                                                         Page page, Set<TranslationProvider> producers,
+                                                         CancellationToken cancellation) {
+        return callHedged(text, provider, config, systemPrompt, page != null ? new PageStreamListener(page) : null,
+            producers, cancellation)
+            .handle((translation, error) -> {
+                if (error == null) {
+                    return CompletableFuture.completedFuture(translation);
+                }
+                Throwable cause = ParallelTranslationExecutor.cause(error);
+                int cut = cause instanceof TruncatedResponseException ? BatchPlanner.findParagraphMidpoint(text) : -1;
+                if (cut < 0) {
+                    return CompletableFuture.<String>failedFuture(cause);
+                }
+                String head = text.substring(0, cut).stripTrailing();
+                String tail = text.substring(cut).stripLeading();
+                String separator = text.substring(head.length(), text.length() - tail.length());
+                logger.warn("译文被截断，按段落边界切成两半并行重译，原文长度: {} -> {} + {}", text.length(),
+                    head.length(), tail.length());
+                
+                return translateSplitting(head, provider, config, systemPrompt, null, producers, cancellation)
+                    .thenCombine(translateSplitting(tail, provider, config, systemPrompt, null, producers, cancellation),
+                        (first, second) -> first + separator + second);
+            })
+            .thenCompose(Function.identity());
+    }
+    
+    /**
+     * 本地识别文本语言，不调用API
+     */
     @Override
     public String detectLanguage(String text) throws TranslationException {
-        // 简化实现，假设英文内容需要翻译成中文
-        // 实际项目中应该使用语言检测API
-        return "en";
+        return languageDetector.detect(text);
     }
     
+    /**
+     * 读取后台探测的结果，不在调用线程上发出请求；
+     * 结果过期或尚未探测时触发一次后台探测，并暂时视为可用，真正的故障由翻译请求的重试和故障转移处理
+     */
     @Override
     public boolean isServiceAvailable(TranslationProvider provider) {
-        if (provider != TranslationProvider.OPENAI && provider != TranslationProvider.DEEPSEEK) {
+        if ((provider != TranslationProvider.OPENAI && provider != TranslationProvider.DEEPSEEK)
+                || !isConfigured(provider)) {
             return false;
         }
         
-        try {
-            // 尝试进行简单的API调用来检查服务可用性
-            String testTranslation = translateText("Hello", provider);
-            return testTranslation != null && !testTranslation.isEmpty();
-        } catch (Exception e) {
-            logger.warn("翻译服务不可用: {}", provider.getName(), e);
+        Boolean probed = healthRegistry.getProbeResult(provider);
+        if (probed == null) {
+            healthProber.refreshAsync(provider);
+        }
+        return !Boolean.FALSE.equals(probed) && healthRegistry.isHealthy(provider);
+    }
+    
+    /**
+     * 立即探测服务是否可用 - 用于配置验证
+     */
+    public boolean checkServiceNow(TranslationProvider provider) {
+        if ((provider != TranslationProvider.OPENAI && provider != TranslationProvider.DEEPSEEK)
+                || !isConfigured(provider)) {
             return false;
         }
+        Boolean probed = healthProber.probeNow(provider);
+        if (probed == null) {
+            probed = healthRegistry.getProbeResult(provider);
+        }
+        return !Boolean.FALSE.equals(probed);
+    }
+    
+    /**
+     * 请求 /models 检查提供商是否可用：只有2xx视为可用，认证失败、地址错误（如404）和5xx都视为不可用
+     */
+    private boolean probe(TranslationProvider provider) throws Exception {
+        TranslationProperties.ProviderConfig config = properties.getProviderConfig(provider);
+        validateApiConfig(config, provider);
+        int status = transport.probe(apiBaseUrl(config) + "/models", config.getApiKey(), PROBE_TIMEOUT)
+            .get(PROBE_TIMEOUT + 1000, TimeUnit.MILLISECONDS);
+        if (status < 200 || status >= 300) {
+            logger.warn("{} 健康探测返回 {}", provider.getName(), status);
+            return false;
+        }
+        return true;
+    }
+    
+    private List<TranslationProvider> configuredProviders() {
+        List<TranslationProvider> providers = new ArrayList<>();
+        for (TranslationProvider provider : TranslationProvider.values()) {
+            if ((provider == TranslationProvider.OPENAI || provider == TranslationProvider.DEEPSEEK)
+                    && isConfigured(provider)) {
+                providers.add(provider);
+            }
+        }
+        return providers;
     }
     
     /**
@@ -236,56 +774,250 @@ public class OpenAITranslationService implements TranslationService {
         // 验证配置
         validateApiConfig(config, provider);
         
-        logger.debug("翻译文本 - 长度: {}, 提供商: {}", text.length(), provider.getName());
+        String systemPrompt = promptService.getSystemPrompt();
+        String key = memoryKey(text, provider, config, systemPrompt);
+        String remembered = key != null ? translationMemory.lookup(key) : null;
+        if (remembered != null) {
+            logger.debug("翻译记忆库命中 - 长度: {}, 提供商: {}", text.length(), provider.getName());
+            return remembered;
+        }
         
-        int retryCount = properties.getRetryCount();
-        for (int attempt = 1; attempt <= retryCount; attempt++) {
-            try {
-                return callTranslationAPI(text, provider, config);
-            } catch (Exception e) {
-                logger.warn("LLM API调用失败 (尝试 {}/{}): {}", attempt, retryCount, e.getMessage());
-                
-                if (attempt < retryCount) {
-                    try {
-                        TimeUnit.MILLISECONDS.sleep(properties.getRetryDelay());
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new TranslationException("翻译被中断", ie);
-                    }
-                } else {
-                    throw new TranslationException("LLM API调用失败，已重试" + retryCount + "次: " + e.getMessage(), e);
-                }
+        String cacheKey = SegmentCache.key(text, systemPrompt);
+        String cached = segmentCache.lookup(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<String> flight = segmentCache.claim(cacheKey);
+        if (flight != null) {
+            String translation = awaitFlight(flight);
+            if (translation != null) {
+                return translation;
             }
         }
         
-        throw new TranslationException("翻译失败");
+        String translation = null;
+        try {
+            translation = await(callWithRetry(text, provider, config, systemPrompt, null, new CancellationToken()));
+            remember(key, translation);
+            return translation;
+        } finally {
+            if (flight == null) {
+                segmentCache.release(cacheKey, translation);
+            }
+        }
     }
     
-    private String callTranslationAPI(String text, TranslationProvider provider, TranslationProperties.ProviderConfig config) throws Exception {
-        String baseUrl = normalizeBaseUrl(config.getBaseUrl());
-        String apiUrl;
+    /**
+     * 启用对冲时，首选提供商的请求过慢则同时发给另一个可用的提供商，先返回者胜出
+     * 流式预览只来自首选请求
+     * @param producers 收集返回了译文（包括被截断的部分译文）的提供商，胜出方一定在其中
+     */
+    private CompletableFuture<String> callHedged(String text, TranslationProvider provider,
+                                                 TranslationProperties.ProviderConfig config, String systemPrompt,
+                                                 StreamListener listener, Set<TranslationProvider> producers,
+                                                 CancellationToken cancellation) {
+        TranslationProvider alternate = properties.isHedgeEnabled() ? hedgeProvider(provider) : null;
+        if (alternate == null) {
+            // 同一批次的多个请求可能并行，各自使用独立的子信号登记请求
+            return produced(callWithRetry(text, provider, config, systemPrompt, listener, cancellation.child()),
+                provider, producers);
+        }
         
-        // 如果baseUrl已经包含/v1，则不要重复添加
-        if (baseUrl.endsWith("/v1")) {
-            apiUrl = baseUrl + "/chat/completions";
-        } else {
-            apiUrl = baseUrl + "/v1/chat/completions";
+        TranslationProperties.ProviderConfig alternateConfig = properties.getProviderConfig(alternate);
+        return requestHedger.call(provider, cancellation,
+            token -> produced(callWithRetry(text, provider, config, systemPrompt, listener, token),
+                provider, producers),
+            token -> produced(callWithRetry(text, alternate, alternateConfig, systemPrompt, null, token),
+                alternate, producers));
+    }
+    
+    /**
+     * 调用得到译文时记录提供商；在对冲器判定胜负之前执行
+     */
+    private static CompletableFuture<String> produced(CompletableFuture<String> call, TranslationProvider provider,
+                                                      Set<TranslationProvider> producers) {
+        return call.whenComplete((translation, error) -> {
+            if (error == null || ParallelTranslationExecutor.cause(error) instanceof TruncatedResponseException) {
+                producers.add(provider);
+            }
+        });
+    }
+    
+    private TranslationProvider hedgeProvider(TranslationProvider provider) {
+        for (TranslationProvider candidate : TranslationProvider.values()) {
+            if (candidate != provider && isConfigured(candidate) && healthRegistry.isHealthy(candidate)
+                    && circuitBreakers.get(candidate).isCallPermitted()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 调用LLM API，按重试策略处理失败
+     * 不可重试的错误立即失败；熔断器打开时直接失败，由上层把批次交给其他提供商；
+     * 退避期间不占用线程
+     */
+    private CompletableFuture<String> callWithRetry(String text, TranslationProvider provider,
+                                                    TranslationProperties.ProviderConfig config, String systemPrompt,
+                                                    StreamListener listener, CancellationToken cancellation) {
+        logger.debug("翻译文本 - 长度: {}, 提供商: {}", text.length(), provider.getName());
+        retryPolicy.recordRequest();
+        return callAttempt(1, text, provider, config, systemPrompt, listener, cancellation);
+    }
+    
+    private CompletableFuture<String> callAttempt(int attempt, String text, TranslationProvider provider,
+                                                  TranslationProperties.ProviderConfig config, String systemPrompt,
+                                                  StreamListener listener, CancellationToken cancellation) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(provider);
+        if (cancellation.isCancelled()) {
+            return CompletableFuture.failedFuture(new TranslationException("请求已取消"));
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new TranslationException(provider.getName() + " 已熔断，请求直接失败"));
         }
+        return callTranslationAPI(text, provider, config, systemPrompt, listener, cancellation)
+            .handle((translation, error) -> {
+                if (error == null) {
+                    circuitBreaker.recordSuccess();
+                    return CompletableFuture.completedFuture(translation);
+                }
+                Throwable cause = ParallelTranslationExecutor.cause(error);
+                if (listener != null) {
+                    listener.onRestart();
+                }
+                if (cause instanceof TruncatedResponseException) {
+                    // 服务正常，只是输出超出上限，由调用方切分后重新请求
+                    circuitBreaker.recordSuccess();
+                    return CompletableFuture.<String>failedFuture(cause);
+                }
+                if (cancellation.isCancelled()) {
+                    // 对冲的另一方已胜出或整个翻译已取消，请求被主动中止
+                    circuitBreaker.recordIgnored();
+                    return CompletableFuture.<String>failedFuture(new TranslationException("请求已取消", cause));
+                }
+                if (!(cause instanceof Exception)) {
+                    circuitBreaker.recordIgnored();
+                    return CompletableFuture.<String>failedFuture(cause);
+                }
+                Exception e = (Exception) cause;
+                boolean retryable = RetryPolicy.isRetryable(e);
+                boolean rateLimited = e instanceof LlmApiException && ((LlmApiException) e).isRateLimited();
+                // 只有超时和服务端错误说明提供商故障
+                if (retryable && !rateLimited) {
+                    circuitBreaker.recordFailure();
+                } else {
+                    circuitBreaker.recordIgnored();
+                }
+                int retryCount = Math.max(1, properties.getRetryCount());
+                logger.warn("LLM API调用失败 (尝试 {}/{}): {}", attempt, retryCount, e.getMessage());
+                
+                if (!retryable) {
+                    return CompletableFuture.<String>failedFuture(
+                        new TranslationException("LLM API调用失败，错误不可重试: " + e.getMessage(), e));
+                }
+                if (attempt >= retryCount) {
+                    return CompletableFuture.<String>failedFuture(
+                        new TranslationException("LLM API调用失败，已重试" + retryCount + "次: " + e.getMessage(), e));
+                }
+                if (rateLimited) {
+                    // 限流器已按 Retry-After 暂停该提供商，下一次调用会在配额恢复后发出，不占用重试预算
+                    return callAttempt(attempt + 1, text, provider, config, systemPrompt, listener, cancellation);
+                }
+                if (!retryPolicy.tryAcquireRetry()) {
+                    return CompletableFuture.<String>failedFuture(
+                        new TranslationException("LLM API调用失败，重试预算已用尽: " + e.getMessage(), e));
+                }
+                long backoff = RetryPolicy.backoffMillis(attempt, properties.getRetryDelay(),
+                    properties.getMaxRetryDelay(), e);
+                return CompletableFuture.runAsync(() -> { },
+                        CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored ->
+                        callAttempt(attempt + 1, text, provider, config, systemPrompt, listener, cancellation));
+            })
+            .thenCompose(Function.identity());
+    }
+    
+    private String memoryKey(String text, TranslationProvider provider, TranslationProperties.ProviderConfig config,
+                             String systemPrompt) {
+        if (translationMemory == null) {
+            return null;
+        }
+        return TranslationMemory.key(text, provider, config.getModel(), systemPrompt);
+    }
+    
+    private void remember(String key, String translation) {
+        if (key != null) {
+            translationMemory.store(key, translation);
+        }
+    }
+    
+    public ProviderHealthRegistry getHealthRegistry() {
+        return healthRegistry;
+    }
+    
+    /**
+     * 应用关闭时停止后台健康探测，并关闭传输层的连接池、客户端和线程
+     */
+    @PreDestroy
+    public void close() {
+        healthProber.close();
+        try {
+            transport.close();
+        } catch (IOException e) {
+            logger.warn("关闭HTTP传输失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 提供商的限流器，尚未发出过请求时返回null
+     */
+    public AdaptiveRateLimiter getRateLimiter(TranslationProvider provider) {
+        synchronized (rateLimiters) {
+            return rateLimiters.get(provider);
+        }
+    }
+    
+    public RequestHedger getRequestHedger() {
+        return requestHedger;
+    }
+    
+    public CircuitBreaker getCircuitBreaker(TranslationProvider provider) {
+        return circuitBreakers.get(provider);
+    }
+    
+    public SegmentCache getSegmentCache() {
+        return segmentCache;
+    }
+    
+    /**
+     * 翻译记忆库，未启用时返回null
+     */
+    public TranslationMemory getTranslationMemory() {
+        return translationMemory;
+    }
+    
+    private CompletableFuture<String> callTranslationAPI(String text, TranslationProvider provider,
+                                                         TranslationProperties.ProviderConfig config, String systemPrompt,
+                                                         StreamListener listener, CancellationToken cancellation) {
+        String apiUrl = apiBaseUrl(config) + "/chat/completions";
         
         logger.debug("调用 LLM API - URL: {}, Provider: {}, Model: {}", apiUrl, provider.getName(), config.getModel());
         
-        // 构建OpenAI API请求
+        // 构建OpenAI API请求，max_tokens 按本次输入的大小确定
+        int inputTokens = TokenEstimator.estimate(text);
+        int maxTokens = config.getMaxTokensFor(inputTokens);
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("model", config.getModel());
         requestBody.put("temperature", config.getTemperature());
-        requestBody.put("max_tokens", config.getMaxTokens());
+        requestBody.put("max_tokens", maxTokens);
         
         List<Map<String, String>> messages = new ArrayList<>();
         
         // 系统消息
         Map<String, String> systemMessage = new HashMap<>();
         systemMessage.put("role", "system");
-        systemMessage.put("content", promptService.getSystemPrompt());
+        systemMessage.put("content", systemPrompt);
         messages.add(systemMessage);
         
         // 用户消息
@@ -295,35 +1027,223 @@ public class OpenAITranslationService implements TranslationService {
         messages.add(userMessage);
         
         requestBody.put("messages", messages);
+        if (config.isStream()) {
+            requestBody.put("stream", true);
+        }
+        
+        String jsonBody;
+        try {
+            jsonBody = objectMapper.writeValueAsString(requestBody);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        StreamingContent streamingContent = config.isStream() ? new StreamingContent(listener, maxTokens) : null;
+        ChatRequest request = new ChatRequest(apiUrl, config.getApiKey(), jsonBody,
+            config.getResponseTimeoutFor(inputTokens), streamingContent);
+        
+        // 按提供商配额限流；token按输入加 max_tokens 计算，与服务端的计量方式一致
+        AdaptiveRateLimiter rateLimiter = rateLimiter(provider, config);
+        return rateLimiter.acquireAsync(TokenEstimator.estimate(systemPrompt) + inputTokens + maxTokens)
+            .thenCompose(ignored -> {
+                if (cancellation.isCancelled()) {
+                    return CompletableFuture.failedFuture(new TranslationException("请求已取消"));
+                }
+                // 对冲阈值只统计HTTP交换本身的耗时，不含限流等待和重试退避，限流时阈值不会随之升高
+                long sent = System.currentTimeMillis();
+                return transport.send(request, cancellation).whenComplete((response, error) -> {
+                    // 被对冲取消的请求至少耗时这么久
+                    if (response != null ? response.getStatusCode() == 200 : cancellation.isCancelled()) {
+                        requestHedger.recordLatency(provider, System.currentTimeMillis() - sent);
+                    }
+                });
+            })
+            .thenApply(response -> {
+                try {
+                    return parseResponse(response, rateLimiter, streamingContent, maxTokens);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+    }
+    
+    private String parseResponse(ChatResponse response, AdaptiveRateLimiter rateLimiter,
+                                 StreamingContent streamingContent, int maxTokens) throws Exception {
+        int statusCode = response.getStatusCode();
+        rateLimiter.onResponse(response::getHeader);
+        if (streamingContent != null && statusCode == 200) {
+            return streamingContent.getContent();
+        }
         
-        HttpPost httpPost = new HttpPost(apiUrl);
-        httpPost.setHeader("Authorization", "Bearer " + config.getApiKey());
-        httpPost.setHeader("Content-Type", "application/json");
+        String responseBody = response.getBody();
         
-        String jsonBody = objectMapper.writeValueAsString(requestBody);
-        httpPost.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+        if (statusCode != 200) {
+            long retryAfter = AdaptiveRateLimiter.parseRetryAfter(
+                response.getHeader("Retry-After"), response.getHeader("retry-after-ms"));
+            if (statusCode == 429) {
+                rateLimiter.onThrottled(retryAfter);
+            }
+            throw new LlmApiException(statusCode, retryAfter, "API调用失败: HTTP " + statusCode + " - " + responseBody);
+        }
         
-        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
-            int statusCode = response.getCode();
-            String responseBody = new String(response.getEntity().getContent().readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
-            
-            if (statusCode != 200) {
-                throw new TranslationException("API调用失败: HTTP " + statusCode + " - " + responseBody);
+        // 解析响应
+        Map<String, Object> responseMap = objectMapper.readValue(responseBody, Map.class);
+        List<Map<String, Object>> choices = (List<Map<String, Object>>) responseMap.get("choices");
+        
+        if (choices != null && !choices.isEmpty()) {
+            Map<String, Object> choice = choices.get(0);
+            Map<String, String> message = (Map<String, String>) choice.get("message");
+            if (message != null && message.containsKey("content")) {
+                String content = message.get("content").trim();
+                if ("length".equals(choice.get("finish_reason"))) {
+                    throw truncated(maxTokens, content);
+                }
+                return content;
+            }
+        }
+        
+        throw new TranslationException("无法解析API响应");
+    }
+    
+    private static TruncatedResponseException truncated(int maxTokens, String partialContent) {
+        return new TruncatedResponseException("译文被截断，输出达到 max_tokens=" + maxTokens, partialContent);
+    }
+    
+    /**
+     * 在调用线程上等待异步结果，只用于单次的同步调用；线程被中断时取消请求
+     */
+    private static <T> T await(CompletableFuture<T> future) throws TranslationException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new TranslationException("翻译被中断", e);
+        } catch (ExecutionException e) {
+            throw ParallelTranslationExecutor.unwrap(e);
+        }
+    }
+    
+    private AdaptiveRateLimiter rateLimiter(TranslationProvider provider, TranslationProperties.ProviderConfig config) {
+        synchronized (rateLimiters) {
+            return rateLimiters.computeIfAbsent(provider, p -> new AdaptiveRateLimiter(p.getName(),
+                config.getRequestsPerMinute(), config.getTokensPerMinute()));
+        }
+    }
+    
+    /**
+     * 逐行解析SSE响应，每个 data 事件携带一段增量输出
+     * 由传输层的线程调用，解析错误先记录下来，读取完成后再抛出
+     */
+    private class StreamingContent implements Consumer<String> {
+        
+        private final StreamListener listener;
+        private final int maxTokens;
+        private final long startTime = System.currentTimeMillis();
+        private final StringBuilder content = new StringBuilder();
+        private boolean done;
+        private boolean truncated;
+        private Exception error;
+        
+        StreamingContent(StreamListener listener, int maxTokens) {
+            this.listener = listener;
+            this.maxTokens = maxTokens;
+        }
+        
+        @Override
+        public synchronized void accept(String line) {
+            if (done || error != null || !line.startsWith("data:")) {
+                // 空行分隔事件，其余为注释或其他字段
+                return;
             }
             
-            // 解析响应
-            Map<String, Object> responseMap = objectMapper.readValue(responseBody, Map.class);
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) responseMap.get("choices");
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                done = true;
+                return;
+            }
+            if (data.isEmpty()) {
+                return;
+            }
             
-            if (choices != null && !choices.isEmpty()) {
-                Map<String, Object> choice = choices.get(0);
-                Map<String, String> message = (Map<String, String>) choice.get("message");
-                if (message != null && message.containsKey("content")) {
-                    return message.get("content").trim();
+            try {
+                JsonNode choice = objectMapper.readTree(data).path("choices").path(0);
+                if ("length".equals(choice.path("finish_reason").asText())) {
+                    truncated = true;
+                }
+                String chunk = choice.path("delta").path("content").asText("");
+                if (!chunk.isEmpty()) {
+                    if (content.length() == 0) {
+                        logger.debug("收到首个流式输出，耗时 {} ms", System.currentTimeMillis() - startTime);
+                    }
+                    content.append(chunk);
+                    if (listener != null) {
+                        listener.onChunk(chunk);
+                    }
                 }
+            } catch (Exception e) {
+                error = e;
             }
-            
-            throw new TranslationException("无法解析API响应");
+        }
+        
+        synchronized String getContent() throws Exception {
+            if (error != null) {
+                throw error;
+            }
+            if (truncated) {
+                throw truncated(maxTokens, content.toString().trim());
+            }
+            if (content.length() == 0) {
+                throw new TranslationException("流式响应中没有内容");
+            }
+            return content.toString().trim();
+        }
+    }
+    
+    /**
+     * 把单个片段的流式输出预览写入所属页面
+     */
+    private static class PageStreamListener implements StreamListener {
+        
+        private final Page page;
+        
+        PageStreamListener(Page page) {
+            this.page = page;
+        }
+        
+        @Override
+        public void onChunk(String chunk) {
+            page.appendPartialTranslation(chunk);
+        }
+        
+        @Override
+        public void onRestart() {
+            page.clearPartialTranslation();
+        }
+    }
+    
+    /**
+     * 批量请求的流式预览：增量解析JSON响应，每个片段完整后写入所属页面
+     */
+    private static class SegmentStreamListener implements StreamListener {
+        
+        private final Map<Integer, TranslationSegment> segments;
+        private final SegmentProtocol protocol;
+        
+        SegmentStreamListener(Map<Integer, TranslationSegment> segments) {
+            this.segments = segments;
+            this.protocol = new SegmentProtocol(new HashSet<>(segments.keySet()),
+                (id, text) -> segments.get(id).getPage().appendPartialTranslation(text));
+        }
+        
+        @Override
+        public void onChunk(String chunk) {
+            protocol.feed(chunk);
+        }
+        
+        @Override
+        public void onRestart() {
+            protocol.reset();
+            segments.values().forEach(segment -> segment.getPage().clearPartialTranslation());
         }
     }
 }
\ No newline at end of file
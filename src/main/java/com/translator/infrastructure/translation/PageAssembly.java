@@ -0,0 +1,73 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.model.Page;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * 页面组装器
+ * 收集同一页面各片段的译文（可能来自不同批次、不同线程），全部到齐后按顺序拼接写回页面
+ */
+class PageAssembly {
+    
+    private final Page page;
+    private final Function<List<String>, String> assembler;
+    private final List<TranslationSegment> segments;
+    private final AtomicReferenceArray<String> parts;
+    private final AtomicInteger remaining;
+    
+    /**
+     * 按顺序直接拼接各片段译文
+     */
+    PageAssembly(Page page, List<String> pieces) {
+        this(page, pieces, translations -> String.join("", translations));
+    }
+    
+    /**
+     * 使用自定义方式把各片段译文组装为页面内容
+     */
+    PageAssembly(Page page, List<String> pieces, Function<List<String>, String> assembler) {
+        this.page = page;
+        this.assembler = assembler;
+        List<TranslationSegment> list = new ArrayList<>(pieces.size());
+        for (int i = 0; i < pieces.size(); i++) {
+            list.add(new TranslationSegment(this, i, pieces.get(i)));
+        }
+        this.segments = Collections.unmodifiableList(list);
+        this.parts = new AtomicReferenceArray<>(pieces.size());
+        this.remaining = new AtomicInteger(pieces.size());
+        page.startUnits(pieces.size());
+    }
+    
+    void complete(int index, String translation) {
+        // 同一片段只接受第一次写回
+        if (!parts.compareAndSet(index, null, translation)) {
+            return;
+        }
+        page.completeUnit();
+        if (remaining.decrementAndGet() == 0) {
+            List<String> translations = new ArrayList<>(parts.length());
+            for (int i = 0; i < parts.length(); i++) {
+                translations.add(parts.get(i));
+            }
+            page.translate(assembler.apply(translations));
+        }
+    }
+    
+    boolean isCompleted(int index) {
+        return parts.get(index) != null;
+    }
+    
+    Page getPage() {
+        return page;
+    }
+    
+    List<TranslationSegment> getSegments() {
+        return segments;
+    }
+}
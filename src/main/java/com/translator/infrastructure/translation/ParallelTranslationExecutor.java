@@ -0,0 +1,169 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.exception.TranslationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 并行翻译执行器
+ * 以有界并发同时执行多个异步翻译任务，任一任务失败时取消其余任务；
+ * 任务等待响应期间不占用线程，并发数只限制同时进行的任务数
+ */
+public class ParallelTranslationExecutor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ParallelTranslationExecutor.class);
+    
+    /**
+     * 翻译任务
+     */
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * 开始执行任务，不阻塞调用线程；返回的Future在任务结束时完成
+         * @param cancellation 任务的取消信号，其他任务失败时被取消
+         */
+        CompletableFuture<?> start(CancellationToken cancellation);
+    }
+    
+    private final int maxConcurrency;
+    
+    public ParallelTranslationExecutor(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+    
+    /**
+     * 执行全部任务，最多同时进行 maxConcurrency 个
+     * 任务完成顺序不确定，每个任务需自行把结果写回对应的页面
+     */
+    public void executeAll(List<? extends Task> tasks) throws TranslationException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        
+        try (Session session = open()) {
+            for (Task task : tasks) {
+                session.submit(task);
+            }
+            session.awaitAll();
+        }
+    }
+    
+    /**
+     * 开始一次逐个提交任务的执行，用于任务陆续产生、无法一次列出的场景
+     */
+    public Session open() {
+        return new Session();
+    }
+    
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    /**
+     * 去掉异步结果外层的 CompletionException / ExecutionException
+     */
+    static Throwable cause(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+    
+    static TranslationException unwrap(Throwable error) {
+        Throwable cause = cause(error);
+        if (cause instanceof TranslationException) {
+            return (TranslationException) cause;
+        }
+        return new TranslationException("翻译任务执行失败: " + cause.getMessage(), cause);
+    }
+    
+    /**
+     * 逐个提交的任务
+     * 已有 maxConcurrency 个任务在进行时提交会阻塞，调用方因此暂停产生新任务（背压）；
+     * 任一任务失败后不再接受新任务，关闭时取消尚未完成的任务
+     */
+    public class Session implements AutoCloseable {
+        
+        private final CancellationToken cancellation = new CancellationToken();
+        private final Semaphore slots = new Semaphore(maxConcurrency);
+        private final List<CompletableFuture<?>> futures = new ArrayList<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        
+        private Session() {
+        }
+        
+        /**
+         * 提交一个任务，并发已满时等待有任务完成
+         * @throws TranslationException 之前提交的任务已经失败
+         */
+        public void submit(Task task) throws TranslationException {
+            checkFailure();
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TranslationException("翻译被中断", e);
+            }
+            if (failure.get() != null) {
+                slots.release();
+                checkFailure();
+            }
+            
+            CompletableFuture<?> future;
+            try {
+                future = task.start(cancellation);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.removeIf(CompletableFuture::isDone);
+            futures.add(future);
+            future.whenComplete((result, error) -> {
+                if (error != null) {
+                    failure.compareAndSet(null, error);
+                }
+                slots.release();
+            });
+        }
+        
+        /**
+         * 等待已提交的任务全部完成
+         */
+        public void awaitAll() throws TranslationException {
+            try {
+                slots.acquire(maxConcurrency);
+                slots.release(maxConcurrency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TranslationException("翻译被中断", e);
+            }
+            checkFailure();
+        }
+        
+        private void checkFailure() throws TranslationException {
+            Throwable cause = failure.get();
+            if (cause != null) {
+                long running = futures.stream().filter(future -> !future.isDone()).count();
+                if (running > 0) {
+                    logger.warn("翻译任务失败，取消剩余 {} 个任务", running);
+                }
+                throw unwrap(cause);
+            }
+        }
+        
+        /**
+         * 取消尚未完成的任务，中止它们正在进行的请求
+         */
+        @Override
+        public void close() {
+            cancellation.cancel();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.translator.infrastructure.translation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 行内标签占位符编解码
+ * 发送前把片段中的原始标签（连同属性）替换为 <1>…</1>、<2/> 这样的短占位符，收到译文后按编号原样还原，
+ * 模型既不必读入也不必照抄长属性；同时校验译文是否完整保留了每个占位符
+ *
+ * 片段本身已含编号占位符时（如HTML感知模式抽取的文本段）不再编码，只做校验
+ */
+public class PlaceholderCodec {
+    
+    private static final Pattern TAG = Pattern.compile("<(/?)([A-Za-z][A-Za-z0-9:_.-]*)(\\s[^<>]*?)?(/?)>");
+    private static final Pattern PLACEHOLDER = Pattern.compile("<(/?)(\\d+)(/?)>");
+    
+    private final String encoded;
+    // 编号 -> 原始开始标签（或空元素标签）和结束标签，没有结束标签时为null
+    private final List<String> openings;
+    private final List<String> closings;
+    // 编码后文本中的占位符，按出现顺序
+    private final List<String> expected;
+    
+    private PlaceholderCodec(String encoded, List<String> openings, List<String> closings) {
+        this.encoded = encoded;
+        this.openings = openings;
+        this.closings = closings;
+        this.expected = placeholders(encoded);
+    }
+    
+    /**
+     * 编码一个片段
+     */
+    public static PlaceholderCodec encode(String text) {
+        if (text == null || text.indexOf('<') < 0 || PLACEHOLDER.matcher(text).find()) {
+            return new PlaceholderCodec(text, Collections.emptyList(), Collections.emptyList());
+        }
+        
+        List<Tag> tags = new ArrayList<>();
+        Matcher matcher = TAG.matcher(text);
+        while (matcher.find()) {
+            tags.add(new Tag(matcher.start(), matcher.end(), !matcher.group(1).isEmpty(),
+                matcher.group(2).toLowerCase(Locale.ROOT), !matcher.group(4).isEmpty()));
+        }
+        if (tags.isEmpty()) {
+            return new PlaceholderCodec(text, Collections.emptyList(), Collections.emptyList());
+        }
+        
+        // 按名称配对开始和结束标签；没有配对的标签（如HTML的 <br>）单独作为空元素占位符
+        Deque<Tag> open = new ArrayDeque<>();
+        for (Tag tag : tags) {
+            if (tag.selfClosing) {
+                continue;
+            }
+            if (!tag.closing) {
+                open.push(tag);
+            } else if (open.stream().anyMatch(candidate -> candidate.name.equals(tag.name))) {
+                // 中间未闭合的标签保持不配对
+                Tag candidate = open.pop();
+                while (!candidate.name.equals(tag.name)) {
+                    candidate = open.pop();
+                }
+                candidate.partner = tag;
+                tag.partner = candidate;
+            }
+        }
+        
+        List<String> openings = new ArrayList<>();
+        List<String> closings = new ArrayList<>();
+        StringBuilder builder = new StringBuilder(text.length());
+        int position = 0;
+        for (Tag tag : tags) {
+            builder.append(text, position, tag.start);
+            position = tag.end;
+            String source = text.substring(tag.start, tag.end);
+            if (tag.partner == null) {
+                openings.add(source);
+                closings.add(null);
+                builder.append('<').append(openings.size()).append("/>");
+            } else if (!tag.closing) {
+                openings.add(source);
+                closings.add(text.substring(tag.partner.start, tag.partner.end));
+                tag.number = openings.size();
+                builder.append('<').append(tag.number).append('>');
+            } else {
+                builder.append("</").append(tag.partner.number).append('>');
+            }
+        }
+        builder.append(text, position, text.length());
+        return new PlaceholderCodec(builder.toString(), openings, closings);
+    }
+    
+    /**
+     * 发送给模型的文本
+     */
+    public String getEncoded() {
+        return encoded;
+    }
+    
+    public boolean hasPlaceholders() {
+        return !expected.isEmpty();
+    }
+    
+    /**
+     * 校验译文：每个占位符恰好出现一次，没有多余的占位符，成对的占位符正确嵌套
+     */
+    public boolean verify(String translation) {
+        if (translation == null) {
+            return false;
+        }
+        List<String> found = placeholders(translation);
+        if (found.size() != expected.size()) {
+            return false;
+        }
+        List<String> sortedFound = new ArrayList<>(found);
+        List<String> sortedExpected = new ArrayList<>(expected);
+        Collections.sort(sortedFound);
+        Collections.sort(sortedExpected);
+        if (!sortedFound.equals(sortedExpected)) {
+            return false;
+        }
+        
+        Deque<String> open = new ArrayDeque<>();
+        for (String placeholder : found) {
+            if (placeholder.endsWith("/>")) {
+                continue;
+            }
+            if (placeholder.startsWith("</")) {
+                if (open.isEmpty() || !open.pop().equals(placeholder.substring(2, placeholder.length() - 1))) {
+                    return false;
+                }
+            } else {
+                open.push(placeholder.substring(1, placeholder.length() - 1));
+            }
+        }
+        return open.isEmpty();
+    }
+    
+    /**
+     * 还原译文中的占位符；未通过校验的译文尽量还原，无法对应的占位符被丢弃
+     */
+    public String decode(String translation) {
+        if (openings.isEmpty() || translation == null) {
+            return translation;
+        }
+        Matcher matcher = PLACEHOLDER.matcher(translation);
+        StringBuilder builder = new StringBuilder(translation.length() + encoded.length());
+        int position = 0;
+        while (matcher.find()) {
+            builder.append(translation, position, matcher.start());
+            position = matcher.end();
+            int index = matcher.group(2).length() > 6 ? -1 : Integer.parseInt(matcher.group(2)) - 1;
+            if (index < 0 || index >= openings.size()) {
+                continue;
+            }
+            boolean closing = !matcher.group(1).isEmpty();
+            boolean selfClosing = !matcher.group(3).isEmpty();
+            if (closing && closings.get(index) != null) {
+                builder.append(closings.get(index));
+            } else if (!closing && selfClosing == (closings.get(index) == null)) {
+                builder.append(openings.get(index));
+            }
+        }
+        builder.append(translation, position, translation.length());
+        return builder.toString();
+    }
+    
+    private static List<String> placeholders(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        while (matcher.find()) {
+            result.add(matcher.group());
+        }
+        return result;
+    }
+    
+    private static class Tag {
+        
+        private final int start;
+        private final int end;
+        private final boolean closing;
+        private final String name;
+        private final boolean selfClosing;
+        private Tag partner;
+        private int number;
+        
+        Tag(int start, int end, boolean closing, String name, boolean selfClosing) {
+            this.start = start;
+            this.end = end;
+            this.closing = closing;
+            this.name = name;
+            this.selfClosing = selfClosing;
+        }
+    }
+}
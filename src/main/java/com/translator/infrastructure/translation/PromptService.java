@@ -23,6 +23,8 @@ public class PromptService {
     private static final Logger logger = LoggerFactory.getLogger(PromptService.class);
     private static final String DEFAULT_PROMPT = "You are a professional translator. Translate the following English text to Chinese. Preserve the HTML structure and formatting. Only return the translated text without any explanations.";
     private static final String AGENTS_FILE = "AGENTS.md";
+    private static final String BATCH_RULE = "The user message is a JSON object of the form {\"segments\":[{\"id\":1,\"text\":\"...\"}]}. Translate each text independently and reply with only a JSON object of the same form, {\"segments\":[{\"id\":1,\"text\":\"<translation>\"}]}, containing every id exactly once with its own translation. Do not merge, split or reorder segments.";
+    private static final String PLACEHOLDER_RULE = "The text may contain numbered placeholder tags such as <1>...</1> and <2/> that stand for inline markup. Keep every placeholder tag exactly as written, each one exactly once, around the words that correspond to the original; do not add, remove or renumber them.";
 
     /**
      * 获取系统提示词
@@ -52,6 +54,22 @@ public class PromptService {
         }
     }
 
+    /**
+     * 获取系统提示词，并追加保留行内占位符的要求
+     * 用于HTML感知翻译，发送的文本段中行内标签已替换为编号占位符
+     */
+    public String getSystemPrompt(boolean withPlaceholders) {
+        String prompt = getSystemPrompt();
+        return withPlaceholders ? prompt + "\n\n" + PLACEHOLDER_RULE : prompt;
+    }
+
+    /**
+     * 获取批量翻译的系统提示词，追加JSON片段协议的要求
+     */
+    public String getBatchPrompt(boolean withPlaceholders) {
+        return getSystemPrompt(withPlaceholders) + "\n\n" + BATCH_RULE;
+    }
+
     /**
      * 从Markdown内容中提取代码块
      * 寻找 "## Translation Agent System Prompt" 下面的第一个代码块
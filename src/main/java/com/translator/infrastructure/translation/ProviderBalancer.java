@@ -0,0 +1,80 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.valueobject.TranslationProvider;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 多提供商负载均衡
+ * 为每个批次选择预计最早完成的提供商：各提供商的权重为实测吞吐（tokens/秒）乘以限流余量，
+ * 在途token数除以权重即为排队时长，同时使用多个提供商时总吞吐接近各自配额之和
+ */
+public class ProviderBalancer {
+    
+    // 吞吐的指数加权平均系数
+    private static final double SMOOTHING = 0.2;
+    // 限流余量耗尽的提供商仍保留少量权重，余量恢复后能重新分到批次
+    private static final double MIN_HEADROOM = 0.05;
+    
+    private final Map<TranslationProvider, Stats> stats = new EnumMap<>(TranslationProvider.class);
+    
+    public ProviderBalancer() {
+        for (TranslationProvider provider : TranslationProvider.values()) {
+            stats.put(provider, new Stats());
+        }
+    }
+    
+    /**
+     * 选择本批次的提供商并计入在途量；调用方完成后需调用 {@link #onComplete}
+     * @param headroom 各提供商的限流余量（0~1）
+     */
+    public synchronized TranslationProvider acquire(List<TranslationProvider> candidates, int tokens,
+                                                    ToDoubleFunction<TranslationProvider> headroom) {
+        // 尚无样本的提供商按已知最快的吞吐估计，保证它能分到批次并得到实测值
+        double fastest = stats.values().stream().filter(stat -> stat.samples > 0)
+            .mapToDouble(stat -> stat.throughput).max().orElse(1);
+        TranslationProvider best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (TranslationProvider provider : candidates) {
+            Stats stat = stats.get(provider);
+            double throughput = stat.samples > 0 ? stat.throughput : fastest;
+            double weight = throughput * Math.max(MIN_HEADROOM, headroom.applyAsDouble(provider));
+            double cost = (stat.inFlightTokens + tokens) / weight;
+            if (cost < bestCost) {
+                best = provider;
+                bestCost = cost;
+            }
+        }
+        onStart(best, tokens);
+        return best;
+    }
+    
+    /**
+     * 记录不经选择直接发往某提供商的批次，如故障转移
+     */
+    public synchronized void onStart(TranslationProvider provider, int tokens) {
+        stats.get(provider).inFlightTokens += tokens;
+    }
+    
+    /**
+     * 记录批次完成，成功时用本次的 tokens/耗时 更新吞吐估计
+     */
+    public synchronized void onComplete(TranslationProvider provider, int tokens, long elapsedMillis, boolean success) {
+        Stats stat = stats.get(provider);
+        stat.inFlightTokens = Math.max(0, stat.inFlightTokens - tokens);
+        if (success && tokens > 0) {
+            double observed = tokens * 1000.0 / Math.max(1, elapsedMillis);
+            stat.throughput = stat.samples == 0 ? observed : stat.throughput + SMOOTHING * (observed - stat.throughput);
+            stat.samples++;
+        }
+    }
+    
+    private static class Stats {
+        private double throughput;
+        private long inFlightTokens;
+        private int samples;
+    }
+}
@@ -0,0 +1,101 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.valueobject.TranslationProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 提供商健康探测
+ * 在后台线程上定期发出轻量请求，把结果写入健康登记；可用性检查只读取登记中的结果，
+ * 不在调用线程上发出请求。同一提供商同时最多进行一次探测
+ */
+public class ProviderHealthProber implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProviderHealthProber.class);
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    
+    /**
+     * 一次探测，返回提供商是否可用；抛出异常视为不可用
+     */
+    @FunctionalInterface
+    public interface Probe {
+        boolean probe(TranslationProvider provider) throws Exception;
+    }
+    
+    private final ProviderHealthRegistry registry;
+    private final Probe probe;
+    private final Set<TranslationProvider> running = EnumSet.noneOf(TranslationProvider.class);
+    private final ScheduledExecutorService scheduler;
+    
+    public ProviderHealthProber(ProviderHealthRegistry registry, Probe probe) {
+        this.registry = registry;
+        this.probe = probe;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "provider-probe-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+    
+    /**
+     * 立即探测并按固定间隔重复
+     * @param intervalMillis 探测间隔，不大于0时不定期探测
+     */
+    public void start(Collection<TranslationProvider> providers, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        for (TranslationProvider provider : providers) {
+            scheduler.scheduleWithFixedDelay(() -> probeNow(provider), 0, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * 在后台探测一次，该提供商已有探测在进行时忽略
+     */
+    public void refreshAsync(TranslationProvider provider) {
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(() -> probeNow(provider));
+        }
+    }
+    
+    /**
+     * 在调用线程上探测一次并记录结果，已有探测在进行时返回null
+     */
+    public Boolean probeNow(TranslationProvider provider) {
+        synchronized (running) {
+            if (!running.add(provider)) {
+                return null;
+            }
+        }
+        boolean healthy;
+        try {
+            healthy = probe.probe(provider);
+        } catch (Exception e) {
+            logger.debug("{} 健康探测失败: {}", provider.getName(), e.getMessage());
+            healthy = false;
+        } finally {
+            synchronized (running) {
+                running.remove(provider);
+            }
+        }
+        registry.recordProbe(provider, healthy);
+        return healthy;
+    }
+    
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,113 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.valueobject.TranslationProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 提供商健康状态登记
+ * 根据每次请求的结果记录各提供商的连续失败次数，用于按请求选择路由
+ * 连续失败达到阈值后视为不健康，冷却时间过后重新允许尝试
+ * 另外保存后台探测的结果，结果在有效期内可直接读取，过期后视为未知；成功的请求同样刷新探测结果
+ */
+public class ProviderHealthRegistry {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProviderHealthRegistry.class);
+    
+    private final int failureThreshold;
+    private final long cooldownMillis;
+    private final long probeTtlMillis;
+    private final LongSupplier clock;
+    private final Map<TranslationProvider, Health> states = new EnumMap<>(TranslationProvider.class);
+    
+    /**
+     * @param probeTtlMillis 探测结果的有效期
+     */
+    public ProviderHealthRegistry(int failureThreshold, long cooldownMillis, long probeTtlMillis) {
+        this(failureThreshold, cooldownMillis, probeTtlMillis, System::currentTimeMillis);
+    }
+    
+    ProviderHealthRegistry(int failureThreshold, long cooldownMillis, long probeTtlMillis, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.cooldownMillis = Math.max(0, cooldownMillis);
+        this.probeTtlMillis = Math.max(0, probeTtlMillis);
+        this.clock = clock;
+        for (TranslationProvider provider : TranslationProvider.values()) {
+            states.put(provider, new Health());
+        }
+    }
+    
+    public void recordSuccess(TranslationProvider provider) {
+        Health health = states.get(provider);
+        if (health.consecutiveFailures.getAndSet(0) >= failureThreshold) {
+            logger.info("{} 已恢复", provider.getName());
+        }
+        recordProbe(provider, true);
+    }
+    
+    public void recordFailure(TranslationProvider provider) {
+        Health health = states.get(provider);
+        health.lastFailureAt.set(clock.getAsLong());
+        if (health.consecutiveFailures.incrementAndGet() == failureThreshold) {
+            logger.warn("{} 连续失败{}次，标记为不健康，{}ms内优先使用其他提供商",
+                provider.getName(), failureThreshold, cooldownMillis);
+        }
+    }
+    
+    /**
+     * 记录一次探测结果
+     */
+    public void recordProbe(TranslationProvider provider, boolean healthy) {
+        Health health = states.get(provider);
+        synchronized (health) {
+            if (health.probeHealthy != null && health.probeHealthy != healthy) {
+                logger.info("{} 探测结果: {}", provider.getName(), healthy ? "可用" : "不可用");
+            }
+            health.probeHealthy = healthy;
+            health.probedAt = clock.getAsLong();
+        }
+    }
+    
+    /**
+     * 有效期内的探测结果，从未探测或已过期时返回null
+     */
+    public Boolean getProbeResult(TranslationProvider provider) {
+        Health health = states.get(provider);
+        synchronized (health) {
+            if (health.probeHealthy == null || clock.getAsLong() - health.probedAt >= probeTtlMillis) {
+                return null;
+            }
+            return health.probeHealthy;
+        }
+    }
+    
+    /**
+     * 是否健康；不健康的提供商在冷却时间过后也视为可用，以便探测是否恢复
+     * 有效期内的探测结果为不可用时同样视为不健康
+     */
+    public boolean isHealthy(TranslationProvider provider) {
+        if (Boolean.FALSE.equals(getProbeResult(provider))) {
+            return false;
+        }
+        Health health = states.get(provider);
+        return health.consecutiveFailures.get() < failureThreshold
+            || clock.getAsLong() - health.lastFailureAt.get() >= cooldownMillis;
+    }
+    
+    public int getConsecutiveFailures(TranslationProvider provider) {
+        return states.get(provider).consecutiveFailures.get();
+    }
+    
+    private static class Health {
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicLong lastFailureAt = new AtomicLong();
+        private Boolean probeHealthy;
+        private long probedAt;
+    }
+}
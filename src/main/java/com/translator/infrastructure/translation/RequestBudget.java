@@ -0,0 +1,45 @@
+package com.translator.infrastructure.translation;
+
+/**
+ * 按请求量比例发放的额度
+ * 每次正常请求存入 ratio 个额度，重试、对冲等额外请求各消耗一个，额度有上限，
+ * 因此额外请求的总量最多是正常请求量的固定比例，外加少量突发
+ */
+public class RequestBudget {
+    
+    private final double ratio;
+    private final double max;
+    private double balance;
+    
+    /**
+     * @param ratio 每次正常请求存入的额度，如0.2表示额外请求最多占请求量的20%
+     * @param max 额度上限，即允许的突发次数
+     */
+    public RequestBudget(double ratio, int max) {
+        this.ratio = Math.max(0, ratio);
+        this.max = Math.max(0, max);
+        this.balance = this.max;
+    }
+    
+    /**
+     * 记录一次正常请求，存入额度
+     */
+    public synchronized void recordRequest() {
+        balance = Math.min(max, balance + ratio);
+    }
+    
+    /**
+     * 尝试取出一次额度，耗尽时返回false
+     */
+    public synchronized boolean tryAcquire() {
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+    
+    public synchronized double getBalance() {
+        return balance;
+    }
+}
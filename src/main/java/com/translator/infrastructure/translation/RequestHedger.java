@@ -0,0 +1,160 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.valueobject.TranslationProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对冲请求
+ * 首选提供商的调用超过其近期耗时的分位数仍未返回时，把同一请求发给另一个提供商，
+ * 先返回有效结果的一方胜出，另一方被取消；对冲次数受预算限制，额外开销最多是请求量的固定比例
+ * 耗时由调用方通过 recordLatency 记录，只包含HTTP交换本身
+ */
+public class RequestHedger {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RequestHedger.class);
+    // 统计窗口，以及开始对冲前至少需要的样本数
+    private static final int WINDOW_SIZE = 200;
+    private static final int MIN_SAMPLES = 20;
+    
+    /**
+     * 一次可取消的异步调用
+     */
+    @FunctionalInterface
+    public interface Call {
+        CompletableFuture<String> call(CancellationToken cancellation);
+    }
+    
+    private final double quantile;
+    private final RequestBudget budget;
+    private final Map<TranslationProvider, LatencyTracker> latencies = new EnumMap<>(TranslationProvider.class);
+    
+    /**
+     * @param quantile 触发对冲的耗时分位数，如0.95
+     * @param budgetRatio 每次请求存入的对冲额度，如0.1表示对冲最多占请求量的10%
+     * @param budgetMax 对冲额度上限
+     */
+    public RequestHedger(double quantile, double budgetRatio, int budgetMax) {
+        this.quantile = quantile;
+        this.budget = new RequestBudget(budgetRatio, budgetMax);
+        for (TranslationProvider provider : TranslationProvider.values()) {
+            latencies.put(provider, new LatencyTracker(WINDOW_SIZE));
+        }
+    }
+    
+    /**
+     * 执行首选调用，必要时发出对冲调用；等待期间不占用线程
+     * @param cancellation 整个调用的取消信号，两方的请求都随它取消
+     * @param hedge 对冲调用，没有可用的备用提供商时为null
+     */
+    public CompletableFuture<String> call(TranslationProvider provider, CancellationToken cancellation,
+                                          Call primary, Call hedge) {
+        budget.recordRequest();
+        long delay = getHedgeDelay(provider);
+        if (hedge == null || delay < 0) {
+            // 样本不足时直接调用
+            return start(primary, cancellation.child());
+        }
+        
+        HedgedCall call = new HedgedCall(provider, cancellation);
+        start(primary, call.primaryToken).whenComplete((result, error) -> call.onComplete(false, result, error));
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            if (call.tryStartHedge()) {
+                logger.info("{} 请求超过 {} ms 未返回，发出对冲请求", provider.getName(), delay);
+                start(hedge, call.hedgeToken).whenComplete((result, error) -> call.onComplete(true, result, error));
+            }
+        });
+        return call.result;
+    }
+    
+    /**
+     * 触发对冲的等待时间，样本不足时返回-1
+     */
+    public long getHedgeDelay(TranslationProvider provider) {
+        return latencies.get(provider).percentile(quantile, MIN_SAMPLES);
+    }
+    
+    public void recordLatency(TranslationProvider provider, long millis) {
+        latencies.get(provider).record(millis);
+    }
+    
+    private static CompletableFuture<String> start(Call call, CancellationToken cancellation) {
+        try {
+            return call.call(cancellation);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * 一次带对冲的调用的状态，先成功的一方完成结果并取消另一方
+     */
+    private class HedgedCall {
+        
+        private final TranslationProvider provider;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final CancellationToken primaryToken;
+        private final CancellationToken hedgeToken;
+        private int pending = 1;
+        private boolean primaryDone;
+        private boolean hedgeStarted;
+        private boolean settled;
+        
+        HedgedCall(TranslationProvider provider, CancellationToken cancellation) {
+            this.provider = provider;
+            this.primaryToken = cancellation.child();
+            this.hedgeToken = cancellation.child();
+        }
+        
+        /**
+         * 首选调用仍在进行且额度充足时开始对冲
+         */
+        synchronized boolean tryStartHedge() {
+            if (primaryDone || settled || !budget.tryAcquire()) {
+                return false;
+            }
+            hedgeStarted = true;
+            pending++;
+            return true;
+        }
+        
+        void onComplete(boolean isHedge, String value, Throwable error) {
+            boolean won;
+            boolean hedging;
+            synchronized (this) {
+                pending--;
+                if (!isHedge) {
+                    primaryDone = true;
+                }
+                if (settled) {
+                    return;
+                }
+                won = error == null;
+                hedging = hedgeStarted;
+                if (!won && pending > 0) {
+                    logger.warn("{}失败，等待另一方结果: {}", isHedge ? "对冲请求" : "首选请求",
+                        ParallelTranslationExecutor.cause(error).getMessage());
+                    return;
+                }
+                settled = true;
+            }
+            
+            if (!won) {
+                result.completeExceptionally(ParallelTranslationExecutor.unwrap(error));
+                return;
+            }
+            if (isHedge) {
+                logger.info("对冲请求先返回，取消 {} 的请求", provider.getName());
+                primaryToken.cancel();
+            } else if (hedging) {
+                hedgeToken.cancel();
+            }
+            result.complete(value);
+        }
+    }
+}
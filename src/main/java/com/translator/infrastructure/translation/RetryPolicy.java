@@ -0,0 +1,73 @@
+package com.translator.infrastructure.translation;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * LLM调用的重试策略
+ * 区分可重试的故障（超时、网络错误、5xx、429）与重试也不会成功的错误（400、401等），
+ * 重试间隔按指数退避并加入随机抖动，避免并发请求同时重试；
+ * 所有提供商共享一个重试预算：每次首次请求存入一定比例的额度，每次重试消耗一个，
+ * 服务整体故障时重试次数不会超过正常请求量的固定比例，不会放大故障
+ */
+public class RetryPolicy {
+    
+    private final RequestBudget budget;
+    
+    /**
+     * @param budgetRatio 每次首次请求存入的重试额度，如0.2表示重试最多占请求量的20%
+     * @param budgetMax 额度上限，即允许的突发重试次数
+     */
+    public RetryPolicy(double budgetRatio, int budgetMax) {
+        this.budget = new RequestBudget(budgetRatio, budgetMax);
+    }
+    
+    /**
+     * 判断失败是否值得重试
+     */
+    public static boolean isRetryable(Exception e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        if (e instanceof LlmApiException) {
+            int status = ((LlmApiException) e).getStatusCode();
+            return status == 408 || status == 429 || status >= 500;
+        }
+        // 超时、网络错误、响应无法解析等视为暂时性故障
+        return true;
+    }
+    
+    /**
+     * 第 attempt 次失败后的等待时间：在 [0, min(maxDelay, baseDelay * 2^(attempt-1))] 内均匀随机，
+     * 服务端给出 Retry-After 时不短于它
+     */
+    public static long backoffMillis(int attempt, long baseDelay, long maxDelay, Exception e) {
+        long ceiling = Math.max(0, baseDelay);
+        for (int i = 1; i < attempt && ceiling < maxDelay; i++) {
+            ceiling *= 2;
+        }
+        ceiling = Math.min(ceiling, Math.max(baseDelay, maxDelay));
+        long delay = ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+        if (e instanceof LlmApiException) {
+            delay = Math.max(delay, ((LlmApiException) e).getRetryAfterMillis());
+        }
+        return delay;
+    }
+    
+    /**
+     * 记录一次首次请求，为重试预算存入额度
+     */
+    public void recordRequest() {
+        budget.recordRequest();
+    }
+    
+    /**
+     * 尝试从预算中取出一次重试，预算耗尽时返回false
+     */
+    public boolean tryAcquireRetry() {
+        return budget.tryAcquire();
+    }
+    
+    public double getRemainingBudget() {
+        return budget.getBalance();
+    }
+}
@@ -0,0 +1,116 @@
+package com.translator.infrastructure.translation;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的片段译文缓存
+ * 以规范化后的原文为键：最近的译文保存在有容量上限的LRU中；相同片段正在翻译时，
+ * 后来者等待进行中的请求而不再重复发送（single-flight），同一JVM内同时翻译的多本书共享
+ */
+public class SegmentCache {
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, String> entries;
+    private final Map<String, CompletableFuture<String>> inFlight = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param maxEntries LRU容量，不大于0时只合并进行中的请求，不缓存结果
+     */
+    public SegmentCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > SegmentCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 计算缓存键：合并连续空白后的原文，加上系统提示词（决定译文格式）的SHA-256
+     */
+    public static String key(String text, String systemPrompt) {
+        String normalized = text.trim().replaceAll("\\s+", " ");
+        return TranslationMemory.sha256(systemPrompt != null ? systemPrompt : "") + ":" + normalized;
+    }
+
+    /**
+     * 查找最近的译文，未命中返回null
+     */
+    public synchronized String lookup(String key) {
+        String translation = entries.get(key);
+        if (translation != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return translation;
+    }
+
+    /**
+     * 认领一个片段的翻译
+     * 返回null表示调用方负责翻译，完成后必须调用 release；
+     * 否则返回进行中请求的结果，失败时结果为null
+     */
+    public synchronized CompletableFuture<String> claim(String key) {
+        String translation = entries.get(key);
+        if (translation != null) {
+            return CompletableFuture.completedFuture(translation);
+        }
+        CompletableFuture<String> existing = inFlight.get(key);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+        inFlight.put(key, new CompletableFuture<>());
+        return null;
+    }
+
+    /**
+     * 结束认领并唤醒等待者
+     * @param translation 译文，翻译失败时为null
+     */
+    public void release(String key, String translation) {
+        CompletableFuture<String> future;
+        synchronized (this) {
+            if (translation != null && maxEntries > 0) {
+                entries.put(key, translation);
+            }
+            future = inFlight.remove(key);
+        }
+        if (future != null) {
+            future.complete(translation);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * 等待进行中请求而省下的调用次数
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
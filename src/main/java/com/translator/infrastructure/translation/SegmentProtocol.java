@@ -0,0 +1,214 @@
+package com.translator.infrastructure.translation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 批量翻译的JSON片段协议
+ * 请求为 {"segments":[{"id":1,"text":"..."}]}，模型按相同结构返回译文；
+ * 响应用非阻塞的Jackson解析器增量解析，流式输出时每个片段一完整就能取出，
+ * 解析中断或片段缺失时已解析出的片段仍然有效，只需重新请求缺少的id
+ */
+public class SegmentProtocol {
+    
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    
+    private final Set<Integer> expectedIds;
+    private final BiConsumer<Integer, String> onSegment;
+    private final Map<Integer, String> segments = new LinkedHashMap<>();
+    private final Deque<Entry> objects = new ArrayDeque<>();
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+    private boolean started;
+    private boolean finished;
+    private int depth;
+    private IOException error;
+    
+    /**
+     * @param expectedIds 本次请求的片段id，其他id视为无效
+     * @param onSegment 每解析出一个有效片段时回调，可为null
+     */
+    public SegmentProtocol(Set<Integer> expectedIds, BiConsumer<Integer, String> onSegment) {
+        this.expectedIds = expectedIds;
+        this.onSegment = onSegment;
+        reset();
+    }
+    
+    /**
+     * 把片段编码为请求内容，id保持调用方给出的编号
+     */
+    public static String encode(ObjectMapper objectMapper, Map<Integer, String> texts) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode array = root.putArray("segments");
+        texts.forEach((id, text) -> array.addObject().put("id", id).put("text", text));
+        return objectMapper.writeValueAsString(root);
+    }
+    
+    /**
+     * 输入一段响应内容；JSON之前的说明文字和代码块标记被跳过，根对象结束后的内容被忽略
+     */
+    public void feed(String chunk) {
+        if (finished || error != null || chunk.isEmpty()) {
+            return;
+        }
+        if (!started) {
+            int start = firstBracket(chunk);
+            if (start < 0) {
+                return;
+            }
+            chunk = chunk.substring(start);
+            started = true;
+        }
+        
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            drain();
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+    
+    /**
+     * 输入结束，返回有效的片段译文（id -> 译文）
+     */
+    public Map<Integer, String> finish() {
+        if (!finished && error == null && started) {
+            feeder.endOfInput();
+            try {
+                drain();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        finished = true;
+        return Collections.unmodifiableMap(segments);
+    }
+    
+    /**
+     * 重新开始解析，用于流式请求重试时丢弃已接收的内容
+     */
+    public void reset() {
+        try {
+            parser = jsonFactory.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建JSON解析器", e);
+        }
+        feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        segments.clear();
+        objects.clear();
+        started = false;
+        finished = false;
+        depth = 0;
+        error = null;
+    }
+    
+    /**
+     * 解析错误，没有错误时为null
+     */
+    public IOException getError() {
+        return error;
+    }
+    
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!finished && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT:
+                    depth++;
+                    // 只有数组元素才是片段，片段内嵌套的对象不算
+                    objects.push(new Entry(depth, parser.getParsingContext().getParent().inArray()));
+                    break;
+                case END_OBJECT:
+                    Entry entry = objects.pop();
+                    depth--;
+                    accept(entry);
+                    break;
+                case START_ARRAY:
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    depth--;
+                    break;
+                case VALUE_STRING:
+                case VALUE_NUMBER_INT:
+                    Entry current = objects.peek();
+                    if (current != null && current.depth == depth && parser.getParsingContext().inObject()) {
+                        current.set(parser.currentName(), parser.getText());
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (depth == 0) {
+                // 根对象结束，之后的内容（如代码块结束标记）不再解析
+                finished = true;
+            }
+        }
+    }
+    
+    private void accept(Entry entry) {
+        if (!entry.element || entry.id == null || entry.text == null || entry.text.trim().isEmpty()) {
+            return;
+        }
+        Integer id;
+        try {
+            id = Integer.valueOf(entry.id.trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (!expectedIds.contains(id) || segments.containsKey(id)) {
+            return;
+        }
+        String text = entry.text.trim();
+        segments.put(id, text);
+        if (onSegment != null) {
+            onSegment.accept(id, text);
+        }
+    }
+    
+    private static int firstBracket(String chunk) {
+        int object = chunk.indexOf('{');
+        int array = chunk.indexOf('[');
+        if (object < 0) {
+            return array;
+        }
+        return array < 0 ? object : Math.min(object, array);
+    }
+    
+    private static class Entry {
+        
+        private final int depth;
+        private final boolean element;
+        private String id;
+        private String text;
+        
+        Entry(int depth, boolean element) {
+            this.depth = depth;
+            this.element = element;
+        }
+        
+        void set(String name, String value) {
+            if ("id".equals(name)) {
+                id = value;
+            } else if ("text".equals(name)) {
+                text = value;
+            }
+        }
+    }
+}
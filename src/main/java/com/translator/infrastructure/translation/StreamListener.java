@@ -0,0 +1,18 @@
+package com.translator.infrastructure.translation;
+
+/**
+ * 流式输出监听器
+ * 接收 stream 模式下模型逐段返回的增量输出
+ */
+public interface StreamListener {
+    
+    /**
+     * 收到一段增量输出
+     */
+    void onChunk(String chunk);
+    
+    /**
+     * 请求失败即将重试，此前收到的增量输出作废
+     */
+    void onRestart();
+}
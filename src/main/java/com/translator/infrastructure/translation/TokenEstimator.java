@@ -0,0 +1,41 @@
+package com.translator.infrastructure.translation;
+
+/**
+ * Token估算器
+ * 不依赖具体分词器的近似估算：CJK字符按每字一个token，其余字符按每4个字符一个token
+ */
+public final class TokenEstimator {
+    
+    private TokenEstimator() {
+    }
+    
+    /**
+     * 估算文本的token数
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+    
+    static boolean isCjk(char c) {
+        return (c >= '\u4E00' && c <= '\u9FFF')     // CJK统一汉字
+            || (c >= '\u3400' && c <= '\u4DBF')     // 扩展A
+            || (c >= '\u3040' && c <= '\u30FF')     // 平假名、片假名
+            || (c >= '\uAC00' && c <= '\uD7AF')     // 韩文音节
+            || (c >= '\u3000' && c <= '\u303F')     // CJK标点
+            || (c >= '\uFF00' && c <= '\uFFEF');    // 全角字符
+    }
+}
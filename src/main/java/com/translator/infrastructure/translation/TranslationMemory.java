@@ -0,0 +1,170 @@
+package com.translator.infrastructure.translation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.translator.domain.valueobject.TranslationProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 翻译记忆库
+ * 以"片段哈希 + 提供商 + 模型 + 系统提示词哈希"为键持久化译文，重复翻译时直接复用
+ * 数据以JSON Lines追加写入磁盘，超出容量时按最近最少使用淘汰，并定期压缩文件
+ */
+public class TranslationMemory {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranslationMemory.class);
+
+    private final Path file;
+    private final int maxEntries;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LinkedHashMap<String, String> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private BufferedWriter writer;
+    private int appendedLines;
+
+    public TranslationMemory(Path file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > TranslationMemory.this.maxEntries;
+            }
+        };
+        load();
+    }
+
+    /**
+     * 计算记忆库键
+     */
+    public static String key(String text, TranslationProvider provider, String model, String systemPrompt) {
+        return sha256(text) + ":" + provider.name() + ":" + model + ":" + sha256(systemPrompt != null ? systemPrompt : "");
+    }
+
+    /**
+     * 查找译文，未命中返回null
+     */
+    public synchronized String lookup(String key) {
+        String translation = entries.get(key);
+        if (translation != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return translation;
+    }
+
+    /**
+     * 保存译文并追加写入磁盘
+     */
+    public synchronized void store(String key, String translation) {
+        if (translation == null) {
+            return;
+        }
+        entries.put(key, translation);
+
+        try {
+            if (writer == null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(objectMapper.writeValueAsString(Map.of("k", key, "v", translation)));
+            writer.newLine();
+            writer.flush();
+            appendedLines++;
+
+            // 文件中被覆盖或淘汰的旧记录过多时重写文件
+            if (appendedLines > maxEntries * 2) {
+                compact();
+            }
+        } catch (IOException e) {
+            logger.warn("写入翻译记忆库失败: {}", e.getMessage());
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JsonNode node = objectMapper.readTree(line);
+                    entries.put(node.get("k").asText(), node.get("v").asText());
+                    appendedLines++;
+                } catch (Exception e) {
+                    // 进程中断可能留下不完整的最后一行
+                    logger.debug("忽略无法解析的翻译记忆记录");
+                }
+            }
+            logger.info("已加载翻译记忆库: {}，共{}条", file, entries.size());
+        } catch (IOException e) {
+            logger.warn("读取翻译记忆库失败: {}", e.getMessage());
+        }
+    }
+
+    private void compact() throws IOException {
+        writer.close();
+        writer = null;
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                out.write(objectMapper.writeValueAsString(Map.of("k", entry.getKey(), "v", entry.getValue())));
+                out.newLine();
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        appendedLines = entries.size();
+        logger.debug("翻译记忆库已压缩，保留{}条", entries.size());
+    }
+
+    static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.model.Page;
+
+/**
+ * 翻译片段
+ * 一次翻译请求中的最小单位，可以是整个页面，也可以是超长页面切分出的一部分
+ * 片段首尾的空白不发送给模型，回填时原样补回；行内标签以占位符发送，回填时还原
+ */
+public class TranslationSegment {
+    
+    private final PageAssembly assembly;
+    private final int index;
+    private final String leadingWhitespace;
+    private final PlaceholderCodec codec;
+    private final String text;
+    private final String trailingWhitespace;
+    private final int estimatedTokens;
+    
+    TranslationSegment(PageAssembly assembly, int index, String source) {
+        this.assembly = assembly;
+        this.index = index;
+        
+        int start = 0;
+        int end = source.length();
+        while (start < end && Character.isWhitespace(source.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(source.charAt(end - 1))) {
+            end--;
+        }
+        this.leadingWhitespace = source.substring(0, start);
+        this.codec = PlaceholderCodec.encode(source.substring(start, end));
+        this.text = codec.getEncoded();
+        this.trailingWhitespace = source.substring(end);
+        this.estimatedTokens = TokenEstimator.estimate(text);
+    }
+    
+    /**
+     * 写回译文，页面的所有片段都完成后页面即标记为已翻译
+     */
+    public void complete(String translation) {
+        assembly.complete(index, leadingWhitespace + codec.decode(translation) + trailingWhitespace);
+    }
+    
+    /**
+     * 译文是否完整保留了片段中的每个占位符
+     */
+    public boolean accepts(String translation) {
+        return codec.verify(translation);
+    }
+    
+    public boolean hasPlaceholders() {
+        return codec.hasPlaceholders();
+    }
+    
+    public boolean isCompleted() {
+        return assembly.isCompleted(index);
+    }
+    
+    public boolean isBlank() {
+        return text.isEmpty();
+    }
+    
+    public Page getPage() {
+        return assembly.getPage();
+    }
+    
+    public int getIndex() {
+        return index;
+    }
+    
+    /**
+     * 发送给模型的文本（行内标签已替换为占位符）
+     */
+    public String getText() {
+        return text;
+    }
+    
+    public int getEstimatedTokens() {
+        return estimatedTokens;
+    }
+}
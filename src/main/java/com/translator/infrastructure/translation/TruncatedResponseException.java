@@ -0,0 +1,21 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.exception.TranslationException;
+
+/**
+ * 模型输出达到 max_tokens 被截断（finish_reason=length）时的异常
+ * 原样重试会得到同样的结果，调用方应把输入切小后重新翻译；截断前的输出仍可用于提取已完整的片段
+ */
+public class TruncatedResponseException extends TranslationException {
+    
+    private final String partialContent;
+    
+    public TruncatedResponseException(String message, String partialContent) {
+        super(message);
+        this.partialContent = partialContent;
+    }
+    
+    public String getPartialContent() {
+        return partialContent;
+    }
+}
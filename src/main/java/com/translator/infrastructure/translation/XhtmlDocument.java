@@ -0,0 +1,397 @@
+package com.translator.infrastructure.translation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * XHTML文档文本抽取
+ * 从页面DOM中找出可翻译的文本段（通常是一个段落、标题或列表项），行内标签替换为编号占位符，
+ * 只把这些文本发送给模型；译文回填到原DOM后再序列化，其余标记保持不变
+ *
+ * 占位符格式：有内容的行内元素为 <1>…</1>，空元素（如 br、img）以及注释、处理指令为 <2/>，编号在每个文本段内从1开始
+ */
+public class XhtmlDocument {
+    
+    private static final Logger logger = LoggerFactory.getLogger(XhtmlDocument.class);
+    
+    private static final Set<String> BLOCK_ELEMENTS = Set.of(
+        "html", "body", "div", "p", "h1", "h2", "h3", "h4", "h5", "h6",
+        "ul", "ol", "li", "dl", "dt", "dd", "table", "thead", "tbody", "tfoot", "tr", "td", "th",
+        "caption", "blockquote", "section", "article", "aside", "header", "footer", "nav", "main",
+        "figure", "figcaption", "address", "center", "hr", "hgroup", "details", "summary");
+    
+    private static final Set<String> SKIPPED_ELEMENTS = Set.of(
+        "head", "script", "style", "pre", "code", "svg", "math", "template");
+    
+    private static final Pattern PLACEHOLDER = Pattern.compile("<(/?)(\\d+)(/?)>");
+    
+    private static final Map<String, Integer> HTML_ENTITIES = Map.ofEntries(
+        Map.entry("nbsp", 160), Map.entry("copy", 169), Map.entry("reg", 174), Map.entry("shy", 173),
+        Map.entry("ndash", 8211), Map.entry("mdash", 8212), Map.entry("lsquo", 8216), Map.entry("rsquo", 8217),
+        Map.entry("ldquo", 8220), Map.entry("rdquo", 8221), Map.entry("hellip", 8230), Map.entry("middot", 183),
+        Map.entry("laquo", 171), Map.entry("raquo", 187), Map.entry("eacute", 233), Map.entry("egrave", 232));
+    
+    private static final Pattern NAMED_ENTITY = Pattern.compile("&(" + String.join("|", HTML_ENTITIES.keySet()) + ");");
+    
+    private final Document document;
+    private final String prolog;
+    private final String epilog;
+    private final List<TextRun> runs = new ArrayList<>();
+    
+    private XhtmlDocument(Document document, String prolog, String epilog) {
+        this.document = document;
+        this.prolog = prolog;
+        this.epilog = epilog;
+    }
+    
+    /**
+     * 解析页面内容，不是格式良好的XHTML时返回null，调用方应退回按原文整体翻译
+     */
+    public static XhtmlDocument parse(String content) {
+        if (content == null) {
+            return null;
+        }
+        int rootStart = findRootElement(content);
+        int rootEnd = content.lastIndexOf('>');
+        if (rootStart < 0 || rootEnd < rootStart) {
+            return null;
+        }
+        
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setValidating(false);
+            factory.setExpandEntityReferences(false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            builder.setErrorHandler(new DefaultHandler());
+            
+            // 只解析根元素，XML声明和DOCTYPE原样保留；不加载DTD，常见的HTML命名实体先换成字符引用
+            String root = replaceNamedEntities(content.substring(rootStart, rootEnd + 1));
+            Document document = builder.parse(new InputSource(new StringReader(root)));
+            XhtmlDocument xhtml = new XhtmlDocument(document, content.substring(0, rootStart), content.substring(rootEnd + 1));
+            xhtml.collect(document.getDocumentElement());
+            return xhtml;
+        } catch (Exception e) {
+            logger.debug("页面不是格式良好的XHTML，按原文整体翻译: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * 需要翻译的文本段（已替换为占位符）
+     */
+    public List<String> getTextRuns() {
+        List<String> texts = new ArrayList<>(runs.size());
+        for (TextRun run : runs) {
+            texts.add(run.encoded);
+        }
+        return texts;
+    }
+    
+    /**
+     * 把各文本段的译文回填到DOM并序列化为完整页面
+     */
+    public String render(List<String> translations) {
+        for (int i = 0; i < runs.size(); i++) {
+            runs.get(i).replaceWith(translations.get(i));
+        }
+        
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            StringWriter writer = new StringWriter();
+            transformer.transform(new DOMSource(document.getDocumentElement()), new StreamResult(writer));
+            return prolog + writer + epilog;
+        } catch (Exception e) {
+            throw new IllegalStateException("序列化XHTML失败: " + e.getMessage(), e);
+        }
+    }
+    
+    private static String replaceNamedEntities(String content) {
+        if (content.indexOf('&') < 0) {
+            return content;
+        }
+        Matcher matcher = NAMED_ENTITY.matcher(content);
+        StringBuilder result = new StringBuilder(content.length());
+        while (matcher.find()) {
+            matcher.appendReplacement(result, "&#" + HTML_ENTITIES.get(matcher.group(1)) + ";");
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+    
+    private static int findRootElement(String content) {
+        int index = 0;
+        while ((index = content.indexOf('<', index)) >= 0) {
+            if (index + 1 < content.length()) {
+                char next = content.charAt(index + 1);
+                if (next != '?' && next != '!') {
+                    return index;
+                }
+            }
+            index++;
+        }
+        return -1;
+    }
+    
+    private void collect(Element element) {
+        String name = localName(element);
+        if (SKIPPED_ELEMENTS.contains(name)) {
+            return;
+        }
+        
+        if (!containsBlock(element)) {
+            addRun(element, element.getFirstChild(), element.getLastChild());
+            return;
+        }
+        
+        // 块级元素之间连续的文本和行内元素组成一个匿名文本段
+        Node runStart = null;
+        Node runEnd = null;
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && isBlockOrSkipped((Element) child)) {
+                addRun(element, runStart, runEnd);
+                runStart = null;
+                runEnd = null;
+                collect((Element) child);
+            } else if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.ELEMENT_NODE
+                || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                if (runStart == null) {
+                    runStart = child;
+                }
+                runEnd = child;
+            }
+        }
+        addRun(element, runStart, runEnd);
+    }
+    
+    private void addRun(Element parent, Node first, Node last) {
+        if (first == null) {
+            return;
+        }
+        
+        List<Node> nodes = new ArrayList<>();
+        for (Node node = first; node != null; node = node.getNextSibling()) {
+            nodes.add(node);
+            if (node == last) {
+                break;
+            }
+        }
+        
+        StringBuilder text = new StringBuilder();
+        for (Node node : nodes) {
+            if (!isMarker(node)) {
+                text.append(node.getTextContent());
+            }
+        }
+        if (!hasLetters(text)) {
+            return;
+        }
+        
+        TextRun run = new TextRun(parent, nodes);
+        runs.add(run);
+    }
+    
+    private static boolean hasLetters(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetter(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean containsBlock(Element element) {
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                Element childElement = (Element) child;
+                if (isBlockOrSkipped(childElement) || containsBlock(childElement)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 注释和处理指令：不翻译，但在文本段内占一个位置，回填时原样保留
+     */
+    private static boolean isMarker(Node node) {
+        return node.getNodeType() == Node.COMMENT_NODE || node.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE;
+    }
+    
+    private static boolean isBlockOrSkipped(Element element) {
+        String name = localName(element);
+        return BLOCK_ELEMENTS.contains(name) || SKIPPED_ELEMENTS.contains(name);
+    }
+    
+    private static String localName(Node node) {
+        String name = node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+        return name.toLowerCase(Locale.ROOT);
+    }
+    
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+    
+    private static String unescape(String text) {
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+    }
+    
+    /**
+     * 一个文本段：同一父元素下连续的若干节点
+     */
+    private static class TextRun {
+        
+        private final Element parent;
+        private final List<Node> nodes;
+        private final List<Node> shells = new ArrayList<>();
+        private final String encoded;
+        
+        TextRun(Element parent, List<Node> nodes) {
+            this.parent = parent;
+            this.nodes = nodes;
+            StringBuilder builder = new StringBuilder();
+            for (Node node : nodes) {
+                encode(node, builder);
+            }
+            this.encoded = builder.toString();
+        }
+        
+        private void encode(Node node, StringBuilder builder) {
+            if (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE) {
+                builder.append(escape(node.getNodeValue()));
+            } else if (node.getNodeType() == Node.ELEMENT_NODE) {
+                shells.add(node.cloneNode(false));
+                int number = shells.size();
+                if (node.hasChildNodes()) {
+                    builder.append('<').append(number).append('>');
+                    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                        encode(child, builder);
+                    }
+                    builder.append("</").append(number).append('>');
+                } else {
+                    builder.append('<').append(number).append("/>");
+                }
+            } else if (isMarker(node)) {
+                shells.add(node.cloneNode(false));
+                builder.append('<').append(shells.size()).append("/>");
+            }
+        }
+        
+        /**
+         * 用译文替换原节点；占位符无法还原时退回纯文本，保证译文不丢失，原有的注释和处理指令附在译文之后
+         */
+        void replaceWith(String translation) {
+            List<Node> replacement = decode(translation);
+            if (replacement == null) {
+                logger.warn("译文中的占位符无法还原，按纯文本写回: {}", translation);
+                replacement = new ArrayList<>();
+                replacement.add(parent.getOwnerDocument().createTextNode(
+                    unescape(PLACEHOLDER.matcher(translation).replaceAll(""))));
+                for (Node shell : shells) {
+                    if (isMarker(shell)) {
+                        replacement.add(shell.cloneNode(false));
+                    }
+                }
+            }
+            
+            Node anchor = nodes.get(0);
+            for (Node node : replacement) {
+                parent.insertBefore(node, anchor);
+            }
+            for (Node node : nodes) {
+                parent.removeChild(node);
+            }
+        }
+        
+        private List<Node> decode(String translation) {
+            Document document = parent.getOwnerDocument();
+            List<Node> result = new ArrayList<>();
+            Deque<Node> open = new ArrayDeque<>();
+            Deque<Integer> openNumbers = new ArrayDeque<>();
+            boolean[] used = new boolean[shells.size() + 1];
+            
+            Matcher matcher = PLACEHOLDER.matcher(translation);
+            int position = 0;
+            while (matcher.find()) {
+                appendNode(result, open, document.createTextNode(unescape(translation.substring(position, matcher.start()))));
+                position = matcher.end();
+                
+                // 模型编造的超长编号不是有效占位符
+                int number = matcher.group(2).length() > 6 ? -1 : Integer.parseInt(matcher.group(2));
+                boolean closing = !matcher.group(1).isEmpty();
+                boolean selfClosing = !matcher.group(3).isEmpty();
+                if (number < 1 || number > shells.size()) {
+                    return null;
+                }
+                
+                if (closing) {
+                    if (openNumbers.isEmpty() || openNumbers.peek() != number) {
+                        return null;
+                    }
+                    openNumbers.pop();
+                    Node element = open.pop();
+                    appendNode(result, open, element);
+                } else {
+                    Node shell = shells.get(number - 1);
+                    if (used[number] || (!selfClosing && isMarker(shell))) {
+                        return null;
+                    }
+                    used[number] = true;
+                    Node element = shell.cloneNode(false);
+                    if (selfClosing) {
+                        appendNode(result, open, element);
+                    } else {
+                        open.push(element);
+                        openNumbers.push(number);
+                    }
+                }
+            }
+            appendNode(result, open, document.createTextNode(unescape(translation.substring(position))));
+            
+            return open.isEmpty() ? result : null;
+        }
+        
+        private static void appendNode(List<Node> result, Deque<Node> open, Node node) {
+            if (node.getNodeType() == Node.TEXT_NODE && node.getNodeValue().isEmpty()) {
+                return;
+            }
+            if (open.isEmpty()) {
+                result.add(node);
+            } else {
+                open.peek().appendChild(node);
+            }
+        }
+    }
+}
@@ -122,6 +122,13 @@ public class TranslationProgressDialog extends JDialog {
             details.append("书籍: ").append(progress.getBookName()).append("\n");
             details.append("总页数: ").append(progress.getTotalPages()).append("\n");
             details.append("已翻译: ").append(progress.getTranslatedPages()).append("\n");
+            if (progress.getTotalUnits() > progress.getTotalPages()) {
+                details.append("段落组: ").append(progress.getTranslatedUnits()).append(" / ")
+                    .append(progress.getTotalUnits()).append("\n");
+            }
+            if (progress.getStreamedCharacters() > 0) {
+                details.append("正在接收: ").append(progress.getStreamedCharacters()).append(" 字符\n");
+            }
             details.append("进度: ").append(String.format("%.1f%%", progress.getProgressPercentage())).append("\n");
             details.append("状态: ").append(progress.getStatus()).append("\n");
             details.append("预计剩余时间: ").append(progress.getEstimatedTimeRemaining());
@@ -6,17 +6,29 @@ import com.translator.domain.exception.TranslationException;
 import com.translator.domain.model.Book;
 import com.translator.domain.model.Page;
 import com.translator.domain.repository.BookRepository;
+import com.translator.domain.repository.TranslationCheckpointRepository;
+import com.translator.domain.service.PageStream;
 import com.translator.domain.service.TranslationService;
 import com.translator.domain.valueobject.BookMetadata;
 import com.translator.domain.valueobject.TranslationProvider;
+import com.translator.infrastructure.config.TranslationProperties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -37,11 +49,15 @@ public class BookApplicationServiceTest {
     @Mock
     private EpubProcessingService epubProcessingService;
     
+    @Mock
+    private TranslationCheckpointRepository checkpointRepository;
+    
     private BookApplicationService bookService;
     
     @BeforeEach
     void setUp() {
-        bookService = new BookApplicationService(bookRepository, translationService, epubProcessingService);
+        bookService = new BookApplicationService(bookRepository, translationService, epubProcessingService,
+            checkpointRepository);
     }
     
     @Test
@@ -53,8 +69,7 @@ public class BookApplicationServiceTest {
         
         TranslateBookCommand command = new TranslateBookCommand(filePath, provider, outputDir);
         
-        // 创建模拟的书籍
-        Book mockBook = new Book("test.epub");
+        // 模拟解析出的页面
         BookMetadata metadata = new BookMetadata(
             "Test Book",
             Arrays.asList("Test Author"),
@@ -63,18 +78,15 @@ public class BookApplicationServiceTest {
             "Test Description",
             "123-456"
         );
-        mockBook.updateMetadata(metadata);
-        
         Page page1 = new Page("page1", 1, "Chapter 1", "Content 1");
         Page page2 = new Page("page2", 2, "Chapter 2", "Content 2");
-        mockBook.addPage(page1);
-        mockBook.addPage(page2);
         
         // 设置模拟行为
-        when(epubProcessingService.parseEpub(filePath)).thenReturn(mockBook);
         when(translationService.isServiceAvailable(provider)).thenReturn(true);
-        when(bookRepository.save(any(Book.class))).thenReturn(mockBook);
-        when(epubProcessingService.createTranslatedEpub(any(Book.class), eq(outputDir)))
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        parsesInto(metadata, page1, page2);
+        translatesStream("译文");
+        when(epubProcessingService.createTranslatedEpub(any(Book.class), eq(outputDir), any(), eq(false)))
             .thenReturn("/output/dir/test 中文版.epub");
         
         // 执行测试
@@ -86,13 +98,16 @@ public class BookApplicationServiceTest {
         assertEquals("test 中文版.epub", result.getTranslatedFileName());
         assertEquals(2, result.getTotalPages());
         assertEquals("/output/dir/test 中文版.epub", result.getOutputPath());
+        assertEquals("译文 Content 1", page1.getTranslatedContent());
         
         // 验证交互
-        verify(epubProcessingService).parseEpub(filePath);
         verify(translationService).isServiceAvailable(provider);
-        verify(translationService).translateBook(mockBook, provider);
-        verify(bookRepository, times(2)).save(mockBook);
-        verify(epubProcessingService).createTranslatedEpub(mockBook, outputDir);
+        verify(translationService).translateStream(any(), eq(provider));
+        verify(bookRepository, times(2)).save(any(Book.class));
+        verify(epubProcessingService).createTranslatedEpub(any(Book.class), eq(outputDir), any(), eq(false));
+        verify(checkpointRepository).save(any(Book.class), eq(TranslationProvider.OPENAI), eq(page1));
+        verify(checkpointRepository).save(any(Book.class), eq(TranslationProvider.OPENAI), eq(page2));
+        verify(checkpointRepository).delete(any(Book.class));
     }
     
     @Test
@@ -102,10 +117,7 @@ public class BookApplicationServiceTest {
         TranslationProvider provider = TranslationProvider.OPENAI;
         TranslateBookCommand command = new TranslateBookCommand(filePath, provider, "/output/dir");
         
-        Book mockBook = new Book("test.epub");
-        
         // 设置模拟行为 - 服务不可用
-        when(epubProcessingService.parseEpub(filePath)).thenReturn(mockBook);
         when(translationService.isServiceAvailable(provider)).thenReturn(false);
         
         // 执行测试并验证异常
@@ -115,10 +127,52 @@ public class BookApplicationServiceTest {
         
         assertTrue(exception.getMessage().contains("翻译服务不可用"));
         
-        // 验证交互
-        verify(epubProcessingService).parseEpub(filePath);
+        // 验证交互：服务不可用时不解析书籍
         verify(translationService).isServiceAvailable(provider);
-        verify(translationService, never()).translateBook(any(), any());
+        verify(epubProcessingService, never()).parseEpub(any(Book.class), any(), anyBoolean());
+        verify(translationService, never()).translateStream(any(), any());
+    }
+    
+    @Test
+    void testFirstPageIsTranslatedWhileLaterPagesAreStillParsing() throws Exception {
+        String outputDir = "/output/dir";
+        TranslateBookCommand command = new TranslateBookCommand("/path/to/test.epub", TranslationProvider.OPENAI, outputDir);
+        CountDownLatch firstPageTaken = new CountDownLatch(1);
+        AtomicBoolean overlapped = new AtomicBoolean();
+        
+        when(translationService.isServiceAvailable(TranslationProvider.OPENAI)).thenReturn(true);
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // 解析完第一页后等待翻译端取走它，再继续解析第二页
+        doAnswer(invocation -> {
+            Book book = invocation.getArgument(0);
+            EpubProcessingService.PageListener listener = invocation.getArgument(1);
+            listener.onSpine(List.of("page1", "page2"));
+            Page page1 = new Page("page1", 1, "Chapter 1", "Content 1");
+            book.addPage(page1);
+            listener.onPage(page1);
+            overlapped.set(firstPageTaken.await(5, TimeUnit.SECONDS));
+            Page page2 = new Page("page2", 2, "Chapter 2", "Content 2");
+            book.addPage(page2);
+            listener.onPage(page2);
+            return null;
+        }).when(epubProcessingService).parseEpub(any(Book.class), any(), anyBoolean());
+        doAnswer(invocation -> {
+            PageStream stream = invocation.getArgument(0);
+            List<Page> pages;
+            while (!(pages = stream.take(10)).isEmpty()) {
+                pages.forEach(page -> page.translate("译文 " + page.getOriginalContent()));
+                firstPageTaken.countDown();
+            }
+            return null;
+        }).when(translationService).translateStream(any(), eq(TranslationProvider.OPENAI));
+        when(epubProcessingService.createTranslatedEpub(any(Book.class), eq(outputDir), any(), eq(false)))
+            .thenReturn("/output/dir/test 中文版.epub");
+        
+        BookDto result = bookService.translateBook(command);
+        
+        assertTrue(overlapped.get());
+        assertEquals(2, result.getTotalPages());
+        verify(checkpointRepository).delete(any(Book.class));
     }
     
     @Test
@@ -237,7 +291,7 @@ public class BookApplicationServiceTest {
     }
     
     @Test
-    void testTranslateBookFallbackToDeepSeek() throws TranslationException {
+    void testTranslateBookFailureDoesNotRetranslateWholeBook() throws TranslationException {
         // 准备测试数据
         String filePath = "/path/to/test.epub";
         String outputDir = "/output/dir";
@@ -245,34 +299,130 @@ public class BookApplicationServiceTest {
         
         TranslateBookCommand command = new TranslateBookCommand(filePath, provider, outputDir);
         
-        Book mockBook = new Book("test.epub");
-        
         // 设置模拟行为
-        when(epubProcessingService.parseEpub(filePath)).thenReturn(mockBook);
         when(translationService.isServiceAvailable(provider)).thenReturn(true);
-        when(bookRepository.save(any(Book.class))).thenReturn(mockBook);
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        parsesInto(null, new Page("page1", 1, "Chapter 1", "Content 1"));
         
-        // 模拟OpenAI失败
+        // 翻译服务内部的批次级故障转移也失败
         doThrow(new TranslationException("OpenAI Limit Exceeded"))
-            .when(translationService).translateBook(mockBook, TranslationProvider.OPENAI);
-            
-        // 模拟DeepSeek可用并成功
-        when(translationService.isServiceAvailable(TranslationProvider.DEEPSEEK)).thenReturn(true);
-        doNothing().when(translationService).translateBook(mockBook, TranslationProvider.DEEPSEEK);
+            .when(translationService).translateStream(any(), eq(TranslationProvider.OPENAI));
         
-        when(epubProcessingService.createTranslatedEpub(any(Book.class), eq(outputDir)))
-            .thenReturn("/output/dir/test 中文版.epub");
-            
         // 执行测试
-        BookDto result = bookService.translateBook(command);
+        assertThrows(TranslationException.class, () -> bookService.translateBook(command));
         
-        // 验证结果
-        assertNotNull(result);
-        assertEquals("/output/dir/test 中文版.epub", result.getOutputPath());
+        // 不再用备用提供商重新翻译整本书，检查点保留以便续译
+        verify(translationService, never()).translateStream(any(), eq(TranslationProvider.DEEPSEEK));
+        verify(checkpointRepository, never()).delete(any());
+        verify(checkpointRepository).close(any(Book.class));
+    }
+    
+    @Test
+    void testTranslateBookResumesFromCheckpoint() throws TranslationException {
+        String filePath = "/path/to/test.epub";
+        String outputDir = "/output/dir";
+        TranslateBookCommand command = new TranslateBookCommand(filePath, TranslationProvider.OPENAI, outputDir);
         
-        // 验证交互
-        verify(translationService).translateBook(mockBook, TranslationProvider.OPENAI);
-        verify(translationService).isServiceAvailable(TranslationProvider.DEEPSEEK);
-        verify(translationService).translateBook(mockBook, TranslationProvider.DEEPSEEK);
+        Page page1 = new Page("page1", 1, "Chapter 1", "Content 1");
+        Page page2 = new Page("page2", 2, "Chapter 2", "Content 2");
+        List<Page> sent = new ArrayList<>();
+        
+        when(translationService.isServiceAvailable(TranslationProvider.OPENAI)).thenReturn(true);
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(checkpointRepository.findTranslatedPages(any(Book.class), eq(TranslationProvider.OPENAI))).thenReturn(Map.of("page1", "内容 1"));
+        parsesInto(null, page1, page2);
+        // 模拟翻译服务翻译收到的页面
+        doAnswer(invocation -> {
+            PageStream stream = invocation.getArgument(0);
+            List<Page> pages;
+            while (!(pages = stream.take(10)).isEmpty()) {
+                sent.addAll(pages);
+                pages.forEach(page -> page.translate("内容 2"));
+            }
+            return null;
+        }).when(translationService).translateStream(any(), eq(TranslationProvider.OPENAI));
+        when(epubProcessingService.createTranslatedEpub(any(Book.class), eq(outputDir), any(), eq(false)))
+            .thenReturn("/output/dir/test 中文版.epub");
+        
+        bookService.translateBook(command);
+        
+        assertEquals("内容 1", page1.getTranslatedContent());
+        assertEquals("内容 2", page2.getTranslatedContent());
+        // 已恢复的页面不再交给翻译服务
+        assertEquals(List.of(page2), sent);
+        // 只有本次新翻译的页面写入检查点，书籍生成后删除检查点
+        verify(checkpointRepository).save(any(Book.class), eq(TranslationProvider.OPENAI), eq(page2));
+        verify(checkpointRepository, never()).save(any(Book.class), eq(TranslationProvider.OPENAI), eq(page1));
+        verify(checkpointRepository).delete(any(Book.class));
+    }
+    
+    @Test
+    void testLowMemoryModeSpillsTranslatedPagesUntilWritten() throws Exception {
+        String outputDir = "/output/dir";
+        TranslateBookCommand command = new TranslateBookCommand("/path/to/test.epub", TranslationProvider.OPENAI, outputDir);
+        TranslationProperties properties = new TranslationProperties();
+        properties.getSettings().setLowMemoryMode(true);
+        BookApplicationService lowMemoryService = new BookApplicationService(bookRepository, translationService,
+            epubProcessingService, checkpointRepository, properties);
+        Page page1 = new Page("page1", 1, "Chapter 1", "Content 1");
+        Page page2 = new Page("page2", 2, "Chapter 2", "Content 2");
+        List<String> written = new ArrayList<>();
+        
+        when(translationService.isServiceAvailable(TranslationProvider.OPENAI)).thenReturn(true);
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        parsesInto(null, page1, page2);
+        translatesStream("译文");
+        // 模拟写出：到达条目时才取译文，译文从暂存处读回
+        when(epubProcessingService.createTranslatedEpub(any(Book.class), eq(outputDir), any(), eq(true)))
+            .thenAnswer(invocation -> {
+                Function<String, CompletableFuture<String>> translations = invocation.getArgument(2);
+                assertNull(translations.apply("OEBPS/Images/cover.jpg"));
+                for (String id : List.of("page1", "page2")) {
+                    written.add(translations.apply(id).get(5, TimeUnit.SECONDS));
+                }
+                return "/output/dir/test 中文版.epub";
+            });
+        
+        lowMemoryService.translateBook(command);
+        
+        assertEquals(List.of("译文 Content 1", "译文 Content 2"), written);
+        verify(epubProcessingService).parseEpub(any(Book.class), any(), eq(true));
+        // 写出完成后暂存文件被删除，页面报告译文已释放
+        assertTrue(page1.isTranslated());
+        assertTrue(page1.isTranslatedContentReleased());
+        assertNull(page1.getTranslatedContent());
+    }
+    
+    /**
+     * 模拟逐页解析：先报告书脊，再逐页加入书籍并通知监听器
+     */
+    private void parsesInto(BookMetadata metadata, Page... pages) throws TranslationException {
+        doAnswer(invocation -> {
+            Book book = invocation.getArgument(0);
+            EpubProcessingService.PageListener listener = invocation.getArgument(1);
+            if (metadata != null) {
+                book.updateMetadata(metadata);
+            }
+            listener.onSpine(Arrays.stream(pages).map(Page::getId).collect(Collectors.toList()));
+            for (Page page : pages) {
+                book.addPage(page);
+                listener.onPage(page);
+            }
+            return null;
+        }).when(epubProcessingService).parseEpub(any(Book.class), any(), anyBoolean());
+    }
+    
+    /**
+     * 模拟翻译服务：取出页面流中的所有页面并翻译
+     */
+    private void translatesStream(String prefix) throws TranslationException {
+        doAnswer(invocation -> {
+            PageStream stream = invocation.getArgument(0);
+            List<Page> pages;
+            while (!(pages = stream.take(10)).isEmpty()) {
+                pages.forEach(page -> page.translate(prefix + " " + page.getOriginalContent()));
+            }
+            return null;
+        }).when(translationService).translateStream(any(), any());
     }
-}
\ No newline at end of file
+}
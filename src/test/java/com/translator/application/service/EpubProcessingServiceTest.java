@@ -0,0 +1,287 @@
+package com.translator.application.service;
+
+import com.translator.domain.exception.TranslationException;
+import com.translator.domain.model.Book;
+import com.translator.domain.model.Page;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EPUB处理服务测试
+ * 使用临时目录中生成的最小EPUB验证解析与生成
+ */
+public class EpubProcessingServiceTest {
+    
+    private static final String CONTAINER = "<?xml version=\"1.0\"?>"
+        + "<container version=\"1.0\" xmlns=\"urn:oasis:names:tc:opendocument:xmlns:container\">"
+        + "<rootfiles><rootfile full-path=\"OEBPS/content.opf\" media-type=\"application/oebps-package+xml\"/></rootfiles>"
+        + "</container>";
+    
+    private static final String OPF = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<package xmlns=\"http://www.idpf.org/2007/opf\" version=\"3.0\">"
+        + "<metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\">"
+        + "<dc:title>Sample Book</dc:title><dc:creator>Jane Doe</dc:creator><dc:language>en</dc:language>"
+        + "</metadata>"
+        + "<manifest>"
+        + "<item id=\"ch1\" href=\"Text/chapter1.xhtml\" media-type=\"application/xhtml+xml\"/>"
+        + "<item id=\"ch2\" href=\"Text/../Text/chapter2.xhtml\" media-type=\"application/xhtml+xml\"/>"
+        + "<item id=\"cover\" href=\"Images/cover.jpg\" media-type=\"image/jpeg\"/>"
+        + "</manifest>"
+        + "<spine><itemref idref=\"ch1\"/><itemref idref=\"ch2\"/></spine>"
+        + "</package>";
+    
+    private final EpubProcessingService service = new EpubProcessingService();
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testParseEpubReadsSpineFromArchive() throws Exception {
+        Path epub = createEpub(tempDir.resolve("sample.epub"));
+        
+        Book book = service.parseEpub(epub.toString());
+        
+        assertEquals("Sample Book", book.getMetadata().getTitle());
+        assertEquals(2, book.getTotalPages());
+        Page first = book.getPages().get(0);
+        assertEquals("OEBPS/Text/chapter1.xhtml", first.getId());
+        assertEquals(chapter("Chapter One"), first.getOriginalContent());
+        assertEquals("OEBPS/Text/chapter2.xhtml", book.getPages().get(1).getId());
+    }
+    
+    @Test
+    void testParseEpubWithoutContainerFails() throws Exception {
+        Path epub = tempDir.resolve("broken.epub");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(epub))) {
+            putEntry(zip, "mimetype", "application/epub+zip", true);
+        }
+        
+        assertThrows(TranslationException.class, () -> service.parseEpub(epub.toString()));
+    }
+    
+    @Test
+    void testCreateTranslatedEpubReplacesOnlyTranslatedPages() throws Exception {
+        Path epub = createEpub(tempDir.resolve("sample.epub"));
+        Book book = service.parseEpub(epub.toString());
+        book.getPages().get(0).translate(chapter("第一章"));
+        
+        String output = service.createTranslatedEpub(book, tempDir.resolve("out").toString());
+        
+        // 输出文件名带中文后缀，复制为ASCII文件名以免受运行环境的文件名编码影响
+        Path copy = tempDir.resolve("translated.epub");
+        try (InputStream in = new FileInputStream(output)) {
+            Files.copy(in, copy);
+        }
+        
+        try (ZipFile original = new ZipFile(epub.toFile()); ZipFile translated = new ZipFile(copy.toFile())) {
+            // mimetype 必须是第一个且不压缩的条目
+            ZipEntry first = translated.stream().findFirst().orElseThrow();
+            assertEquals("mimetype", first.getName());
+            assertEquals(ZipEntry.STORED, first.getMethod());
+            assertEquals(original.size(), translated.size());
+            
+            // 未翻译的条目原样复制，压缩数据不变
+            ZipEntry cover = translated.getEntry("OEBPS/Images/cover.jpg");
+            assertEquals(original.getEntry("OEBPS/Images/cover.jpg").getCompressedSize(), cover.getCompressedSize());
+            assertArrayEquals(read(original, "OEBPS/Images/cover.jpg"), read(translated, "OEBPS/Images/cover.jpg"));
+            assertArrayEquals(read(original, "OEBPS/Text/chapter2.xhtml"), read(translated, "OEBPS/Text/chapter2.xhtml"));
+            
+            assertEquals(chapter("第一章"), new String(read(translated, "OEBPS/Text/chapter1.xhtml"), StandardCharsets.UTF_8));
+        }
+        
+        // 生成的文件可以再次解析
+        Book reparsed = service.parseEpub(copy.toString());
+        assertEquals(chapter("第一章"), reparsed.getPages().get(0).getOriginalContent());
+    }
+    
+    @Test
+    void testParallelCompressionKeepsEntryOrder() throws Exception {
+        Path epub = createEpub(tempDir.resolve("sample.epub"));
+        Path output = tempDir.resolve("parallel.epub");
+        Map<String, byte[]> replacements = new HashMap<>();
+        replacements.put("OEBPS/Text/chapter1.xhtml", chapter("第一章").getBytes(StandardCharsets.UTF_8));
+        replacements.put("OEBPS/Text/chapter2.xhtml", chapter("第二章").getBytes(StandardCharsets.UTF_8));
+        replacements.put("OEBPS/content.opf", "<package/>".getBytes(StandardCharsets.UTF_8));
+        
+        Set<String> replaced = new EpubArchiveWriter(4).write(epub.toFile(), output.toFile(), replacements);
+        
+        assertEquals(replacements.keySet(), replaced);
+        try (ZipFile original = new ZipFile(epub.toFile()); ZipFile translated = new ZipFile(output.toFile())) {
+            assertEquals(original.stream().map(ZipEntry::getName).collect(Collectors.toList()),
+                translated.stream().map(ZipEntry::getName).collect(Collectors.toList()));
+            for (Map.Entry<String, byte[]> entry : replacements.entrySet()) {
+                assertArrayEquals(entry.getValue(), read(translated, entry.getKey()));
+            }
+            assertArrayEquals(read(original, "OEBPS/Images/cover.jpg"), read(translated, "OEBPS/Images/cover.jpg"));
+        }
+    }
+    
+    @Test
+    void testParseEpubReportsSpineBeforePages() throws Exception {
+        Path epub = createEpub(tempDir.resolve("sample.epub"));
+        Book book = new Book(epub.toString());
+        List<String> events = new ArrayList<>();
+        
+        service.parseEpub(book, new EpubProcessingService.PageListener() {
+            @Override
+            public void onSpine(List<String> pageIds) {
+                events.add("spine " + pageIds);
+            }
+            
+            @Override
+            public void onPage(Page page) {
+                events.add(page.getId() + " " + book.getTotalPages());
+            }
+        }, false);
+        
+        assertEquals(List.of("spine [OEBPS/Text/chapter1.xhtml, OEBPS/Text/chapter2.xhtml]",
+            "OEBPS/Text/chapter1.xhtml 1", "OEBPS/Text/chapter2.xhtml 2"), events);
+    }
+    
+    @Test
+    void testStreamingWriteWaitsForPagesInEntryOrder() throws Exception {
+        Path epub = createEpub(tempDir.resolve("sample.epub"));
+        Book book = service.parseEpub(epub.toString());
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        Map<String, CompletableFuture<String>> pending = Map.of(
+            "OEBPS/Text/chapter1.xhtml", first, "OEBPS/Text/chapter2.xhtml", second);
+        
+        CompletableFuture<String> output = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.createTranslatedEpub(book, tempDir.resolve("out").toString(), pending::get, false);
+            } catch (TranslationException e) {
+                throw new CompletionException(e);
+            }
+        });
+        
+        // 后面的页面先完成，写出仍需等待前面的页面；没有译文的页面保留原文
+        second.complete(chapter("第二章"));
+        Thread.sleep(100);
+        assertFalse(output.isDone());
+        first.complete(null);
+        
+        Path copy = tempDir.resolve("streamed.epub");
+        try (InputStream in = new FileInputStream(output.get(5, TimeUnit.SECONDS))) {
+            Files.copy(in, copy);
+        }
+        try (ZipFile original = new ZipFile(epub.toFile()); ZipFile translated = new ZipFile(copy.toFile())) {
+            assertArrayEquals(read(original, "OEBPS/Text/chapter1.xhtml"), read(translated, "OEBPS/Text/chapter1.xhtml"));
+            assertEquals(chapter("第二章"), new String(read(translated, "OEBPS/Text/chapter2.xhtml"), StandardCharsets.UTF_8));
+        }
+    }
+    
+    @Test
+    void testStreamingWriteFailureRemovesPartialOutput() throws Exception {
+        Path epub = createEpub(tempDir.resolve("sample.epub"));
+        Book book = service.parseEpub(epub.toString());
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("translation aborted"));
+        Path outputDir = tempDir.resolve("out");
+        
+        assertThrows(TranslationException.class, () -> service.createTranslatedEpub(book, outputDir.toString(),
+            name -> name.equals("OEBPS/Text/chapter2.xhtml") ? failed : null, false));
+        
+        try (Stream<Path> files = Files.list(outputDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+    
+    @Test
+    void testLazyPagesReadContentOnDemandAndLowMemoryWriteLooksUpEntriesInOrder() throws Exception {
+        Path epub = createEpub(tempDir.resolve("sample.epub"));
+        Book book = new Book(epub.toString());
+        service.parseEpub(book, page -> { }, true);
+        
+        Page first = book.getPages().get(0);
+        assertEquals(chapter("Chapter One"), first.getOriginalContent());
+        assertEquals(chapter("Chapter Two"), book.getPages().get(1).getOriginalContent());
+        
+        // 低内存模式只在写到该条目时才查询译文
+        List<String> lookups = new ArrayList<>();
+        String output = service.createTranslatedEpub(book, tempDir.resolve("out").toString(), name -> {
+            lookups.add(name);
+            return name.equals(first.getId()) ? CompletableFuture.completedFuture(chapter("第一章")) : null;
+        }, true);
+        
+        try (ZipFile original = new ZipFile(epub.toFile())) {
+            assertEquals(original.stream().map(ZipEntry::getName).filter(name -> !name.equals("mimetype"))
+                .collect(Collectors.toList()), lookups);
+        }
+        Path copy = tempDir.resolve("lazy.epub");
+        try (InputStream in = new FileInputStream(output)) {
+            Files.copy(in, copy);
+        }
+        try (ZipFile translated = new ZipFile(copy.toFile())) {
+            assertEquals(chapter("第一章"), new String(read(translated, first.getId()), StandardCharsets.UTF_8));
+        }
+    }
+    
+    private static byte[] read(ZipFile zipFile, String name) throws IOException {
+        try (InputStream in = zipFile.getInputStream(zipFile.getEntry(name))) {
+            return in.readAllBytes();
+        }
+    }
+    
+    static String chapter(String text) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>" + text + "</title></head>"
+            + "<body><p>" + text + "</p></body></html>";
+    }
+    
+    static Path createEpub(Path path) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(path))) {
+            putEntry(zip, "mimetype", "application/epub+zip", true);
+            putEntry(zip, "META-INF/container.xml", CONTAINER, false);
+            putEntry(zip, "OEBPS/content.opf", OPF, false);
+            putEntry(zip, "OEBPS/Text/chapter1.xhtml", chapter("Chapter One"), false);
+            putEntry(zip, "OEBPS/Text/chapter2.xhtml", chapter("Chapter Two"), false);
+            
+            // 模拟已压缩过的二进制资源
+            byte[] image = new byte[64 * 1024];
+            new java.util.Random(42).nextBytes(image);
+            zip.putNextEntry(new ZipEntry("OEBPS/Images/cover.jpg"));
+            zip.write(image);
+            zip.closeEntry();
+        }
+        return path;
+    }
+    
+    private static void putEntry(ZipOutputStream zip, String name, String content, boolean stored) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+}
@@ -127,6 +127,28 @@ public class BookTest {
         assertEquals(100.0, book.getTranslationProgress(), 0.01);
     }
     
+    @Test
+    void testProgressCountsUnitsOfSplitPages() {
+        Page chapter = new Page("chapter1", 1, "Chapter 1", "A very long chapter");
+        Page shortPage = new Page("page2", 2, "Chapter 2", "Short");
+        book.addPage(chapter);
+        book.addPage(shortPage);
+        
+        // 超长章节拆成4个段落组，完成2组时进度随之推进
+        chapter.startUnits(4);
+        chapter.completeUnit();
+        chapter.completeUnit();
+        
+        assertEquals(5, book.getTotalUnits());
+        assertEquals(2, book.getTranslatedUnits());
+        assertEquals(0, book.getTranslatedPages());
+        assertEquals(40.0, book.getTranslationProgress(), 0.01);
+        
+        chapter.translate("译文");
+        shortPage.translate("译文");
+        assertEquals(100.0, book.getTranslationProgress(), 0.01);
+    }
+    
     @Test
     void testTranslatedFileNameGeneration() {
         // 测试带有.epub扩展名的文件
@@ -150,10 +172,8 @@ public class BookTest {
         List<Page> pages = book.getPages();
         int originalSize = pages.size();
         
-        // 尝试修改返回的列表
-        pages.clear();
-        
-        // 验证原始书籍的页面没有被修改
+        // 返回的是只读视图，不能通过它修改书籍的页面
+        assertThrows(UnsupportedOperationException.class, pages::clear);
         assertEquals(originalSize, book.getTotalPages());
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.translator.domain.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 页面实体测试
+ */
+public class PageTest {
+    
+    @Test
+    void testLazyContentIsReadOnEachUse() {
+        AtomicInteger reads = new AtomicInteger();
+        Page page = new Page("page1", 1, "Chapter 1", () -> {
+            reads.incrementAndGet();
+            return "Content 1";
+        });
+        
+        assertEquals(0, reads.get());
+        assertTrue(page.hasContent());
+        assertEquals("Content 1", page.getOriginalContent());
+        assertEquals(9, page.getContentLength());
+        // 不缓存原文，每次都从来源读取
+        assertEquals(3, reads.get());
+    }
+    
+    @Test
+    void testSpilledTranslationIsReadFromSource() {
+        Page page = new Page("page1", 1, "Chapter 1", "Content 1");
+        page.translate("译文 1");
+        
+        page.spillTranslatedContent(() -> "暂存的译文 1");
+        
+        assertTrue(page.isTranslated());
+        assertEquals("暂存的译文 1", page.getTranslatedContent());
+        
+        // 转存处删除后页面报告译文已释放
+        page.releaseSpilledContent();
+        assertTrue(page.isTranslated());
+        assertTrue(page.isTranslatedContentReleased());
+        assertNull(page.getTranslatedContent());
+        
+        // 重新翻译后使用新的译文
+        page.translate("译文 2");
+        assertFalse(page.isTranslatedContentReleased());
+        assertEquals("译文 2", page.getTranslatedContent());
+    }
+    
+    @Test
+    void testReleaseKeepsInMemoryTranslation() {
+        Page page = new Page("page1", 1, "Chapter 1", "Content 1");
+        page.translate("译文 1");
+        
+        page.releaseSpilledContent();
+        
+        assertFalse(page.isTranslatedContentReleased());
+        assertEquals("译文 1", page.getTranslatedContent());
+    }
+}
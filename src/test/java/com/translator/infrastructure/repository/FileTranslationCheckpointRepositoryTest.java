@@ -0,0 +1,192 @@
+package com.translator.infrastructure.repository;
+
+import com.translator.domain.model.Book;
+import com.translator.domain.model.Page;
+import com.translator.domain.valueobject.TranslationProvider;
+import com.translator.infrastructure.config.TranslationProperties;
+import com.translator.infrastructure.translation.PromptService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件翻译检查点仓库测试
+ */
+public class FileTranslationCheckpointRepositoryTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private TranslationProperties properties;
+    private Path source;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        properties = new TranslationProperties();
+        properties.getSettings().setCheckpointDirectory(tempDir.resolve("checkpoints").toString());
+        source = tempDir.resolve("book.epub");
+        Files.writeString(source, "epub bytes");
+    }
+    
+    @Test
+    void testCheckpointSurvivesRestart() {
+        Book book = newBook();
+        FileTranslationCheckpointRepository repository = newRepository();
+        book.onPageTranslated(page -> repository.save(book, TranslationProvider.OPENAI, page));
+        book.getPages().get(0).translate("译文 1");
+        book.getPages().get(2).translate("译文 3");
+        
+        // 新实例、新的Book对象，按源文件内容找到同一份检查点
+        Map<String, String> pages = newRepository().findTranslatedPages(newBook(), TranslationProvider.OPENAI);
+        assertEquals(Map.of("page1", "译文 1", "page3", "译文 3"), pages);
+    }
+    
+    @Test
+    void testTruncatedLastLineIsIgnored() throws IOException {
+        Book book = newBook();
+        FileTranslationCheckpointRepository repository = newRepository();
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 0, "译文 1"));
+        
+        // 模拟写入一半时进程崩溃
+        Path journal;
+        try (var files = Files.list(tempDir.resolve("checkpoints"))) {
+            journal = files.findFirst().orElseThrow();
+        }
+        Files.writeString(journal, "{\"page\":\"page2\",\"cont", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        
+        FileTranslationCheckpointRepository restarted = newRepository();
+        Book resumed = newBook();
+        assertEquals(Map.of("page1", "译文 1"), restarted.findTranslatedPages(resumed, TranslationProvider.OPENAI));
+        
+        // 之后追加的记录不受残留半行影响
+        restarted.save(resumed, TranslationProvider.OPENAI, translated(resumed, 1, "译文 2"));
+        assertEquals(Map.of("page1", "译文 1", "page2", "译文 2"),
+            newRepository().findTranslatedPages(newBook(), TranslationProvider.OPENAI));
+    }
+    
+    @Test
+    void testDeleteRemovesCheckpoint() {
+        Book book = newBook();
+        FileTranslationCheckpointRepository repository = newRepository();
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 0, "译文 1"));
+        
+        repository.delete(book);
+        
+        assertTrue(newRepository().findTranslatedPages(newBook(), TranslationProvider.OPENAI).isEmpty());
+    }
+    
+    @Test
+    void testCheckpointFromOtherSettingsIsDiscarded() {
+        Book book = newBook();
+        FileTranslationCheckpointRepository repository = newRepository();
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 0, "译文 1"));
+        repository.close(book);
+        
+        // 换了提供商、模型或目标语言，旧译文不能混入新书
+        assertTrue(newRepository().findTranslatedPages(newBook(), TranslationProvider.DEEPSEEK).isEmpty());
+        
+        repository = newRepository();
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 1, "译文 2"));
+        repository.close(book);
+        properties.getSettings().setTargetLanguage("日文");
+        assertTrue(newRepository().findTranslatedPages(newBook(), TranslationProvider.OPENAI).isEmpty());
+        
+        repository = newRepository();
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 2, "译文 3"));
+        repository.close(book);
+        assertEquals(Map.of("page3", "译文 3"),
+            newRepository().findTranslatedPages(newBook(), TranslationProvider.OPENAI));
+    }
+    
+    @Test
+    void testCheckpointFollowsProvidersThatMayTranslatePages() {
+        Book book = newBook();
+        properties.getSettings().setFailoverEnabled(false);
+        FileTranslationCheckpointRepository repository = newRepository();
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 0, "译文 1"));
+        repository.close(book);
+        
+        // 未启用故障转移时，备用提供商的配置与页面无关
+        TranslationProperties.ProviderConfig deepseek = properties.getApi().getDeepseek();
+        deepseek.setBaseUrl("https://api.deepseek.com");
+        deepseek.setApiKey("sk-deepseek");
+        deepseek.setModel("deepseek-chat");
+        assertEquals(Map.of("page1", "译文 1"),
+            newRepository().findTranslatedPages(newBook(), TranslationProvider.OPENAI));
+        
+        // 启用故障转移后页面可能由备用提供商翻译，更换其模型同样使检查点作废
+        properties.getSettings().setFailoverEnabled(true);
+        repository = newRepository();
+        assertTrue(repository.findTranslatedPages(newBook(), TranslationProvider.OPENAI).isEmpty());
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 1, "译文 2"));
+        repository.close(book);
+        deepseek.setModel("deepseek-reasoner");
+        assertTrue(newRepository().findTranslatedPages(newBook(), TranslationProvider.OPENAI).isEmpty());
+    }
+    
+    @Test
+    void testJournalWithoutHeaderIsDiscarded() throws Exception {
+        Path journal = tempDir.resolve("checkpoints").resolve(
+            HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(source))) + ".jsonl");
+        Files.createDirectories(journal.getParent());
+        Files.writeString(journal, "{\"page\":\"page1\",\"content\":\"译文 1\"}\n");
+        
+        assertTrue(newRepository().findTranslatedPages(newBook(), TranslationProvider.OPENAI).isEmpty());
+        assertFalse(Files.exists(journal));
+    }
+    
+    @Test
+    void testCloseKeepsCheckpoint() {
+        Book book = newBook();
+        FileTranslationCheckpointRepository repository = newRepository();
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 0, "译文 1"));
+        
+        // 翻译失败时关闭日志，之后仍可续译
+        repository.close(book);
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 1, "译文 2"));
+        repository.close(book);
+        
+        assertEquals(Map.of("page1", "译文 1", "page2", "译文 2"),
+            newRepository().findTranslatedPages(newBook(), TranslationProvider.OPENAI));
+    }
+    
+    @Test
+    void testDisabledCheckpointDoesNothing() {
+        properties.getSettings().setCheckpointEnabled(false);
+        Book book = newBook();
+        FileTranslationCheckpointRepository repository = newRepository();
+        repository.save(book, TranslationProvider.OPENAI, translated(book, 0, "译文 1"));
+        
+        assertTrue(repository.findTranslatedPages(book, TranslationProvider.OPENAI).isEmpty());
+        assertFalse(Files.exists(tempDir.resolve("checkpoints")));
+    }
+    
+    private FileTranslationCheckpointRepository newRepository() {
+        return new FileTranslationCheckpointRepository(properties, new PromptService());
+    }
+    
+    private Book newBook() {
+        Book book = new Book(source.toString());
+        for (int i = 1; i <= 3; i++) {
+            book.addPage(new Page("page" + i, i, "Chapter " + i, "Content " + i));
+        }
+        return book;
+    }
+    
+    private Page translated(Book book, int index, String content) {
+        Page page = book.getPages().get(index);
+        page.translate(content);
+        return page;
+    }
+}
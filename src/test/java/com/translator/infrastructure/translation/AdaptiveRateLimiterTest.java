@@ -0,0 +1,97 @@
+package com.translator.infrastructure.translation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自适应限流器测试
+ * 使用可控时钟，只验证放行与等待时长的计算
+ */
+public class AdaptiveRateLimiterTest {
+    
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    
+    @Test
+    void testConfiguredRequestRateAllowsSmallBurstThenPaces() {
+        // 60次/分钟，目标57次/分钟，桶容量约9.5次
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter("test", 60, 0, now::get);
+        
+        for (int i = 0; i < 9; i++) {
+            assertEquals(0, limiter.tryAcquire(100));
+        }
+        long wait = limiter.tryAcquire(100);
+        assertTrue(wait > 0 && wait <= 1100, "wait=" + wait);
+        
+        now.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire(100));
+    }
+    
+    @Test
+    void testTokenBudgetLimitsLargeRequests() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter("test", 0, 60_000, now::get);
+        
+        // 桶容量约9500 tokens，超出容量的请求在桶满时放行
+        assertEquals(0, limiter.tryAcquire(20_000));
+        long wait = limiter.tryAcquire(1000);
+        // 需要先偿还超出的部分
+        assertTrue(wait > 10_000, "wait=" + wait);
+    }
+    
+    @Test
+    void testLimitsAreLearnedFromHeaders() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter("test", 0, 0, now::get);
+        assertEquals(0, limiter.tryAcquire(100));
+        
+        limiter.onResponse(Map.of(
+            "x-ratelimit-limit-requests", "500",
+            "x-ratelimit-limit-tokens", "90000",
+            "x-ratelimit-remaining-requests", "0",
+            "x-ratelimit-remaining-tokens", "80000",
+            "x-ratelimit-reset-requests", "2s")::get);
+        
+        assertEquals(500, limiter.getRequestsPerMinute());
+        assertEquals(90000, limiter.getTokensPerMinute());
+        assertEquals(2000, limiter.tryAcquire(100));
+    }
+    
+    @Test
+    void testThrottlingPausesAndInfersLimit() {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter("test", 0, 0, now::get);
+        for (int i = 0; i < 30; i++) {
+            assertEquals(0, limiter.tryAcquire(100));
+            now.addAndGet(1000);
+        }
+        
+        limiter.onThrottled(3000);
+        
+        // 30秒内发出30次请求，推断配额为60次/分钟
+        assertEquals(60, limiter.getRequestsPerMinute());
+        assertTrue(limiter.tryAcquire(100) >= 3000);
+        now.addAndGet(3000);
+        // 暂停结束后按推断出的速率继续，只允许暂停期间积累的少量请求
+        int immediate = 0;
+        long wait;
+        while ((wait = limiter.tryAcquire(100)) == 0) {
+            immediate++;
+        }
+        assertTrue(immediate <= 3, "immediate=" + immediate);
+        assertTrue(wait <= 1100, "wait=" + wait);
+    }
+    
+    @Test
+    void testParseHeaders() {
+        assertEquals(1000, AdaptiveRateLimiter.parseDuration("1s"));
+        assertEquals(360_000, AdaptiveRateLimiter.parseDuration("6m0s"));
+        assertEquals(120, AdaptiveRateLimiter.parseDuration("120ms"));
+        assertEquals(1500, AdaptiveRateLimiter.parseDuration("1.5s"));
+        assertEquals(-1, AdaptiveRateLimiter.parseDuration(null));
+        
+        assertEquals(2000, AdaptiveRateLimiter.parseRetryAfter("2", null));
+        assertEquals(250, AdaptiveRateLimiter.parseRetryAfter("2", "250"));
+        assertEquals(-1, AdaptiveRateLimiter.parseRetryAfter(null, null));
+    }
+}
@@ -0,0 +1,78 @@
+package com.translator.infrastructure.translation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 熔断器测试
+ */
+public class CircuitBreakerTest {
+    
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 3, 10_000, now::get);
+    
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertFalse(breaker.isCallPermitted());
+    }
+    
+    @Test
+    void testHalfOpenAllowsSingleProbe() {
+        open();
+        now.addAndGet(10_000);
+        
+        assertTrue(breaker.isCallPermitted());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // 探测请求进行中，其他请求仍然直接失败
+        assertFalse(breaker.tryAcquire());
+        
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+    
+    @Test
+    void testFailedProbeReopens() {
+        open();
+        now.addAndGet(10_000);
+        assertTrue(breaker.tryAcquire());
+        
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+    
+    @Test
+    void testIgnoredResultReleasesProbe() {
+        open();
+        now.addAndGet(10_000);
+        assertTrue(breaker.tryAcquire());
+        
+        // 探测请求被限流，不能说明服务是否恢复
+        breaker.recordIgnored();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+    
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,97 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.infrastructure.config.TranslationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HTTP连接池测试
+ */
+public class HttpConnectionPoolTest {
+    
+    @Test
+    void testMaxConnectionsPerProviderRoute() throws IOException {
+        TranslationProperties.ProviderConfig openai = new TranslationProperties.ProviderConfig();
+        openai.setMaxConnections(32);
+        TranslationProperties.ProviderConfig deepseek = new TranslationProperties.ProviderConfig();
+        deepseek.setMaxConnections(8);
+        Map<String, TranslationProperties.ProviderConfig> providers = new LinkedHashMap<>();
+        providers.put("https://api.openai.com", openai);
+        providers.put("https://api.deepseek.com/v1", deepseek);
+        
+        try (HttpConnectionPool pool = new HttpConnectionPool(providers)) {
+            // 路由只与协议、主机和端口有关
+            assertEquals(32, pool.getMaxConnections("https://api.openai.com:443/v1"));
+            assertEquals(8, pool.getMaxConnections("https://api.deepseek.com"));
+            // 未配置的主机使用默认值
+            assertEquals(new TranslationProperties.ProviderConfig().getMaxConnections(),
+                pool.getMaxConnections("http://localhost:8080"));
+        }
+    }
+    
+    @Test
+    void testInvalidBaseUrlFallsBackToDefaults() throws IOException {
+        Map<String, TranslationProperties.ProviderConfig> providers = Map.of(
+            "https://bad host", new TranslationProperties.ProviderConfig());
+        
+        try (HttpConnectionPool pool = new HttpConnectionPool(providers)) {
+            assertNotNull(pool.getClient());
+        }
+    }
+    
+    @Test
+    void testCloseStopsWarmUpThreads() throws Exception {
+        // 只接受连接、从不应答的服务端，预热请求一直阻塞在读取响应上
+        try (ServerSocket server = new ServerSocket(0)) {
+            String url = "http://localhost:" + server.getLocalPort() + "/v1/models";
+            // 其他测试的连接池留下的空闲线程不计入
+            Set<Thread> existing = warmUpThreads();
+            HttpConnectionPool pool = new HttpConnectionPool(Map.of());
+            pool.warmUp(url, "key", 2);
+            
+            long deadline = System.currentTimeMillis() + 5000;
+            while (newThreads(existing) < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, newThreads(existing));
+            
+            pool.close();
+            deadline = System.currentTimeMillis() + 5000;
+            while (newThreads(existing) > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, newThreads(existing));
+        }
+    }
+    
+    @Test
+    void testResponseTimeoutScalesWithRequestSize() {
+        TranslationProperties.ProviderConfig config = new TranslationProperties.ProviderConfig();
+        config.setResponseTimeout(10_000);
+        config.setResponseTimeoutPerToken(50);
+        config.setOutputTokenRatio(1.5);
+        config.setMaxTokens(2000);
+        
+        assertEquals(10_000 + 50 * 150, config.getResponseTimeoutFor(100));
+        // 预计输出受 maxTokens 限制
+        assertEquals(10_000 + 50 * 2000, config.getResponseTimeoutFor(5000));
+    }
+    
+    private static Set<Thread> warmUpThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> thread.getName().startsWith("http-warmup-") && thread.isAlive())
+            .collect(Collectors.toSet());
+    }
+    
+    private static long newThreads(Set<Thread> existing) {
+        return warmUpThreads().stream().filter(thread -> !existing.contains(thread)).count();
+    }
+}
@@ -0,0 +1,49 @@
+package com.translator.infrastructure.translation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 离线语言识别测试
+ */
+public class LanguageDetectorTest {
+    
+    private final LanguageDetector detector = new LanguageDetector();
+    
+    @Test
+    void testDetectsLatinLanguagesByTrigrams() {
+        assertEquals("en", detector.detect("It was the best of times, it was the worst of times."));
+        assertEquals("fr", detector.detect("Il était une fois une petite fille qui vivait dans la forêt avec sa mère."));
+        assertEquals("de", detector.detect("Es war einmal ein kleines Mädchen, das mit seiner Mutter im Wald lebte."));
+        assertEquals("es", detector.detect("Había una vez una niña que vivía en el bosque con su madre."));
+    }
+    
+    @Test
+    void testDetectsScriptsDirectly() {
+        assertEquals("zh", detector.detect("他走进房间，看见桌上放着一封信。"));
+        // 夹杂英文术语的中文仍是中文
+        assertEquals("zh", detector.detect("本章介绍如何使用 Python 和 Java 开发网络应用程序。"));
+        assertEquals("ja", detector.detect("彼は部屋に入って、机の上の手紙を見た。"));
+        assertEquals("ko", detector.detect("그는 방에 들어가서 책상 위의 편지를 보았다."));
+        assertEquals("ru", detector.detect("Он вошёл в комнату и увидел письмо на столе."));
+        // 英文中夹杂的中文书名不改变判断
+        assertEquals("en", detector.detect("The novel 红楼梦 is one of the great classics of world literature."));
+    }
+    
+    @Test
+    void testTextWithoutLettersHasNoLanguage() {
+        assertEquals(LanguageDetector.NO_TEXT, detector.detect("1,024 | 2,048 | 4,096"));
+        assertEquals(LanguageDetector.NO_TEXT, detector.detect("— * — * —"));
+        assertEquals(LanguageDetector.NO_TEXT, detector.detect(""));
+    }
+    
+    @Test
+    void testNeedsTranslation() {
+        assertTrue(detector.needsTranslation("Chapter One", "zh"));
+        assertFalse(detector.needsTranslation("第一章 开始", "zh"));
+        assertFalse(detector.needsTranslation("第一章 开始", "zh-CN"));
+        assertFalse(detector.needsTranslation("42", "zh"));
+        assertTrue(detector.needsTranslation("第一章 开始", "en"));
+    }
+}
@@ -2,6 +2,7 @@ package com.translator.infrastructure.translation;
 
 import com.translator.domain.valueobject.TranslationProvider;
 import com.translator.infrastructure.config.TranslationProperties;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -46,6 +47,11 @@ public class OpenAITranslationServiceConfigTest {
         translationService = new OpenAITranslationService(properties, promptService);
     }
     
+    @AfterEach
+    void tearDown() {
+        translationService.close();
+    }
+    
     @Test
     void testNormalizeBaseUrl() throws Exception {
         // 使用反射访问私有方法
@@ -153,5 +159,6 @@ public class OpenAITranslationServiceConfigTest {
         
         // 验证服务创建成功（配置日志会在构造函数中输出）
         assertNotNull(serviceWithConfig);
+        serviceWithConfig.close();
     }
 }
\ No newline at end of file
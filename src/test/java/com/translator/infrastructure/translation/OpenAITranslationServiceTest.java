@@ -0,0 +1,875 @@
+package com.translator.infrastructure.translation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.translator.domain.model.Book;
+import com.translator.domain.model.Page;
+import com.translator.domain.exception.TranslationException;
+import com.translator.domain.valueobject.TranslationProvider;
+import com.translator.infrastructure.config.TranslationProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OpenAI翻译服务测试
+ * 使用本地模拟的 chat/completions 服务验证翻译流程
+ */
+public class OpenAITranslationServiceTest {
+    
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String FALLBACK_MODEL = "fallback-model";
+    
+    private HttpServer server;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger fallbackRequestCount = new AtomicInteger();
+    private final AtomicInteger throttledResponses = new AtomicInteger();
+    private final AtomicInteger droppedSegments = new AtomicInteger();
+    private final AtomicInteger untaggedResponses = new AtomicInteger();
+    private final AtomicInteger flakyResponses = new AtomicInteger();
+    
+    @TempDir
+    Path tempDir;
+    
+    // 流式测试中由模拟服务检查的页面
+    private volatile Page watchedPage;
+    private volatile boolean partialObserved;
+    private volatile String lastUserContent;
+    private volatile int lastMaxTokens;
+    private volatile int modelsStatus = 200;
+    
+    private TranslationProperties properties;
+    private OpenAITranslationService translationService;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", this::handleChatCompletion);
+        // 启动时的连接预热请求和健康探测
+        server.createContext("/v1/models", exchange -> respond(exchange, modelsStatus, "{\"data\":[]}"));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        
+        properties = new TranslationProperties();
+        TranslationProperties.ProviderConfig openai = properties.getApi().getOpenai();
+        openai.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        openai.setApiKey("sk-test-api-key");
+        openai.setModel("test-model");
+        properties.getSettings().setRetryCount(1);
+        properties.getSettings().setMemoryPath(tempDir.resolve("memory.jsonl").toString());
+        
+        translationService = new OpenAITranslationService(properties, new PromptService());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        translationService.close();
+        server.stop(0);
+    }
+    
+    @Test
+    void testTranslateBookRunsBatchesConcurrently() throws Exception {
+        properties.getSettings().setMaxConcurrency(3);
+        properties.getSettings().setMaxSegmentsPerBatch(1);
+        
+        Book book = new Book("parallel.epub");
+        for (int i = 1; i <= 6; i++) {
+            book.addPage(new Page("page" + i, i, "Chapter " + i, "Content " + i));
+        }
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        // 每个页面都写回了自己的译文，与完成顺序无关
+        for (Page page : book.getPages()) {
+            assertTrue(page.isTranslated());
+            assertEquals("译:" + page.getOriginalContent(), page.getTranslatedContent());
+        }
+        assertEquals(6, requestCount.get());
+        assertEquals(3, maxInFlight.get());
+    }
+    
+    @Test
+    void testSmallPagesArePackedIntoOneRequest() throws Exception {
+        Book book = new Book("small.epub");
+        for (int i = 1; i <= 10; i++) {
+            book.addPage(new Page("page" + i, i, "Page " + i, "Front matter " + i));
+        }
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        assertEquals(1, requestCount.get());
+        for (Page page : book.getPages()) {
+            assertEquals("译:" + page.getOriginalContent(), page.getTranslatedContent());
+        }
+    }
+    
+    @Test
+    void testOversizedPageIsSplitAndReassembled() throws Exception {
+        properties.getApi().getOpenai().setMaxInputTokens(20);
+        
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 8; i++) {
+            content.append("<p>This is paragraph number ").append(i).append(" of the chapter.</p>\n\n");
+        }
+        Book book = new Book("large.epub");
+        Page page = new Page("chapter1", 1, "Chapter 1", content.toString());
+        book.addPage(page);
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        assertTrue(requestCount.get() > 1);
+        assertTrue(page.isTranslated());
+        assertTrue(page.getTotalUnits() > 1);
+        assertEquals(page.getTotalUnits(), page.getCompletedUnits());
+        // 去掉每片的译文标记后应与原文完全一致，说明各片按顺序拼接且空白得以保留
+        assertEquals(content.toString(), page.getTranslatedContent().replace("译:", ""));
+    }
+    
+    @Test
+    void testMissingSegmentIsReRequestedAlone() throws Exception {
+        Book book = new Book("dropped.epub");
+        book.addPage(new Page("page1", 1, "Chapter 1", "Content 1"));
+        book.addPage(new Page("page2", 2, "Chapter 2", "DROP me"));
+        book.addPage(new Page("page3", 3, "Chapter 3", "Content 3"));
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        // 第一次响应缺少第2段，只有这一段被重新请求，其他页面的译文没有错位
+        assertEquals(2, requestCount.get());
+        assertEquals("DROP me", lastUserContent);
+        for (Page page : book.getPages()) {
+            assertEquals("译:" + page.getOriginalContent(), page.getTranslatedContent());
+        }
+    }
+    
+    @Test
+    void testTruncatedPageIsSplitAtParagraphAndStitched() throws Exception {
+        Book book = new Book("truncated.epub");
+        Page page = new Page("chapter1", 1, "Chapter 1", "TRUNCATE first paragraph.\n\nTRUNCATE second paragraph.");
+        book.addPage(page);
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        // 截断的请求之后两半各自重新请求，译文按原有的段落分隔拼接
+        assertEquals(3, requestCount.get());
+        assertEquals("译:TRUNCATE first paragraph.\n\n译:TRUNCATE second paragraph.", page.getTranslatedContent());
+        // max_tokens 按输入大小确定，而不是配置的上限
+        assertTrue(lastMaxTokens > 0 && lastMaxTokens < properties.getApi().getOpenai().getMaxTokens(),
+            "max_tokens=" + lastMaxTokens);
+    }
+    
+    @Test
+    void testTruncatedBatchKeepsCompleteSegmentsAndSplitsTheRest() throws Exception {
+        Book book = new Book("truncated-batch.epub");
+        for (int i = 1; i <= 4; i++) {
+            book.addPage(new Page("page" + i, i, "Chapter " + i, "TRUNCATE content " + i));
+        }
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        for (Page page : book.getPages()) {
+            assertEquals("译:" + page.getOriginalContent(), page.getTranslatedContent());
+        }
+    }
+    
+    @Test
+    void testLargestBatchesAreDispatchedFirst() throws Exception {
+        properties.getSettings().setMaxConcurrency(1);
+        properties.getSettings().setMaxSegmentsPerBatch(1);
+        
+        Book book = new Book("lpt.epub");
+        book.addPage(new Page("page1", 1, "Chapter 1", "Short"));
+        book.addPage(new Page("page2", 2, "Chapter 2", "A much longer chapter that should be translated first"));
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        // 单线程时最后发出的是最小的批次
+        assertEquals("Short", lastUserContent);
+    }
+    
+    @Test
+    void testDuplicateSegmentsShareOneRequest() throws Exception {
+        properties.getSettings().setMaxConcurrency(3);
+        properties.getSettings().setMaxSegmentsPerBatch(1);
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        
+        Book book = new Book("boilerplate.epub");
+        book.addPage(new Page("page1", 1, "Chapter 1", "All rights reserved."));
+        book.addPage(new Page("page2", 2, "Chapter 2", "All  rights\nreserved."));
+        book.addPage(new Page("page3", 3, "Chapter 3", "All rights reserved."));
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        // 三个批次同时开始，只有一个真正发出请求，其余等待它的结果
+        assertEquals(1, requestCount.get());
+        String shared = book.getPages().get(0).getTranslatedContent();
+        assertTrue(shared.startsWith("译:All"));
+        for (Page page : book.getPages()) {
+            assertEquals(shared, page.getTranslatedContent());
+        }
+        assertEquals(2, translationService.getSegmentCache().getCoalescedCount());
+        
+        // 之后的书直接命中缓存
+        Book second = new Book("boilerplate-2.epub");
+        second.addPage(new Page("page1", 1, "Chapter 1", "All rights reserved."));
+        translationService.translateBook(second, TranslationProvider.OPENAI);
+        assertEquals(1, requestCount.get());
+        assertTrue(translationService.getSegmentCache().getHitRate() > 0);
+    }
+    
+    @Test
+    void testSegmentWaitingOnFailedRequestIsTranslatedByItsOwnBatch() throws Exception {
+        properties.getSettings().setFailoverEnabled(false);
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        
+        // 第一本书的请求失败；第二本书的相同片段在等待它，之后应自行翻译而不是保持原文
+        Book failing = new Book("flaky-1.epub");
+        failing.addPage(new Page("page1", 1, "Chapter 1", "FLAKY notice"));
+        Book waiting = new Book("flaky-2.epub");
+        waiting.addPage(new Page("page1", 1, "Chapter 1", "FLAKY notice"));
+        
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                translationService.translateBook(failing, TranslationProvider.OPENAI);
+            } catch (TranslationException e) {
+                throw new CompletionException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (requestCount.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        translationService.translateBook(waiting, TranslationProvider.OPENAI);
+        
+        assertThrows(CompletionException.class, first::join);
+        assertEquals(1, translationService.getSegmentCache().getCoalescedCount());
+        assertEquals("译:FLAKY notice", waiting.getPages().get(0).getTranslatedContent());
+        assertEquals(2, requestCount.get());
+    }
+    
+    @Test
+    void testSegmentsInTargetLanguageOrWithoutTextAreNotSent() throws Exception {
+        Book book = new Book("bilingual.epub");
+        book.addPage(new Page("page1", 1, "Chapter 1", "Content 1"));
+        book.addPage(new Page("page2", 2, "Chapter 2", "第二章已经翻译过了。"));
+        book.addPage(new Page("page3", 3, "Table", "1,024\n2,048\n4,096"));
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        assertEquals(1, requestCount.get());
+        assertEquals("Content 1", lastUserContent);
+        assertEquals("译:Content 1", book.getPages().get(0).getTranslatedContent());
+        assertEquals("第二章已经翻译过了。", book.getPages().get(1).getTranslatedContent());
+        assertEquals("1,024\n2,048\n4,096", book.getPages().get(2).getTranslatedContent());
+        assertEquals(3, book.getTranslatedPages());
+    }
+    
+    @Test
+    void testTranslationMemoryServesRepeatRuns() throws Exception {
+        properties.getSettings().setMemoryEnabled(true);
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        translationService.translateBook(newBook("first.epub"), TranslationProvider.OPENAI);
+        int requestsAfterFirstRun = requestCount.get();
+        assertTrue(requestsAfterFirstRun > 0);
+        
+        // 同一进程内重复翻译直接命中记忆库
+        Book second = newBook("second.epub");
+        translationService.translateBook(second, TranslationProvider.OPENAI);
+        assertEquals(requestsAfterFirstRun, requestCount.get());
+        assertEquals("译:Content 2", second.getPages().get(1).getTranslatedContent());
+        assertTrue(translationService.getTranslationMemory().getHitCount() >= 3);
+        
+        // 新的服务实例从磁盘加载记忆库
+        OpenAITranslationService restarted = new OpenAITranslationService(properties, new PromptService());
+        Book third = newBook("third.epub");
+        restarted.translateBook(third, TranslationProvider.OPENAI);
+        assertEquals(requestsAfterFirstRun, requestCount.get());
+        assertTrue(third.getPages().stream().allMatch(Page::isTranslated));
+        restarted.close();
+    }
+    
+    @Test
+    void testTranslationMemoryIsOffByDefault() {
+        assertFalse(new TranslationProperties().isMemoryEnabled());
+        assertNull(translationService.getTranslationMemory());
+    }
+    
+    @Test
+    void testStreamingResponseUpdatesPageProgressively() throws Exception {
+        properties.getApi().getOpenai().setStream(true);
+        
+        Book book = new Book("stream.epub");
+        Page page = new Page("chapter1", 1, "Chapter 1", "A long chapter");
+        book.addPage(page);
+        watchedPage = page;
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        assertTrue(partialObserved, "完成之前页面上应能看到部分译文");
+        assertTrue(page.isTranslated());
+        assertEquals("译:A long chapter", page.getTranslatedContent());
+        assertEquals("", page.getPartialTranslation());
+    }
+    
+    @Test
+    void testXhtmlPageOnlySendsTextRuns() throws Exception {
+        String xhtml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<!DOCTYPE html>\n"
+            + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Ch 1</title>"
+            + "<link rel=\"stylesheet\" href=\"style.css\"/></head>"
+            + "<body class=\"chapter\"><h1 id=\"c1\">Chapter One</h1>"
+            + "<p>See <a href=\"notes.xhtml#n1\">the note</a> and <em>this</em>.</p>"
+            + "<p><img src=\"cover.jpg\" alt=\"\"/></p></body></html>";
+        Book book = new Book("xhtml.epub");
+        Page page = new Page("chapter1.xhtml", 1, "Chapter 1", xhtml);
+        book.addPage(page);
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        // 只发送了两个文本段，标记和属性没有进入请求
+        assertEquals(1, requestCount.get());
+        JsonNode sent = objectMapper.readTree(lastUserContent).get("segments");
+        assertEquals(2, sent.size());
+        assertEquals("Chapter One", sent.get(0).get("text").asText());
+        assertEquals("See <1>the note</1> and <2>this</2>.", sent.get(1).get("text").asText());
+        
+        String translated = page.getTranslatedContent();
+        assertTrue(translated.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!DOCTYPE html>\n"));
+        assertTrue(translated.contains("<link href=\"style.css\" rel=\"stylesheet\"/>")
+            || translated.contains("<link rel=\"stylesheet\" href=\"style.css\"/>"));
+        assertTrue(translated.contains("<h1 id=\"c1\">译:Chapter One</h1>"));
+        assertTrue(translated.contains("<p>译:See <a href=\"notes.xhtml#n1\">the note</a> and <em>this</em>.</p>"));
+        assertTrue(translated.contains("<img alt=\"\" src=\"cover.jpg\"/>"));
+    }
+    
+    @Test
+    void testXhtmlCommentsInsideTextRunArePreserved() throws Exception {
+        String xhtml = "<html xmlns=\"http://www.w3.org/1999/xhtml\"><body>"
+            + "<p>First<!-- page 12 -->, then <em>more<!--x--></em>.</p></body></html>";
+        Book book = new Book("comments.epub");
+        Page page = new Page("chapter1.xhtml", 1, "Chapter 1", xhtml);
+        book.addPage(page);
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        // 注释以空占位符留在文本段中，内容不发送给模型
+        assertEquals("First<1/>, then <2>more<3/></2>.", lastUserContent);
+        assertTrue(page.getTranslatedContent().contains("<p>译:First<!-- page 12 -->, then <em>more<!--x--></em>.</p>"),
+            page.getTranslatedContent());
+    }
+    
+    @Test
+    void testLazyPagesAreReadOncePerDispatch() throws Exception {
+        String imageOnly = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title></title></head>"
+            + "<body><p><img src=\"cover.jpg\" alt=\"\"/></p></body></html>";
+        String chapter = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title></title></head>"
+            + "<body><p>Chapter One</p></body></html>";
+        AtomicInteger coverReads = new AtomicInteger();
+        AtomicInteger chapterReads = new AtomicInteger();
+        Page cover = new Page("cover.xhtml", 1, "Cover", () -> {
+            coverReads.incrementAndGet();
+            return imageOnly;
+        });
+        Page first = new Page("chapter1.xhtml", 2, "Chapter 1", () -> {
+            chapterReads.incrementAndGet();
+            return chapter;
+        });
+        AtomicInteger takes = new AtomicInteger();
+        
+        translationService.translateStream(maxPages -> takes.incrementAndGet() == 1 ? List.of(cover, first) : List.of(),
+            TranslationProvider.OPENAI);
+        
+        // 按需读取的原文在规划时只读取一次
+        assertEquals(1, coverReads.get());
+        assertEquals(1, chapterReads.get());
+        assertEquals(imageOnly, cover.getTranslatedContent());
+        assertTrue(first.getTranslatedContent().contains("<p>译:Chapter One</p>"));
+    }
+    
+    @Test
+    void testInlineTagsAreSentAsPlaceholdersAndRestored() throws Exception {
+        properties.getSettings().setHtmlAware(false);
+        String content = "See note <a href=\"../Text/chapter0012.xhtml#footnote-37\" class=\"noteref\">37</a> "
+            + "for details.<br/>";
+        Page page = new Page("chapter1", 1, "Chapter 1", content);
+        
+        translationService.translatePage(page, TranslationProvider.OPENAI);
+        
+        assertEquals("See note <1>37</1> for details.<2/>", lastUserContent);
+        assertEquals("译:" + content, page.getTranslatedContent());
+    }
+    
+    @Test
+    void testTranslationMissingPlaceholdersIsReRequested() throws Exception {
+        properties.getSettings().setHtmlAware(false);
+        Page page = new Page("chapter1", 1, "Chapter 1", "UNTAG <b>bold</b> text");
+        
+        translationService.translatePage(page, TranslationProvider.OPENAI);
+        
+        assertEquals(2, requestCount.get());
+        assertEquals("译:UNTAG <b>bold</b> text", page.getTranslatedContent());
+    }
+    
+    @Test
+    void testFailedBatchFailsOverToOtherProvider() throws Exception {
+        properties.getSettings().setMaxSegmentsPerBatch(1);
+        configureFallbackProvider();
+        
+        Book book = new Book("failover.epub");
+        book.addPage(new Page("page1", 1, "Chapter 1", "Content 1"));
+        book.addPage(new Page("page2", 2, "Chapter 2", "FAIL"));
+        book.addPage(new Page("page3", 3, "Chapter 3", "Content 3"));
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        // 只有失败的页面交给备用提供商，其余页面保留首选提供商的译文
+        assertEquals("译:Content 1", book.getPages().get(0).getTranslatedContent());
+        assertEquals("备:FAIL", book.getPages().get(1).getTranslatedContent());
+        assertEquals("译:Content 3", book.getPages().get(2).getTranslatedContent());
+        assertEquals(1, fallbackRequestCount.get());
+    }
+    
+    @Test
+    void testUnhealthyProviderIsSkippedForNewRequests() throws Exception {
+        properties.getSettings().setMaxSegmentsPerBatch(1);
+        properties.getSettings().setMaxConcurrency(1);
+        properties.getSettings().setUnhealthyThreshold(2);
+        configureFallbackProvider();
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        
+        Book book = new Book("unhealthy.epub");
+        book.addPage(new Page("page1", 1, "Chapter 1", "FAIL 1"));
+        book.addPage(new Page("page2", 2, "Chapter 2", "FAIL 2"));
+        // 与前两页等长，批次按大小排序后仍保持页面顺序
+        book.addPage(new Page("page3", 3, "Chapter 3", "Fine 3"));
+        
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        // 首选提供商连续失败两次后，第三页直接路由到备用提供商
+        assertEquals(5, requestCount.get());
+        assertEquals(3, fallbackRequestCount.get());
+        assertEquals("备:Fine 3", book.getPages().get(2).getTranslatedContent());
+        assertFalse(translationService.getHealthRegistry().isHealthy(TranslationProvider.OPENAI));
+    }
+    
+    @Test
+    void testServiceAvailabilityIsServedFromProbeResult() throws Exception {
+        modelsStatus = 503;
+        properties.getSettings().setHealthProbeInterval(0);
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        
+        // 尚无探测结果：立即返回并在后台探测，不发出翻译请求
+        long start = System.currentTimeMillis();
+        assertTrue(translationService.isServiceAvailable(TranslationProvider.OPENAI));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        
+        long deadline = System.currentTimeMillis() + 5000;
+        while (translationService.getHealthRegistry().getProbeResult(TranslationProvider.OPENAI) == null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(translationService.isServiceAvailable(TranslationProvider.OPENAI));
+        assertFalse(translationService.isServiceAvailable(TranslationProvider.DEEPSEEK));
+        assertEquals(0, requestCount.get());
+    }
+    
+    @Test
+    void testCheckServiceNowProbesSynchronously() {
+        properties.getSettings().setHealthProbeInterval(0);
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        
+        modelsStatus = 401;
+        assertFalse(translationService.checkServiceNow(TranslationProvider.OPENAI));
+        assertFalse(translationService.isServiceAvailable(TranslationProvider.OPENAI));
+        
+        // 地址错误时 /models 返回404，同样不可用
+        modelsStatus = 404;
+        assertFalse(translationService.checkServiceNow(TranslationProvider.OPENAI));
+        assertFalse(translationService.isServiceAvailable(TranslationProvider.OPENAI));
+        
+        modelsStatus = 200;
+        assertTrue(translationService.checkServiceNow(TranslationProvider.OPENAI));
+        assertTrue(translationService.isServiceAvailable(TranslationProvider.OPENAI));
+        assertEquals(0, requestCount.get());
+    }
+    
+    @Test
+    void testRateLimitedRequestWaitsForRetryAfter() throws Exception {
+        properties.getSettings().setRetryCount(2);
+        properties.getSettings().setRetryDelay(0);
+        
+        long start = System.currentTimeMillis();
+        String translation = translationService.testTranslation("THROTTLE me", TranslationProvider.OPENAI);
+        long elapsed = System.currentTimeMillis() - start;
+        
+        assertEquals("译:THROTTLE me", translation);
+        assertEquals(2, requestCount.get());
+        // 第二次请求在 Retry-After 之后才发出，随后从响应头学到请求配额
+        assertTrue(elapsed >= 500, "elapsed=" + elapsed);
+        assertEquals(600, translationService.getRateLimiter(TranslationProvider.OPENAI).getRequestsPerMinute());
+    }
+    
+    @Test
+    void testHedgeLatencyExcludesRateLimitWait() throws Exception {
+        properties.getSettings().setRetryCount(2);
+        properties.getSettings().setRetryDelay(0);
+        RequestHedger hedger = translationService.getRequestHedger();
+        for (int i = 0; i < 19; i++) {
+            hedger.recordLatency(TranslationProvider.OPENAI, 10);
+        }
+        
+        // 429之后等待 Retry-After 再重发，等待时间不计入耗时统计
+        long start = System.currentTimeMillis();
+        translationService.testTranslation("THROTTLE me", TranslationProvider.OPENAI);
+        assertTrue(System.currentTimeMillis() - start >= 500);
+        
+        long delay = hedger.getHedgeDelay(TranslationProvider.OPENAI);
+        assertTrue(delay >= 0 && delay < 500, "delay=" + delay);
+    }
+    
+    @Test
+    void testBadRequestIsNotRetried() {
+        properties.getSettings().setRetryCount(3);
+        
+        assertThrows(TranslationException.class,
+            () -> translationService.testTranslation("FAIL", TranslationProvider.OPENAI));
+        assertEquals(1, requestCount.get());
+    }
+    
+    @Test
+    void testCircuitBreakerFailsFastDuringOutage() {
+        properties.getSettings().setRetryCount(5);
+        properties.getSettings().setRetryDelay(1);
+        properties.getSettings().setCircuitFailureThreshold(2);
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        
+        assertThrows(TranslationException.class,
+            () -> translationService.testTranslation("OUTAGE", TranslationProvider.OPENAI));
+        // 第二次失败后熔断，剩余重试不再发出请求
+        assertEquals(2, requestCount.get());
+        assertEquals(CircuitBreaker.State.OPEN, translationService.getCircuitBreaker(TranslationProvider.OPENAI).getState());
+        
+        assertThrows(TranslationException.class,
+            () -> translationService.testTranslation("Hello", TranslationProvider.OPENAI));
+        assertEquals(2, requestCount.get());
+    }
+    
+    @Test
+    void testSlowRequestIsHedgedToOtherProvider() throws Exception {
+        configureFallbackProvider();
+        properties.getSettings().setHedgeEnabled(true);
+        for (int i = 0; i < 20; i++) {
+            translationService.getRequestHedger().recordLatency(TranslationProvider.OPENAI, 300);
+        }
+        
+        Page page = new Page("page1", 1, "Chapter 1", "SLOW chapter");
+        long start = System.currentTimeMillis();
+        translationService.translatePage(page, TranslationProvider.OPENAI);
+        long elapsed = System.currentTimeMillis() - start;
+        
+        // 首选请求超过300ms未返回，对冲请求先完成
+        assertEquals("备:SLOW chapter", page.getTranslatedContent());
+        assertEquals(1, fallbackRequestCount.get());
+        assertTrue(elapsed < 2000, "elapsed=" + elapsed);
+    }
+    
+    @Test
+    void testHedgedTranslationIsRememberedUnderWinningProvider() throws Exception {
+        configureFallbackProvider();
+        properties.getSettings().setHedgeEnabled(true);
+        properties.getSettings().setMemoryEnabled(true);
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        for (int i = 0; i < 20; i++) {
+            translationService.getRequestHedger().recordLatency(TranslationProvider.OPENAI, 300);
+        }
+        
+        Page page = new Page("page1", 1, "Chapter 1", "SLOW chapter");
+        translationService.translatePage(page, TranslationProvider.OPENAI);
+        assertEquals("备:SLOW chapter", page.getTranslatedContent());
+        
+        // 译文来自备用提供商，记在备用提供商和模型名下，不冒充首选提供商的结果
+        String systemPrompt = new PromptService().getSystemPrompt(properties.isHtmlAware());
+        TranslationMemory memory = translationService.getTranslationMemory();
+        assertNull(memory.lookup(TranslationMemory.key("SLOW chapter", TranslationProvider.OPENAI,
+            properties.getApi().getOpenai().getModel(), systemPrompt)));
+        assertEquals("备:SLOW chapter", memory.lookup(TranslationMemory.key("SLOW chapter", TranslationProvider.DEEPSEEK,
+            properties.getApi().getDeepseek().getModel(), systemPrompt)));
+    }
+    
+    @Test
+    void testLoadBalancingSpreadsBatchesAcrossProviders() throws Exception {
+        configureFallbackProvider();
+        properties.getSettings().setLoadBalancingEnabled(true);
+        properties.getSettings().setMaxConcurrency(4);
+        properties.getSettings().setMaxSegmentsPerBatch(1);
+        
+        Book book = new Book("balanced.epub");
+        for (int i = 1; i <= 8; i++) {
+            book.addPage(new Page("page" + i, i, "Chapter " + i, "Content " + i));
+        }
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        assertTrue(book.getPages().stream().allMatch(Page::isTranslated));
+        // 两个提供商同时分到批次
+        assertEquals(8, requestCount.get());
+        assertTrue(fallbackRequestCount.get() > 0 && fallbackRequestCount.get() < 8,
+            "fallback=" + fallbackRequestCount.get());
+    }
+    
+    @Test
+    void testHungResponseTimesOut() {
+        properties.getApi().getOpenai().setResponseTimeout(300);
+        properties.getApi().getOpenai().setResponseTimeoutPerToken(0);
+        
+        long start = System.currentTimeMillis();
+        assertThrows(TranslationException.class,
+            () -> translationService.testTranslation("SLOW", TranslationProvider.OPENAI));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+    
+    @Test
+    void testAsyncTransportTranslatesBook() throws Exception {
+        properties.getSettings().setTransport("async");
+        properties.getSettings().setMaxConcurrency(3);
+        properties.getSettings().setMaxSegmentsPerBatch(1);
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        
+        Book book = newBook("async.epub");
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        for (Page page : book.getPages()) {
+            assertEquals("译:" + page.getOriginalContent(), page.getTranslatedContent());
+        }
+        assertEquals(3, maxInFlight.get());
+    }
+    
+    @Test
+    void testAsyncTransportStreamsAndTimesOut() throws Exception {
+        properties.getSettings().setTransport("async");
+        properties.getApi().getOpenai().setStream(true);
+        translationService = new OpenAITranslationService(properties, new PromptService());
+        
+        Book book = new Book("async-stream.epub");
+        Page page = new Page("chapter1", 1, "Chapter 1", "A long chapter");
+        book.addPage(page);
+        watchedPage = page;
+        translationService.translateBook(book, TranslationProvider.OPENAI);
+        
+        assertTrue(partialObserved, "完成之前页面上应能看到部分译文");
+        assertEquals("译:A long chapter", page.getTranslatedContent());
+        
+        // 非流式请求同样受响应超时约束
+        properties.getApi().getOpenai().setStream(false);
+        properties.getApi().getOpenai().setResponseTimeout(300);
+        properties.getApi().getOpenai().setResponseTimeoutPerToken(0);
+        long start = System.currentTimeMillis();
+        assertThrows(TranslationException.class,
+            () -> translationService.testTranslation("SLOW", TranslationProvider.OPENAI));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+    
+    @Test
+    void testTranslateBookFailsWhenBatchFails() {
+        properties.getSettings().setMaxConcurrency(2);
+        properties.getSettings().setMaxSegmentsPerBatch(1);
+        
+        Book book = new Book("failing.epub");
+        book.addPage(new Page("page1", 1, "Chapter 1", "Content 1"));
+        book.addPage(new Page("page2", 2, "Chapter 2", "FAIL"));
+        
+        assertThrows(com.translator.domain.exception.TranslationException.class,
+            () -> translationService.translateBook(book, TranslationProvider.OPENAI));
+    }
+    
+    @Test
+    void testTranslateStreamDispatchesPagesAsTheyArrive() throws Exception {
+        Page first = new Page("page1", 1, "Chapter 1", "Content 1");
+        Page second = new Page("page2", 2, "Chapter 2", "Content 2");
+        AtomicInteger takes = new AtomicInteger();
+        AtomicInteger firstTranslatedBeforeSecondArrived = new AtomicInteger();
+        
+        // 第二页要等第一页翻译完成后才"解析"出来
+        translationService.translateStream(maxPages -> {
+            switch (takes.incrementAndGet()) {
+                case 1:
+                    return List.of(first);
+                case 2:
+                    long deadline = System.currentTimeMillis() + 5000;
+                    while (!first.isTranslated() && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(10);
+                    }
+                    firstTranslatedBeforeSecondArrived.set(first.isTranslated() ? 1 : 0);
+                    return List.of(second);
+                default:
+                    return List.of();
+            }
+        }, TranslationProvider.OPENAI);
+        
+        assertEquals(1, firstTranslatedBeforeSecondArrived.get());
+        assertEquals("译:Content 1", first.getTranslatedContent());
+        assertEquals("译:Content 2", second.getTranslatedContent());
+        assertEquals(2, requestCount.get());
+    }
+    
+    private void configureFallbackProvider() {
+        TranslationProperties.ProviderConfig deepseek = properties.getApi().getDeepseek();
+        deepseek.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        deepseek.setApiKey("sk-test-fallback-key");
+        deepseek.setModel(FALLBACK_MODEL);
+    }
+    
+    private Book newBook(String fileName) {
+        Book book = new Book(fileName);
+        for (int i = 1; i <= 3; i++) {
+            book.addPage(new Page("page" + i, i, "Chapter " + i, "Content " + i));
+        }
+        return book;
+    }
+    
+    private void handleChatCompletion(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            JsonNode messages = request.get("messages");
+            String userContent = messages.get(messages.size() - 1).get("content").asText();
+            lastUserContent = userContent;
+            lastMaxTokens = request.path("max_tokens").asInt();
+            
+            if (request.path("stream").asBoolean(false)) {
+                streamResponse(exchange, "译:" + userContent);
+                return;
+            }
+            
+            // 留出时间让其他请求同时进入
+            Thread.sleep(200);
+            
+            // 第一次遇到 THROTTLE 时模拟限流
+            if (userContent.contains("THROTTLE") && throttledResponses.getAndIncrement() == 0) {
+                exchange.getResponseHeaders().set("Retry-After", "0.5");
+                respond(exchange, 429, "{\"error\":{\"message\":\"rate limited\"}}");
+                return;
+            }
+            exchange.getResponseHeaders().set("x-ratelimit-limit-requests", "600");
+            
+            // 备用提供商使用不同的模型名，译文前缀也不同
+            boolean fallback = FALLBACK_MODEL.equals(request.path("model").asText());
+            if (fallback) {
+                fallbackRequestCount.incrementAndGet();
+            } else if (userContent.contains("OUTAGE")) {
+                respond(exchange, 503, "{\"error\":{\"message\":\"service unavailable\"}}");
+                return;
+            } else if (userContent.contains("FLAKY") && flakyResponses.getAndIncrement() == 0) {
+                respond(exchange, 400, "{\"error\":{\"message\":\"bad request\"}}");
+                return;
+            } else if (userContent.contains("FAIL")) {
+                respond(exchange, 400, "{\"error\":{\"message\":\"bad request\"}}");
+                return;
+            } else if (userContent.contains("SLOW")) {
+                Thread.sleep(3000);
+            }
+            
+            String translated = translate(userContent, fallback ? "备:" : "译:");
+            
+            // 含多个 TRUNCATE 的请求只返回前一半译文，模拟输出达到 max_tokens
+            String finishReason = "stop";
+            if (userContent.indexOf("TRUNCATE") != userContent.lastIndexOf("TRUNCATE")) {
+                translated = translated.substring(0, translated.length() / 2);
+                finishReason = "length";
+            }
+            
+            Map<String, Object> response = Map.of(
+                "choices", java.util.List.of(Map.of(
+                    "index", 0,
+                    "message", Map.of("role", "assistant", "content", translated),
+                    "finish_reason", finishReason
+                ))
+            );
+            respond(exchange, 200, objectMapper.writeValueAsString(response));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+    
+    /**
+     * 以SSE逐字返回译文，发出第一段后等待页面出现部分译文
+     */
+    /**
+     * 批量请求按id逐段"翻译"并包在代码块中返回；第一次遇到 DROP 时漏掉该段，第一次遇到 UNTAG 时丢掉占位符
+     */
+    private String translate(String userContent, String prefix) throws IOException {
+        if (!userContent.startsWith("{\"segments\"")) {
+            if (userContent.contains("UNTAG") && untaggedResponses.getAndIncrement() == 0) {
+                return prefix + userContent.replaceAll("</?\\d+/?>", "");
+            }
+            return prefix + userContent;
+        }
+        ObjectNode reply = objectMapper.createObjectNode();
+        ArrayNode segments = reply.putArray("segments");
+        for (JsonNode segment : objectMapper.readTree(userContent).get("segments")) {
+            String text = segment.get("text").asText();
+            if (text.contains("DROP") && droppedSegments.getAndIncrement() == 0) {
+                continue;
+            }
+            segments.addObject().put("id", segment.get("id").asInt()).put("text", prefix + text);
+        }
+        return "```json\n" + objectMapper.writeValueAsString(reply) + "\n```";
+    }
+    
+    private void streamResponse(HttpExchange exchange, String translated) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < translated.length(); i++) {
+                Map<String, Object> chunk = Map.of("choices", java.util.List.of(Map.of(
+                    "index", 0,
+                    "delta", Map.of("content", String.valueOf(translated.charAt(i))))));
+                out.write(("data: " + objectMapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                
+                if (i == 0 && watchedPage != null) {
+                    for (int wait = 0; wait < 100 && !partialObserved; wait++) {
+                        partialObserved = watchedPage.getPartialTranslation().startsWith("译");
+                        Thread.sleep(20);
+                    }
+                }
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
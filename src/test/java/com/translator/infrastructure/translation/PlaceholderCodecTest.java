@@ -0,0 +1,60 @@
+package com.translator.infrastructure.translation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 行内标签占位符编解码测试
+ */
+public class PlaceholderCodecTest {
+    
+    @Test
+    void testEncodeReplacesTagsAndDecodeRestoresThemExactly() {
+        String text = "Read <a href=\"../Text/chapter0012.xhtml#footnote-37\" class=\"noteref\"><sup>37</sup></a>"
+            + " and <em class=\"calibre5\">this</em>.<br/>Next<BR>";
+        PlaceholderCodec codec = PlaceholderCodec.encode(text);
+        
+        assertEquals("Read <1><2>37</2></1> and <3>this</3>.<4/>Next<5/>", codec.getEncoded());
+        assertTrue(codec.hasPlaceholders());
+        assertEquals(text, codec.decode(codec.getEncoded()));
+        // 译文可以调整占位符的顺序
+        assertEquals("<em class=\"calibre5\">这个</em>见<a href=\"../Text/chapter0012.xhtml#footnote-37\" class=\"noteref\">"
+            + "<sup>37</sup></a>。<br/>下一页<BR>",
+            codec.decode("<3>这个</3>见<1><2>37</2></1>。<4/>下一页<5/>"));
+    }
+    
+    @Test
+    void testUnpairedClosingTagBecomesStandalonePlaceholder() {
+        PlaceholderCodec codec = PlaceholderCodec.encode("end of quote</span> and <i>more");
+        
+        assertEquals("end of quote<1/> and <2/>more", codec.getEncoded());
+        assertEquals("引文结束</span>以及<i>更多", codec.decode("引文结束<1/>以及<2/>更多"));
+    }
+    
+    @Test
+    void testVerifyRequiresEveryPlaceholderExactlyOnce() {
+        PlaceholderCodec codec = PlaceholderCodec.encode("A <b>bold</b> and <i>italic</i> word<br/>");
+        
+        assertTrue(codec.verify("一个<2>斜体</2>和<1>粗体</1>的词<3/>"));
+        assertFalse(codec.verify("一个斜体和<1>粗体</1>的词<3/>"));
+        assertFalse(codec.verify("一个<2>斜体</2>和<1>粗体</1><1>粗体</1>的词<3/>"));
+        assertFalse(codec.verify("一个<2>斜体<1>和</2>粗体</1>的词<3/>"));
+        assertFalse(codec.verify("一个<2>斜体</2>和<1>粗体</1>的词<3/><4/>"));
+        assertFalse(codec.verify(null));
+    }
+    
+    @Test
+    void testTextWithExistingPlaceholdersIsOnlyVerified() {
+        PlaceholderCodec codec = PlaceholderCodec.encode("Click <1>here</1> now");
+        
+        assertEquals("Click <1>here</1> now", codec.getEncoded());
+        assertEquals("点击<1>这里</1>", codec.decode("点击<1>这里</1>"));
+        assertTrue(codec.verify("点击<1>这里</1>"));
+        assertFalse(codec.verify("点击这里"));
+        
+        PlaceholderCodec plain = PlaceholderCodec.encode("3 < 4 and 5 > 2");
+        assertFalse(plain.hasPlaceholders());
+        assertTrue(plain.verify("3 < 4 且 5 > 2"));
+    }
+}
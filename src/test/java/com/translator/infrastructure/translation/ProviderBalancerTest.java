@@ -0,0 +1,72 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.valueobject.TranslationProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多提供商负载均衡测试
+ */
+public class ProviderBalancerTest {
+    
+    private static final List<TranslationProvider> BOTH = List.of(TranslationProvider.OPENAI, TranslationProvider.DEEPSEEK);
+    
+    private final ProviderBalancer balancer = new ProviderBalancer();
+    
+    @Test
+    void testConcurrentBatchesAreSpreadAcrossProviders() {
+        Map<TranslationProvider, Integer> counts = acquire(4, provider -> 1);
+        
+        assertEquals(2, counts.get(TranslationProvider.OPENAI));
+        assertEquals(2, counts.get(TranslationProvider.DEEPSEEK));
+    }
+    
+    @Test
+    void testFasterProviderReceivesMoreWork() {
+        // OPENAI 1000 tokens/秒，DEEPSEEK 250 tokens/秒
+        balancer.onStart(TranslationProvider.OPENAI, 1000);
+        balancer.onComplete(TranslationProvider.OPENAI, 1000, 1000, true);
+        balancer.onStart(TranslationProvider.DEEPSEEK, 1000);
+        balancer.onComplete(TranslationProvider.DEEPSEEK, 1000, 4000, true);
+        
+        Map<TranslationProvider, Integer> counts = acquire(10, provider -> 1);
+        
+        assertEquals(8, counts.get(TranslationProvider.OPENAI));
+        assertEquals(2, counts.get(TranslationProvider.DEEPSEEK));
+    }
+    
+    @Test
+    void testProviderWithoutHeadroomIsAvoided() {
+        Map<TranslationProvider, Integer> counts = acquire(6,
+            provider -> provider == TranslationProvider.OPENAI ? 0 : 1);
+        
+        assertEquals(6, counts.get(TranslationProvider.DEEPSEEK));
+    }
+    
+    @Test
+    void testCompletedWorkFreesCapacity() {
+        TranslationProvider first = balancer.acquire(BOTH, 100, provider -> 1);
+        TranslationProvider second = balancer.acquire(BOTH, 100, provider -> 1);
+        assertNotEquals(first, second);
+        
+        balancer.onComplete(first, 100, 100, true);
+        balancer.onComplete(second, 100, 200, true);
+        // first 更快且已空闲
+        assertEquals(first, balancer.acquire(BOTH, 100, provider -> 1));
+    }
+    
+    private Map<TranslationProvider, Integer> acquire(int batches, ToDoubleFunction<TranslationProvider> headroom) {
+        Map<TranslationProvider, Integer> counts = new EnumMap<>(TranslationProvider.class);
+        BOTH.forEach(provider -> counts.put(provider, 0));
+        for (int i = 0; i < batches; i++) {
+            counts.merge(balancer.acquire(BOTH, 100, headroom), 1, Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,80 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.valueobject.TranslationProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 提供商健康登记与后台探测测试
+ */
+public class ProviderHealthRegistryTest {
+    
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final ProviderHealthRegistry registry = new ProviderHealthRegistry(2, 10_000, 60_000, now::get);
+    
+    @Test
+    void testConsecutiveFailuresMarkUnhealthyUntilCooldown() {
+        registry.recordFailure(TranslationProvider.OPENAI);
+        assertTrue(registry.isHealthy(TranslationProvider.OPENAI));
+        registry.recordFailure(TranslationProvider.OPENAI);
+        assertFalse(registry.isHealthy(TranslationProvider.OPENAI));
+        
+        now.addAndGet(10_000);
+        assertTrue(registry.isHealthy(TranslationProvider.OPENAI));
+    }
+    
+    @Test
+    void testProbeResultExpiresAfterTtl() {
+        assertNull(registry.getProbeResult(TranslationProvider.OPENAI));
+        
+        registry.recordProbe(TranslationProvider.OPENAI, false);
+        assertEquals(Boolean.FALSE, registry.getProbeResult(TranslationProvider.OPENAI));
+        assertFalse(registry.isHealthy(TranslationProvider.OPENAI));
+        assertTrue(registry.isHealthy(TranslationProvider.DEEPSEEK));
+        
+        now.addAndGet(60_000);
+        assertNull(registry.getProbeResult(TranslationProvider.OPENAI));
+        assertTrue(registry.isHealthy(TranslationProvider.OPENAI));
+    }
+    
+    @Test
+    void testSuccessfulRequestRefreshesProbeResult() {
+        registry.recordProbe(TranslationProvider.OPENAI, false);
+        registry.recordSuccess(TranslationProvider.OPENAI);
+        
+        assertEquals(Boolean.TRUE, registry.getProbeResult(TranslationProvider.OPENAI));
+        assertTrue(registry.isHealthy(TranslationProvider.OPENAI));
+    }
+    
+    @Test
+    void testProberRecordsExceptionsAsUnhealthyAndSkipsConcurrentProbes() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger probes = new AtomicInteger();
+        try (ProviderHealthProber prober = new ProviderHealthProber(registry, provider -> {
+            probes.incrementAndGet();
+            if (provider == TranslationProvider.DEEPSEEK) {
+                throw new IllegalStateException("connection refused");
+            }
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return true;
+        })) {
+            assertFalse(prober.probeNow(TranslationProvider.DEEPSEEK));
+            assertEquals(Boolean.FALSE, registry.getProbeResult(TranslationProvider.DEEPSEEK));
+            
+            prober.refreshAsync(TranslationProvider.OPENAI);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // 同一提供商的探测仍在进行，不再重复发出
+            assertNull(prober.probeNow(TranslationProvider.OPENAI));
+            release.countDown();
+        }
+        assertEquals(2, probes.get());
+    }
+}
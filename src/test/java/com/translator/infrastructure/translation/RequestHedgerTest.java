@@ -0,0 +1,140 @@
+package com.translator.infrastructure.translation;
+
+import com.translator.domain.exception.TranslationException;
+import com.translator.domain.valueobject.TranslationProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对冲请求测试
+ */
+public class RequestHedgerTest {
+    
+    private static final TranslationProvider PRIMARY = TranslationProvider.OPENAI;
+    
+    @Test
+    void testNoHedgeUntilEnoughSamples() throws Exception {
+        RequestHedger hedger = new RequestHedger(0.95, 1, 10);
+        AtomicInteger hedges = new AtomicInteger();
+        
+        for (int i = 0; i < 19; i++) {
+            hedger.recordLatency(PRIMARY, 10);
+            assertEquals("primary", hedger.call(PRIMARY, new CancellationToken(), token -> done("primary"), token -> {
+                hedges.incrementAndGet();
+                return done("hedge");
+            }).get());
+        }
+        assertEquals(0, hedges.get());
+        assertEquals(-1, hedger.getHedgeDelay(PRIMARY));
+        
+        hedger.recordLatency(PRIMARY, 10);
+        assertTrue(hedger.getHedgeDelay(PRIMARY) >= 0);
+    }
+    
+    @Test
+    void testCallsDoNotRecordLatency() throws Exception {
+        // 耗时由调用方按HTTP交换记录，对冲器不把排队和退避算进去
+        RequestHedger hedger = new RequestHedger(0.95, 1, 10);
+        for (int i = 0; i < 20; i++) {
+            hedger.call(PRIMARY, new CancellationToken(), token -> delayed("primary", 5), null).get();
+        }
+        assertEquals(-1, hedger.getHedgeDelay(PRIMARY));
+    }
+    
+    @Test
+    void testSlowPrimaryIsHedgedAndCancelled() throws Exception {
+        RequestHedger hedger = warmedUp(new RequestHedger(0.95, 1, 10), 50);
+        CountDownLatch primaryCancelled = new CountDownLatch(1);
+        AtomicBoolean tokenCancelled = new AtomicBoolean();
+        
+        long start = System.currentTimeMillis();
+        String result = hedger.call(PRIMARY, new CancellationToken(), token -> {
+            // 模拟一个长时间没有响应的请求，只能被取消
+            CompletableFuture<String> pending = new CompletableFuture<>();
+            token.register(() -> {
+                tokenCancelled.set(token.isCancelled());
+                primaryCancelled.countDown();
+                return pending.cancel(true);
+            });
+            return pending;
+        }, token -> done("hedge")).get();
+        
+        assertEquals("hedge", result);
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertTrue(primaryCancelled.await(1, TimeUnit.SECONDS));
+        assertTrue(tokenCancelled.get());
+    }
+    
+    @Test
+    void testFailedHedgeFallsBackToPrimary() throws Exception {
+        RequestHedger hedger = warmedUp(new RequestHedger(0.95, 1, 10), 20);
+        
+        String result = hedger.call(PRIMARY, new CancellationToken(),
+            token -> delayed("primary", 300),
+            token -> CompletableFuture.failedFuture(new TranslationException("hedge failed"))).get();
+        
+        assertEquals("primary", result);
+    }
+    
+    @Test
+    void testHedgeBudgetLimitsHedges() throws Exception {
+        // 额度上限1次，之后每次请求只存入0.1次
+        RequestHedger hedger = warmedUp(new RequestHedger(0.95, 0.1, 1), 10);
+        AtomicInteger hedges = new AtomicInteger();
+        
+        for (int i = 0; i < 3; i++) {
+            hedger.call(PRIMARY, new CancellationToken(), token -> delayed("primary", 100), token -> {
+                hedges.incrementAndGet();
+                return delayed("hedge", 500);
+            }).get();
+        }
+        assertEquals(1, hedges.get());
+    }
+    
+    @Test
+    void testParentCancellationCancelsBothSides() throws Exception {
+        RequestHedger hedger = warmedUp(new RequestHedger(0.95, 1, 10), 20);
+        CancellationToken parent = new CancellationToken();
+        CountDownLatch cancelled = new CountDownLatch(2);
+        RequestHedger.Call pending = token -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            token.register(() -> {
+                cancelled.countDown();
+                return future.completeExceptionally(new TranslationException("cancelled"));
+            });
+            return future;
+        };
+        
+        CompletableFuture<String> result = hedger.call(PRIMARY, parent, pending, pending);
+        Thread.sleep(200);
+        parent.cancel();
+        
+        assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(TranslationException.class, e.getCause());
+    }
+    
+    private static RequestHedger warmedUp(RequestHedger hedger, long latency) {
+        for (int i = 0; i < 20; i++) {
+            hedger.recordLatency(PRIMARY, latency);
+        }
+        return hedger;
+    }
+    
+    private static CompletableFuture<String> done(String value) {
+        return CompletableFuture.completedFuture(value);
+    }
+    
+    private static CompletableFuture<String> delayed(String value, long millis) {
+        return CompletableFuture.supplyAsync(() -> value,
+            CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,74 @@
+package com.translator.infrastructure.translation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 重试策略测试
+ */
+public class RetryPolicyTest {
+    
+    @Test
+    void testFailureClassification() {
+        assertTrue(RetryPolicy.isRetryable(new SocketTimeoutException("Read timed out")));
+        assertTrue(RetryPolicy.isRetryable(new IOException("Connection reset")));
+        assertTrue(RetryPolicy.isRetryable(new LlmApiException(500, -1, "server error")));
+        assertTrue(RetryPolicy.isRetryable(new LlmApiException(503, -1, "unavailable")));
+        assertTrue(RetryPolicy.isRetryable(new LlmApiException(429, 1000, "rate limited")));
+        
+        assertFalse(RetryPolicy.isRetryable(new LlmApiException(400, -1, "bad request")));
+        assertFalse(RetryPolicy.isRetryable(new LlmApiException(401, -1, "unauthorized")));
+        assertFalse(RetryPolicy.isRetryable(new LlmApiException(404, -1, "model not found")));
+    }
+    
+    @Test
+    void testBackoffGrowsExponentiallyWithJitter() {
+        for (int i = 0; i < 100; i++) {
+            Exception error = new IOException();
+            assertTrue(RetryPolicy.backoffMillis(1, 100, 10_000, error) <= 100);
+            assertTrue(RetryPolicy.backoffMillis(4, 100, 10_000, error) <= 800);
+            // 不超过上限
+            assertTrue(RetryPolicy.backoffMillis(30, 100, 10_000, error) <= 10_000);
+        }
+        
+        // 随机抖动：多次取值不应完全相同
+        long first = RetryPolicy.backoffMillis(5, 1000, 60_000, new IOException());
+        boolean varied = false;
+        for (int i = 0; i < 20 && !varied; i++) {
+            varied = RetryPolicy.backoffMillis(5, 1000, 60_000, new IOException()) != first;
+        }
+        assertTrue(varied);
+    }
+    
+    @Test
+    void testBackoffRespectsRetryAfter() {
+        LlmApiException error = new LlmApiException(503, 5000, "unavailable");
+        assertTrue(RetryPolicy.backoffMillis(1, 100, 10_000, error) >= 5000);
+    }
+    
+    @Test
+    void testRetryBudgetLimitsRetriesToRatioOfRequests() {
+        RetryPolicy policy = new RetryPolicy(0.5, 2);
+        
+        // 初始额度允许少量突发重试
+        assertTrue(policy.tryAcquireRetry());
+        assertTrue(policy.tryAcquireRetry());
+        assertFalse(policy.tryAcquireRetry());
+        
+        // 之后每两次请求换一次重试
+        policy.recordRequest();
+        assertFalse(policy.tryAcquireRetry());
+        policy.recordRequest();
+        assertTrue(policy.tryAcquireRetry());
+        
+        // 额度不会无限累积
+        for (int i = 0; i < 100; i++) {
+            policy.recordRequest();
+        }
+        assertEquals(2, policy.getRemainingBudget(), 0.0001);
+    }
+}
@@ -0,0 +1,65 @@
+package com.translator.infrastructure.translation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 进程内片段缓存测试
+ */
+public class SegmentCacheTest {
+    
+    @Test
+    void testKeyIgnoresWhitespaceDifferences() {
+        assertEquals(SegmentCache.key("Chapter  1\n Title", "prompt"), SegmentCache.key(" Chapter 1 Title ", "prompt"));
+        assertNotEquals(SegmentCache.key("Chapter 1", "prompt"), SegmentCache.key("Chapter 1", "other"));
+    }
+    
+    @Test
+    void testConcurrentRequestsForSameSegmentAreCoalesced() throws Exception {
+        SegmentCache cache = new SegmentCache(10);
+        
+        assertNull(cache.claim("k"));
+        CompletableFuture<String> follower = cache.claim("k");
+        assertNotNull(follower);
+        assertFalse(follower.isDone());
+        
+        cache.release("k", "译文");
+        assertEquals("译文", follower.get());
+        assertEquals(1, cache.getCoalescedCount());
+        assertEquals("译文", cache.lookup("k"));
+    }
+    
+    @Test
+    void testFailedFlightWakesWaitersWithoutCaching() throws Exception {
+        SegmentCache cache = new SegmentCache(10);
+        assertNull(cache.claim("k"));
+        CompletableFuture<String> follower = cache.claim("k");
+        
+        cache.release("k", null);
+        
+        assertNull(follower.get());
+        assertNull(cache.lookup("k"));
+        // 失败后下一个请求重新负责翻译
+        assertNull(cache.claim("k"));
+    }
+    
+    @Test
+    void testLeastRecentlyUsedEntryIsEvictedAndHitRateTracked() {
+        SegmentCache cache = new SegmentCache(2);
+        for (String key : new String[]{"a", "b"}) {
+            cache.claim(key);
+            cache.release(key, key.toUpperCase());
+        }
+        assertEquals("A", cache.lookup("a"));
+        cache.claim("c");
+        cache.release("c", "C");
+        
+        assertEquals(2, cache.size());
+        assertNull(cache.lookup("b"));
+        assertEquals("C", cache.lookup("c"));
+        assertEquals(2.0 / 3, cache.getHitRate(), 0.001);
+    }
+}
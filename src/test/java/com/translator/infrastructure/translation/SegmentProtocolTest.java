@@ -0,0 +1,73 @@
+package com.translator.infrastructure.translation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JSON片段协议测试
+ */
+public class SegmentProtocolTest {
+    
+    @Test
+    void testEncodeKeepsIdsAndEscapesText() throws Exception {
+        Map<Integer, String> texts = new LinkedHashMap<>();
+        texts.put(3, "He said \"hi\"");
+        texts.put(7, "line1\nline2");
+        
+        String encoded = SegmentProtocol.encode(new ObjectMapper(), texts);
+        
+        SegmentProtocol protocol = new SegmentProtocol(Set.of(3, 7), null);
+        protocol.feed(encoded);
+        assertEquals(texts, protocol.finish());
+    }
+    
+    @Test
+    void testSegmentsAreEmittedWhileStreaming() {
+        List<Integer> emitted = new ArrayList<>();
+        SegmentProtocol protocol = new SegmentProtocol(Set.of(1, 2), (id, text) -> emitted.add(id));
+        String response = "Here you go:\n```json\n{\"segments\":[{\"id\":1,\"text\":\"一\"},{\"id\":\"2\",\"text\":\"二\"}]}\n```";
+        
+        // 逐字符输入，第一段完整时即可取出
+        int firstEnd = response.indexOf('}') + 1;
+        for (int i = 0; i < response.length(); i++) {
+            protocol.feed(String.valueOf(response.charAt(i)));
+            if (i + 1 == firstEnd) {
+                assertEquals(List.of(1), emitted);
+            }
+        }
+        
+        assertEquals(Map.of(1, "一", 2, "二"), protocol.finish());
+        assertEquals(List.of(1, 2), emitted);
+        assertNull(protocol.getError());
+    }
+    
+    @Test
+    void testInvalidAndUnknownSegmentsAreDropped() {
+        SegmentProtocol protocol = new SegmentProtocol(Set.of(1, 2, 3), null);
+        protocol.feed("{\"segments\":[{\"id\":1,\"text\":\"  \"},{\"id\":9,\"text\":\"x\"},"
+            + "{\"id\":2,\"text\":\"二\",\"note\":{\"id\":3,\"text\":\"nested\"}},{\"id\":2,\"text\":\"dup\"}]}");
+        
+        assertEquals(Map.of(2, "二"), protocol.finish());
+    }
+    
+    @Test
+    void testTruncatedResponseKeepsCompleteSegments() {
+        SegmentProtocol protocol = new SegmentProtocol(Set.of(1, 2), null);
+        protocol.feed("{\"segments\":[{\"id\":1,\"text\":\"一\"},{\"id\":2,\"text\":\"未完");
+        
+        assertEquals(Map.of(1, "一"), protocol.finish());
+        assertNotNull(protocol.getError());
+        
+        protocol.reset();
+        protocol.feed("[{\"id\":2,\"text\":\"二\"}]");
+        assertEquals(Map.of(2, "二"), protocol.finish());
+    }
+}
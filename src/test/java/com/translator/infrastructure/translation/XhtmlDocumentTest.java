@@ -0,0 +1,33 @@
+package com.translator.infrastructure.translation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * XHTML文档文本抽取测试
+ */
+public class XhtmlDocumentTest {
+    
+    private static final String PAGE = "<html xmlns=\"http://www.w3.org/1999/xhtml\"><body>"
+        + "<p>See <em>this</em>.</p></body></html>";
+    
+    @Test
+    void testTranslationIsWrittenBackIntoMarkup() {
+        XhtmlDocument document = XhtmlDocument.parse(PAGE);
+        
+        assertEquals(List.of("See <1>this</1>."), document.getTextRuns());
+        assertTrue(document.render(List.of("见<1>这个</1>。")).contains("<p>见<em>这个</em>。</p>"));
+    }
+    
+    @Test
+    void testOversizedPlaceholderFallsBackToPlainText() {
+        XhtmlDocument document = XhtmlDocument.parse(PAGE);
+        
+        // 模型编造的超长编号不能让整页失败，按纯文本写回
+        String rendered = document.render(List.of("见<99999999999>这个</99999999999>。"));
+        assertTrue(rendered.contains("<p>见这个。</p>"), rendered);
+    }
+}